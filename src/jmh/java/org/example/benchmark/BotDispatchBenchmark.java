@@ -0,0 +1,70 @@
+package org.example.benchmark;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import ch.qos.logback.classic.Level;
+import org.example.YogaBot;
+import org.openjdk.jmh.annotations.*;
+import org.telegram.telegrambots.meta.api.methods.BotApiMethod;
+import org.telegram.telegrambots.meta.api.objects.Update;
+
+import java.io.OutputStream;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * YogaBot.onWebhookUpdateReceived целиком: команда, запрос расписания, запись и отмена.
+ * Telegram не вызывается (ответы возвращаются в теле webhook), Supabase - хранилище в памяти.
+ *
+ * Логи настроены как в production: уровень INFO, асинхронный appender, вывод в пустой поток.
+ * Аллокации на операцию: -Djmh.args="BotDispatchBenchmark -prof gc".
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class BotDispatchBenchmark {
+
+    private YogaBot bot;
+    private Update start;
+    private Update schedule;
+    private Update signup;
+    private Update cancel;
+
+    @Setup
+    public void setUp() throws Exception {
+        BenchLogging.configure(Level.INFO, OutputStream.nullOutputStream(), true);
+
+        ObjectMapper objectMapper = new ObjectMapper();
+        bot = BotFixtures.bot();
+        start = BotFixtures.update(objectMapper, BotFixtures.START_MESSAGE);
+        schedule = BotFixtures.update(objectMapper, BotFixtures.SCHEDULE_MESSAGE);
+        signup = BotFixtures.update(objectMapper, BotFixtures.SIGNUP_CALLBACK);
+        cancel = BotFixtures.update(objectMapper, BotFixtures.CANCEL_CALLBACK);
+    }
+
+    @TearDown
+    public void tearDown() {
+        BenchLogging.stop();
+    }
+
+    @Benchmark
+    public BotApiMethod<?> startCommand() {
+        return bot.onWebhookUpdateReceived(start);
+    }
+
+    @Benchmark
+    public BotApiMethod<?> scheduleRequest() {
+        return bot.onWebhookUpdateReceived(schedule);
+    }
+
+    /**
+     * Запись и отмена парой, чтобы каждая итерация шла по пути "успешно", а не "уже записаны".
+     */
+    @Benchmark
+    @OperationsPerInvocation(2)
+    public BotApiMethod<?> signupAndCancel() {
+        bot.onWebhookUpdateReceived(signup);
+        return bot.onWebhookUpdateReceived(cancel);
+    }
+}
@@ -0,0 +1,93 @@
+package org.example.benchmark;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import io.micrometer.tracing.Tracer;
+import org.example.CallbackData;
+import org.example.ConversationStateStore;
+import org.example.SignupCounterUpdater;
+import org.example.YogaBot;
+import org.example.service.SupabaseService;
+import org.example.service.TelegramRateLimiter;
+import org.telegram.telegrambots.meta.api.objects.Update;
+
+import java.io.IOException;
+import java.lang.reflect.Field;
+import java.nio.file.Files;
+import java.time.LocalDate;
+
+/**
+ * Общие заготовки для бенчмарков бота: JSON обновлений Telegram в том виде,
+ * в каком они приходят на webhook, и бот, собранный без Spring поверх хранилища в памяти.
+ */
+final class BotFixtures {
+
+    static final long ADMIN_ID = 111_111_111L;
+    static final long USER_ID = 222_222_222L;
+    static final LocalDate LESSON_DATE = LocalDate.of(2030, 1, 7);
+
+    static final String START_MESSAGE = message(1001, USER_ID, "/start");
+    static final String SCHEDULE_MESSAGE = message(1002, USER_ID, "📅 Расписание");
+    static final String SIGNUP_CALLBACK = callback(1003, USER_ID, CallbackData.lesson(CallbackData.SIGNUP, "morning", LESSON_DATE));
+    static final String CANCEL_CALLBACK = callback(1004, USER_ID, CallbackData.lesson(CallbackData.CANCEL, "morning", LESSON_DATE));
+
+    static final String MORNING_POST = "🌅 *Завтра утренняя практика!*\n\n8:00 - 11:30 - Майсор класс\n\n" +
+            "Записывайтесь кнопками ниже 👇";
+    static final String NO_CLASSES_POST = "🎉 Ура! Завтра занятий нет - отдыхаем и восстанавливаемся!";
+
+    private BotFixtures() {
+    }
+
+    static Update update(ObjectMapper objectMapper, String json) throws IOException {
+        return objectMapper.readValue(json, Update.class);
+    }
+
+    /**
+     * Бот с хранилищем в памяти и окном пачки 0 мс: ответ на запись не ждет соседей по пачке.
+     */
+    static YogaBot bot() throws Exception {
+        SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+        SupabaseService supabaseService = new SupabaseService(new InMemorySupabaseRepository(),
+                0, 50, 60_000, 64, 30_000, 1_500, 2_000, 0, 0, 3_000,
+                Files.createTempDirectory("yogabot-bench").toString(), meterRegistry);
+        TelegramRateLimiter rateLimiter = new TelegramRateLimiter(meterRegistry, 30, 1, 20, 3, 3);
+
+        ConversationStateStore conversationStates = new ConversationStateStore(meterRegistry, 30, 1000, false, "");
+
+        // Счетчики на отбивках выключены: в бенчмарке нет канала, который можно редактировать
+        SignupCounterUpdater signupCounters = new SignupCounterUpdater(supabaseService, edit -> {
+        }, false, 0, 0, null, meterRegistry);
+
+        YogaBot bot = new YogaBot(supabaseService, rateLimiter, conversationStates, null, signupCounters,
+                "http://127.0.0.1:9/bot", meterRegistry, Tracer.NOOP);
+        set(bot, "adminId", String.valueOf(ADMIN_ID));
+        set(bot, "channelId", "-1001234567890");
+        set(bot, "botUsername", "yoga_bench_bot");
+        set(bot, "botToken", "123456:bench");
+        return bot;
+    }
+
+    private static void set(Object target, String field, Object value) throws ReflectiveOperationException {
+        Field f = target.getClass().getDeclaredField(field);
+        f.setAccessible(true);
+        f.set(target, value);
+    }
+
+    private static String message(int updateId, long userId, String text) {
+        return """
+                {"update_id":%d,"message":{"message_id":%d,"date":1735689600,
+                "from":{"id":%d,"is_bot":false,"first_name":"Анна","username":"anna_yoga","language_code":"ru"},
+                "chat":{"id":%d,"type":"private","first_name":"Анна","username":"anna_yoga"},
+                "text":"%s"}}""".formatted(updateId, updateId, userId, userId, text);
+    }
+
+    private static String callback(int updateId, long userId, String data) {
+        return """
+                {"update_id":%d,"callback_query":{"id":"4382bfdwdsb323b2d9","chat_instance":"-7283467382",
+                "from":{"id":%d,"is_bot":false,"first_name":"Анна","username":"anna_yoga","language_code":"ru"},
+                "message":{"message_id":77,"date":1735689600,
+                "chat":{"id":-1001234567890,"type":"channel","title":"Йога"},
+                "text":"Завтра утренняя практика!"},
+                "data":"%s"}}""".formatted(updateId, userId, data);
+    }
+}
@@ -0,0 +1,92 @@
+package org.example.benchmark;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.example.CallbackData;
+import org.example.ChannelPostClassifier;
+import org.example.ScheduleSnapshot;
+import org.example.YogaBot;
+import org.openjdk.jmh.annotations.*;
+import org.telegram.telegrambots.meta.api.objects.Update;
+
+import java.io.IOException;
+import java.time.DayOfWeek;
+import java.time.LocalDate;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Отдельные горячие участки обработки обновления: разбор callback_data кнопок записи
+ * (компактный формат и старый строковый, который еще висит под опубликованными отбивками),
+ * классификация текста отбивки (saveMessageInfo), отрисовка недельного расписания
+ * и десериализация Update из тела webhook.
+ * Аллокации на операцию: -Djmh.args="BotHotPathBenchmark -prof gc".
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class BotHotPathBenchmark {
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    private String signupData;
+    private String legacySignupData;
+    private ScheduleSnapshot schedule;
+    private LocalDate today;
+    private String messageUpdate;
+    private String callbackUpdate;
+
+    @Setup
+    public void setUp() {
+        signupData = CallbackData.lesson(CallbackData.SIGNUP, "morning", BotFixtures.LESSON_DATE);
+        legacySignupData = "signup_morning_" + BotFixtures.LESSON_DATE;
+
+        Map<DayOfWeek, Map<String, String>> lessons = new HashMap<>();
+        for (DayOfWeek day : DayOfWeek.values()) {
+            lessons.put(day, Map.of("morning", "8:00 - 11:30 - Майсор класс", "evening", "17:00 - 20:30 - Майсор класс"));
+        }
+        schedule = ScheduleSnapshot.of(1, lessons);
+        today = BotFixtures.LESSON_DATE;
+
+        messageUpdate = BotFixtures.START_MESSAGE;
+        callbackUpdate = BotFixtures.SIGNUP_CALLBACK;
+    }
+
+    @Benchmark
+    public long decodeSignupCallback() {
+        return CallbackData.decode(signupData);
+    }
+
+    @Benchmark
+    public long decodeLegacySignupCallback() {
+        return CallbackData.decode(legacySignupData);
+    }
+
+    @Benchmark
+    public String classifyMorningPost() {
+        return ChannelPostClassifier.lessonType(BotFixtures.MORNING_POST);
+    }
+
+    @Benchmark
+    public String classifyNoClassesPost() {
+        return ChannelPostClassifier.lessonType(BotFixtures.NO_CLASSES_POST);
+    }
+
+    @Benchmark
+    public String renderWeeklySchedule() {
+        return YogaBot.renderWeeklySchedule(schedule, today);
+    }
+
+    @Benchmark
+    public Update deserializeMessageUpdate() throws IOException {
+        return objectMapper.readValue(messageUpdate, Update.class);
+    }
+
+    @Benchmark
+    public Update deserializeCallbackUpdate() throws IOException {
+        return objectMapper.readValue(callbackUpdate, Update.class);
+    }
+}
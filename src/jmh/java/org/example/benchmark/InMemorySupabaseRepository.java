@@ -0,0 +1,108 @@
+package org.example.benchmark;
+
+import org.example.service.RegistrationWriteBatcher;
+import org.example.service.SupabaseRepository;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.time.DayOfWeek;
+import java.time.LocalDate;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Хранилище в памяти для бенчмарков горячих путей бота: отвечает сразу,
+ * чтобы замер показывал работу самого бота, а не сети.
+ */
+final class InMemorySupabaseRepository implements SupabaseRepository {
+
+    private final Map<DayOfWeek, Map<String, String>> lessons = new ConcurrentHashMap<>();
+    private final Map<RegistrationWriteBatcher.RegistrationKey, RegistrationWriteBatcher.Registration> registrations =
+            Collections.synchronizedMap(new LinkedHashMap<>());
+    private volatile boolean notificationsEnabled = true;
+
+    @Override
+    public Mono<Void> saveSchedule(DayOfWeek dayOfWeek, String lessonType, String description) {
+        lessons.computeIfAbsent(dayOfWeek, k -> new ConcurrentHashMap<>()).put(lessonType, description);
+        return Mono.empty();
+    }
+
+    @Override
+    public Mono<Map<DayOfWeek, Map<String, String>>> loadSchedule() {
+        Map<DayOfWeek, Map<String, String>> copy = new HashMap<>();
+        lessons.forEach((day, byType) -> copy.put(day, new HashMap<>(byType)));
+        return Mono.just(copy);
+    }
+
+    @Override
+    public Mono<Integer> countLessons() {
+        return Mono.just(lessons.values().stream().mapToInt(Map::size).sum());
+    }
+
+    @Override
+    public Mono<Set<RegistrationWriteBatcher.RegistrationKey>> insertRegistrations(
+            List<RegistrationWriteBatcher.Registration> batch) {
+        Set<RegistrationWriteBatcher.RegistrationKey> inserted = new HashSet<>();
+        for (RegistrationWriteBatcher.Registration r : batch) {
+            RegistrationWriteBatcher.RegistrationKey key =
+                    new RegistrationWriteBatcher.RegistrationKey(r.userId(), r.lessonDate(), r.lessonType());
+            if (registrations.putIfAbsent(key, r) == null) {
+                inserted.add(key);
+            }
+        }
+        return Mono.just(inserted);
+    }
+
+    @Override
+    public Mono<Set<Long>> deleteRegistrations(LocalDate lessonDate, String lessonType, List<Long> userIds) {
+        Set<Long> deleted = new HashSet<>();
+        for (Long userId : userIds) {
+            if (registrations.remove(new RegistrationWriteBatcher.RegistrationKey(userId, lessonDate, lessonType)) != null) {
+                deleted.add(userId);
+            }
+        }
+        return Mono.just(deleted);
+    }
+
+    @Override
+    public Mono<Map<String, LinkedHashMap<Long, String>>> loadRegistrationsForDate(LocalDate date) {
+        Map<String, LinkedHashMap<Long, String>> result = new HashMap<>();
+        for (String lessonType : LESSON_TYPES) {
+            result.put(lessonType, new LinkedHashMap<>());
+        }
+        synchronized (registrations) {
+            for (RegistrationWriteBatcher.Registration r : registrations.values()) {
+                if (r.lessonDate().equals(date) && result.containsKey(r.lessonType())) {
+                    result.get(r.lessonType()).put(r.userId(), r.displayName());
+                }
+            }
+        }
+        return Mono.just(result);
+    }
+
+    @Override
+    public Mono<Void> saveMessageId(Integer messageId, String lessonType, LocalDate lessonDate, String messageText) {
+        return Mono.empty();
+    }
+
+    @Override
+    public Flux<Map<String, Object>> getMessagesForDeletion(LocalDate date, String lessonType) {
+        return Flux.empty();
+    }
+
+    @Override
+    public Mono<Void> deleteMessageRecord(Integer messageId, LocalDate date, String lessonType) {
+        return Mono.empty();
+    }
+
+    @Override
+    public Mono<Boolean> fetchNotificationsEnabled() {
+        return Mono.just(notificationsEnabled);
+    }
+
+    @Override
+    public Mono<Void> saveNotificationsState(boolean enabled) {
+        notificationsEnabled = enabled;
+        return Mono.empty();
+    }
+}
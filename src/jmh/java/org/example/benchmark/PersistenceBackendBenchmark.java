@@ -0,0 +1,144 @@
+package org.example.benchmark;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.zaxxer.hikari.HikariDataSource;
+import org.example.service.JdbcSupabaseRepository;
+import org.example.service.RegistrationWriteBatcher;
+import org.example.service.RestSupabaseRepository;
+import org.example.service.SupabaseBackend;
+import org.example.service.SupabaseRepository;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.web.reactive.function.client.WebClient;
+
+import java.io.IOException;
+import java.sql.Date;
+import java.time.DayOfWeek;
+import java.time.LocalDate;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Задержка операций хранилища: PostgREST (HTTP + JSON) против прямого JDBC.
+ *
+ * По умолчанию база - встроенная H2 в режиме PostgreSQL, а REST обслуживает PostgrestStub
+ * на loopback поверх той же базы (без TLS и интернета, то есть REST здесь в лучшем случае).
+ * Для локального Postgres со схемой Supabase:
+ * -Djmh.args="PersistenceBackendBenchmark -jvmArgs -Dbench.jdbc.url=jdbc:postgresql://localhost/yogabot
+ * -jvmArgs -Dbench.jdbc.user=postgres -jvmArgs -Dbench.jdbc.password=..."
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 3)
+@Measurement(iterations = 5, time = 3)
+@Fork(1)
+public class PersistenceBackendBenchmark {
+
+    private static final String H2_URL = "jdbc:h2:mem:bench;MODE=PostgreSQL;DATABASE_TO_LOWER=TRUE;DB_CLOSE_DELAY=-1";
+    private static final LocalDate LESSON_DATE = LocalDate.of(2030, 1, 7);
+    private static final int ROSTER_SIZE = 30;
+    private static final long BENCH_USER_ID = 999_999L;
+
+    private static final String[] H2_SCHEMA = {
+            "CREATE TABLE IF NOT EXISTS lessons (day_of_week VARCHAR(16), lesson_type VARCHAR(16), " +
+                    "description VARCHAR(255), PRIMARY KEY (day_of_week, lesson_type))",
+            "CREATE TABLE IF NOT EXISTS registrations (id BIGINT GENERATED BY DEFAULT AS IDENTITY PRIMARY KEY, user_id BIGINT, " +
+                    "username VARCHAR(64), display_name VARCHAR(128), lesson_date DATE, lesson_type VARCHAR(16), " +
+                    "created_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP, UNIQUE (user_id, lesson_date, lesson_type))",
+            "CREATE TABLE IF NOT EXISTS channel_messages (message_id INT PRIMARY KEY, lesson_type VARCHAR(16), " +
+                    "lesson_date DATE, message_text VARCHAR(4000))",
+            "CREATE TABLE IF NOT EXISTS bot_settings (id INT PRIMARY KEY, notifications_enabled BOOLEAN, " +
+                    "updated_at TIMESTAMP WITH TIME ZONE)"
+    };
+
+    @Param({"REST", "JDBC"})
+    public SupabaseBackend backend;
+
+    private HikariDataSource dataSource;
+    private PostgrestStub stub;
+    private SupabaseRepository repository;
+
+    private final List<RegistrationWriteBatcher.Registration> signup = List.of(new RegistrationWriteBatcher.Registration(
+            BENCH_USER_ID, "bench", "@bench", LESSON_DATE, "morning"));
+
+    @Setup
+    public void setUp() throws IOException {
+        String url = System.getProperty("bench.jdbc.url", H2_URL);
+        dataSource = new HikariDataSource();
+        dataSource.setJdbcUrl(url);
+        dataSource.setUsername(System.getProperty("bench.jdbc.user", "sa"));
+        dataSource.setPassword(System.getProperty("bench.jdbc.password", ""));
+        dataSource.setMaximumPoolSize(4);
+
+        JdbcTemplate jdbc = new JdbcTemplate(dataSource);
+        if (url.equals(H2_URL)) {
+            for (String ddl : H2_SCHEMA) {
+                jdbc.execute(ddl);
+            }
+        }
+        seed(jdbc);
+
+        if (backend == SupabaseBackend.REST) {
+            stub = new PostgrestStub(jdbc);
+            repository = new RestSupabaseRepository(stub.url(), "bench", new ObjectMapper(), WebClient.builder());
+        } else {
+            repository = new JdbcSupabaseRepository(jdbc);
+        }
+    }
+
+    private static void seed(JdbcTemplate jdbc) {
+        jdbc.update("DELETE FROM registrations WHERE lesson_date = ?", Date.valueOf(LESSON_DATE));
+        for (int i = 0; i < ROSTER_SIZE; i++) {
+            jdbc.update("INSERT INTO registrations (user_id, username, display_name, lesson_date, lesson_type) " +
+                            "VALUES (?, ?, ?, ?, ?)",
+                    1000L + i, "user" + i, "@user" + i, Date.valueOf(LESSON_DATE), i % 2 == 0 ? "morning" : "evening");
+        }
+        for (DayOfWeek day : DayOfWeek.values()) {
+            for (String lessonType : SupabaseRepository.LESSON_TYPES) {
+                if (jdbc.update("UPDATE lessons SET description = ? WHERE day_of_week = ? AND lesson_type = ?",
+                        "8:00 - 11:30 - Майсор класс", day.toString(), lessonType) == 0) {
+                    jdbc.update("INSERT INTO lessons (day_of_week, lesson_type, description) VALUES (?, ?, ?)",
+                            day.toString(), lessonType, "8:00 - 11:30 - Майсор класс");
+                }
+            }
+        }
+        if (jdbc.update("UPDATE bot_settings SET notifications_enabled = TRUE WHERE id = 1") == 0) {
+            jdbc.update("INSERT INTO bot_settings (id, notifications_enabled) VALUES (1, TRUE)");
+        }
+    }
+
+    @TearDown
+    public void tearDown() {
+        if (stub != null) {
+            stub.close();
+        }
+        dataSource.close();
+    }
+
+    @Benchmark
+    public Map<String, ?> loadRegistrationsForDate() {
+        return repository.loadRegistrationsForDate(LESSON_DATE).block();
+    }
+
+    @Benchmark
+    public Map<DayOfWeek, Map<String, String>> loadSchedule() {
+        return repository.loadSchedule().block();
+    }
+
+    @Benchmark
+    public Boolean fetchNotificationsEnabled() {
+        return repository.fetchNotificationsEnabled().block();
+    }
+
+    /**
+     * Запись и отмена одного пользователя: пара запросов, как при двойном нажатии кнопки.
+     */
+    @Benchmark
+    public Set<Long> signupAndCancel() {
+        repository.insertRegistrations(signup).block();
+        return repository.deleteRegistrations(LESSON_DATE, "morning", List.of(BENCH_USER_ID)).block();
+    }
+}
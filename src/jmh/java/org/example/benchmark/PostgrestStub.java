@@ -0,0 +1,134 @@
+package org.example.benchmark;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.sql.Date;
+import java.time.LocalDate;
+import java.util.*;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Минимальная замена PostgREST для бенчмарков: HTTP на loopback поверх той же базы,
+ * что использует JDBC-вариант. Поддерживает только запросы RestSupabaseRepository,
+ * нужные бенчмаркам (lessons, registrations, bot_settings).
+ */
+final class PostgrestStub implements AutoCloseable {
+
+    private final JdbcTemplate jdbc;
+    private final ObjectMapper mapper = new ObjectMapper();
+    private final HttpServer server;
+    private final ExecutorService executor = Executors.newFixedThreadPool(8);
+
+    PostgrestStub(JdbcTemplate jdbc) throws IOException {
+        // Без TCP_NODELAY маленькие ответы ждут delayed ACK и замер показывает ~40 мс вместо сети
+        System.setProperty("sun.net.httpserver.nodelay", "true");
+        this.jdbc = jdbc;
+        this.server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        this.server.createContext("/rest/v1/", this::handle);
+        this.server.setExecutor(executor);
+        this.server.start();
+    }
+
+    String url() {
+        return "http://127.0.0.1:" + server.getAddress().getPort();
+    }
+
+    private void handle(HttpExchange exchange) throws IOException {
+        try {
+            String table = exchange.getRequestURI().getPath().substring("/rest/v1/".length());
+            Map<String, String> params = query(exchange.getRequestURI().getRawQuery());
+            String method = exchange.getRequestMethod();
+
+            Object body = switch (method + " " + table) {
+                case "GET lessons" -> jdbc.queryForList("SELECT day_of_week, lesson_type, description FROM lessons");
+                case "GET bot_settings" -> jdbc.queryForList("SELECT notifications_enabled FROM bot_settings WHERE id = 1");
+                case "GET registrations" -> jdbc.queryForList(
+                        "SELECT user_id, lesson_type, display_name FROM registrations WHERE lesson_date = ? ORDER BY created_at",
+                        Date.valueOf(eq(params, "lesson_date")));
+                case "POST registrations" -> insertRegistrations(mapper.readTree(exchange.getRequestBody()));
+                case "DELETE registrations" -> deleteRegistrations(params);
+                default -> null;
+            };
+
+            if (body == null) {
+                exchange.sendResponseHeaders(404, -1);
+                return;
+            }
+            byte[] json = mapper.writeValueAsBytes(body);
+            exchange.getResponseHeaders().set("Content-Type", "application/json");
+            exchange.sendResponseHeaders(200, json.length);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(json);
+            }
+        } catch (RuntimeException e) {
+            exchange.sendResponseHeaders(500, -1);
+        } finally {
+            exchange.close();
+        }
+    }
+
+    private List<Map<String, Object>> insertRegistrations(JsonNode rows) {
+        List<Map<String, Object>> inserted = new ArrayList<>();
+        for (JsonNode row : rows) {
+            int count = jdbc.update("INSERT INTO registrations (user_id, username, display_name, lesson_date, lesson_type) " +
+                            "VALUES (?, ?, ?, ?, ?) ON CONFLICT DO NOTHING",
+                    row.get("user_id").asLong(), row.get("username").asText(null), row.get("display_name").asText(null),
+                    Date.valueOf(row.get("lesson_date").asText()), row.get("lesson_type").asText());
+            if (count > 0) {
+                inserted.add(Map.of(
+                        "user_id", row.get("user_id").asLong(),
+                        "lesson_date", row.get("lesson_date").asText(),
+                        "lesson_type", row.get("lesson_type").asText()));
+            }
+        }
+        return inserted;
+    }
+
+    private List<Map<String, Object>> deleteRegistrations(Map<String, String> params) {
+        LocalDate date = LocalDate.parse(eq(params, "lesson_date"));
+        String lessonType = eq(params, "lesson_type");
+        String ids = params.get("user_id");
+        List<Map<String, Object>> deleted = new ArrayList<>();
+        for (String id : ids.substring("in.(".length(), ids.length() - 1).split(",")) {
+            long userId = Long.parseLong(id);
+            if (jdbc.update("DELETE FROM registrations WHERE user_id = ? AND lesson_date = ? AND lesson_type = ?",
+                    userId, Date.valueOf(date), lessonType) > 0) {
+                deleted.add(Map.of("user_id", userId));
+            }
+        }
+        return deleted;
+    }
+
+    private static String eq(Map<String, String> params, String name) {
+        return params.get(name).substring("eq.".length());
+    }
+
+    private static Map<String, String> query(String rawQuery) {
+        Map<String, String> params = new HashMap<>();
+        if (rawQuery != null) {
+            for (String pair : rawQuery.split("&")) {
+                int eq = pair.indexOf('=');
+                if (eq > 0) {
+                    params.put(pair.substring(0, eq), URLDecoder.decode(pair.substring(eq + 1), StandardCharsets.UTF_8));
+                }
+            }
+        }
+        return params;
+    }
+
+    @Override
+    public void close() {
+        server.stop(0);
+        executor.shutdownNow();
+    }
+}
@@ -0,0 +1,155 @@
+package org.example.benchmark;
+
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import org.example.service.PostgrestRows;
+import org.example.service.RegistrationWriteBatcher;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.time.DayOfWeek;
+import java.time.LocalDate;
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Разбор ответов и запись тел запросов PostgREST: прежний путь (String -> readTree -> JsonNode,
+ * HashMap на каждое тело) против потокового разбора в PostgrestRows и заранее созданных ObjectWriter.
+ * Смотреть стоит на аллокации: -Djmh.args="SupabaseDecodingBenchmark -prof gc".
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class SupabaseDecodingBenchmark {
+
+    private static final int ROSTER_SIZE = 30;
+    private static final LocalDate LESSON_DATE = LocalDate.of(2030, 1, 7);
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final ObjectWriter registrationsWriter = objectMapper.writerFor(
+            new TypeReference<List<PostgrestRows.RegistrationBody>>() {
+            });
+
+    private byte[] rosterResponse;
+    private byte[] scheduleResponse;
+    private List<RegistrationWriteBatcher.Registration> registrations;
+
+    @Setup
+    public void setUp() throws IOException {
+        List<Map<String, Object>> roster = new ArrayList<>();
+        for (int i = 0; i < ROSTER_SIZE; i++) {
+            roster.add(Map.of("user_id", 100_000_000L + i, "lesson_type", i % 2 == 0 ? "morning" : "evening",
+                    "display_name", "Участник " + i + " (@user" + i + ")"));
+        }
+        rosterResponse = objectMapper.writeValueAsBytes(roster);
+
+        List<Map<String, Object>> lessons = new ArrayList<>();
+        for (DayOfWeek day : DayOfWeek.values()) {
+            for (String lessonType : List.of("morning", "evening")) {
+                lessons.add(Map.of("day_of_week", day.toString(), "lesson_type", lessonType,
+                        "description", "8:00 - 11:30 - Майсор класс"));
+            }
+        }
+        scheduleResponse = objectMapper.writeValueAsBytes(lessons);
+
+        registrations = new ArrayList<>();
+        for (int i = 0; i < 5; i++) {
+            registrations.add(new RegistrationWriteBatcher.Registration(
+                    100_000_000L + i, "user" + i, "@user" + i, LESSON_DATE, "morning"));
+        }
+    }
+
+    // === СПИСКИ ЗАПИСАВШИХСЯ ===
+
+    @Benchmark
+    public Map<String, LinkedHashMap<Long, String>> rosterTree() throws IOException {
+        JsonNode json = objectMapper.readTree(new String(rosterResponse, StandardCharsets.UTF_8));
+        Map<String, LinkedHashMap<Long, String>> registrations = emptyRosters();
+        for (JsonNode node : json) {
+            LinkedHashMap<Long, String> roster = registrations.get(node.get("lesson_type").asText());
+            if (roster != null) {
+                roster.put(node.get("user_id").asLong(), node.get("display_name").asText());
+            }
+        }
+        return registrations;
+    }
+
+    @Benchmark
+    public Map<String, LinkedHashMap<Long, String>> rosterStreaming() throws IOException {
+        Map<String, LinkedHashMap<Long, String>> registrations = emptyRosters();
+        try (JsonParser parser = objectMapper.getFactory().createParser(rosterResponse)) {
+            for (PostgrestRows.RosterRow row : PostgrestRows.read(parser, PostgrestRows.ROSTER)) {
+                LinkedHashMap<Long, String> roster = registrations.get(row.lessonType());
+                if (roster != null) {
+                    roster.put(row.userId(), row.displayName());
+                }
+            }
+        }
+        return registrations;
+    }
+
+    // === РАСПИСАНИЕ ===
+
+    @Benchmark
+    public Map<DayOfWeek, Map<String, String>> scheduleTree() throws IOException {
+        JsonNode json = objectMapper.readTree(new String(scheduleResponse, StandardCharsets.UTF_8));
+        Map<DayOfWeek, Map<String, String>> schedule = new HashMap<>();
+        for (JsonNode node : json) {
+            schedule.computeIfAbsent(DayOfWeek.valueOf(node.get("day_of_week").asText()), k -> new HashMap<>())
+                    .put(node.get("lesson_type").asText(), node.get("description").asText());
+        }
+        return schedule;
+    }
+
+    @Benchmark
+    public Map<DayOfWeek, Map<String, String>> scheduleStreaming() throws IOException {
+        Map<DayOfWeek, Map<String, String>> schedule = new HashMap<>();
+        try (JsonParser parser = objectMapper.getFactory().createParser(scheduleResponse)) {
+            for (PostgrestRows.LessonRow row : PostgrestRows.read(parser, PostgrestRows.LESSON)) {
+                schedule.computeIfAbsent(DayOfWeek.valueOf(row.dayOfWeek()), k -> new HashMap<>())
+                        .put(row.lessonType(), row.description());
+            }
+        }
+        return schedule;
+    }
+
+    // === ТЕЛО ЗАПИСИ ===
+
+    @Benchmark
+    public byte[] registrationsBodyMaps() throws IOException {
+        List<Map<String, Object>> rows = new ArrayList<>(registrations.size());
+        for (RegistrationWriteBatcher.Registration r : registrations) {
+            Map<String, Object> data = new HashMap<>();
+            data.put("user_id", r.userId());
+            data.put("username", r.username());
+            data.put("display_name", r.displayName());
+            data.put("lesson_date", r.lessonDate().toString());
+            data.put("lesson_type", r.lessonType());
+            rows.add(data);
+        }
+        return objectMapper.writeValueAsBytes(rows);
+    }
+
+    @Benchmark
+    public byte[] registrationsBodyWriter() throws IOException {
+        List<PostgrestRows.RegistrationBody> rows = new ArrayList<>(registrations.size());
+        for (RegistrationWriteBatcher.Registration r : registrations) {
+            rows.add(PostgrestRows.RegistrationBody.of(r));
+        }
+        return registrationsWriter.writeValueAsBytes(rows);
+    }
+
+    private static Map<String, LinkedHashMap<Long, String>> emptyRosters() {
+        Map<String, LinkedHashMap<Long, String>> registrations = new HashMap<>();
+        registrations.put("morning", new LinkedHashMap<>());
+        registrations.put("evening", new LinkedHashMap<>());
+        return registrations;
+    }
+}
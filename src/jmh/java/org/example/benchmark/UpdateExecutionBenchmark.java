@@ -0,0 +1,92 @@
+package org.example.benchmark;
+
+import org.example.KeyedVirtualExecutor;
+import org.example.UpdateExecutionMode;
+import org.example.UpdateExecutors;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Пропускная способность обработки всплеска записей так же, как в UpdateIngestQueue:
+ * PLATFORM - lanes однопоточных исполнителей (webhook.lanes), пользователь всегда в своей полосе;
+ * VIRTUAL - поток на обновление с порядком по пользователю (KeyedVirtualExecutor), lanes не используется.
+ * Во всплеске каждое нажатие - от своего пользователя, как после отбивки в канале.
+ * Каждое обновление блокируется на время, сравнимое с походом в Supabase и Telegram.
+ * Очереди не ограничены: бенчмарк меряет обработку, а не отказы при переполнении.
+ *
+ * Режим VIRTUAL требует JDK 21: mvn -Pbench,java21 compile exec:exec
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 2, time = 5)
+@Measurement(iterations = 3, time = 5)
+@Fork(1)
+public class UpdateExecutionBenchmark {
+
+    private static final int BURST = 1000;
+
+    @Param({"PLATFORM", "VIRTUAL"})
+    public UpdateExecutionMode mode;
+
+    @Param({"8"})
+    public int lanes;
+
+    @Param({"20"})
+    public int blockingMillis;
+
+    private ThreadPoolExecutor[] executors;
+    private KeyedVirtualExecutor virtualExecutor;
+
+    @Setup
+    public void setUp() {
+        if (UpdateExecutors.effectiveMode(mode) != mode) {
+            throw new IllegalStateException("Режим " + mode + " недоступен на этой JVM");
+        }
+        if (mode == UpdateExecutionMode.VIRTUAL) {
+            virtualExecutor = new KeyedVirtualExecutor("bench", Integer.MAX_VALUE);
+            return;
+        }
+        executors = new ThreadPoolExecutor[lanes];
+        for (int i = 0; i < lanes; i++) {
+            executors[i] = UpdateExecutors.create("bench-lane-" + i, mode, 1, new LinkedBlockingQueue<>());
+        }
+    }
+
+    @TearDown
+    public void tearDown() throws InterruptedException {
+        if (virtualExecutor != null) {
+            virtualExecutor.shutdown(10, TimeUnit.SECONDS);
+            return;
+        }
+        for (ThreadPoolExecutor executor : executors) {
+            executor.shutdownNow();
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(BURST)
+    public void signupBurst() throws InterruptedException {
+        CountDownLatch done = new CountDownLatch(BURST);
+        Runnable update = () -> {
+            try {
+                Thread.sleep(blockingMillis);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            done.countDown();
+        };
+        for (int userId = 0; userId < BURST; userId++) {
+            if (virtualExecutor != null) {
+                virtualExecutor.execute(userId, update);
+            } else {
+                executors[userId % lanes].execute(update);
+            }
+        }
+        done.await();
+    }
+}
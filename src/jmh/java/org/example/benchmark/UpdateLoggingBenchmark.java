@@ -0,0 +1,110 @@
+package org.example.benchmark;
+
+import ch.qos.logback.classic.Level;
+import org.example.LogSampler;
+import org.openjdk.jmh.annotations.*;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedOutputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Логирование одного нажатия "записаться" на нескольких полосах обработки одновременно:
+ * прежние 8 строк System.out.println со склейкой строк против SLF4J с асинхронным appender.
+ * Вывод уходит в /dev/null: в замере форматирование, блокировка потока вывода и запись, без терминала.
+ *
+ *   systemOut         - как было: println в общий PrintStream с autoflush, как у stdout
+ *   slf4jInfo         - как в production: уровень INFO, след update на DEBUG не строится
+ *   slf4jDebugSampled - уровень DEBUG, след маршрутизации пишется для каждого 16-го update
+ *   slf4jDebugAll     - уровень DEBUG без выборки
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Threads(4)
+@Fork(1)
+public class UpdateLoggingBenchmark {
+
+    private static final ZoneId MOSCOW = ZoneId.of("Europe/Moscow");
+    private static final Logger log = LoggerFactory.getLogger("org.example.YogaBot");
+
+    @Param({"systemOut", "slf4jInfo", "slf4jDebugSampled", "slf4jDebugAll"})
+    public String mode;
+
+    private final AtomicInteger updateIds = new AtomicInteger(100_000_000);
+    private final LogSampler sampler = new LogSampler();
+    private final Long userId = BotFixtures.USER_ID;
+    private final String data = "signup_morning_" + BotFixtures.LESSON_DATE;
+    private final String[] adminIds = {"111111111", "333333333"};
+
+    private FileOutputStream devNull;
+    private PrintStream out;
+    private int sampleEvery;
+
+    @Setup
+    public void setUp() throws IOException {
+        devNull = new FileOutputStream("/dev/null");
+        out = new PrintStream(new BufferedOutputStream(devNull, 8192), true, StandardCharsets.UTF_8);
+        sampleEvery = mode.equals("slf4jDebugSampled") ? 16 : 1;
+        BenchLogging.configure(mode.startsWith("slf4jDebug") ? Level.DEBUG : Level.INFO, devNull, true);
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        BenchLogging.stop();
+        devNull.close();
+    }
+
+    @Benchmark
+    public void update() {
+        Integer updateId = updateIds.incrementAndGet();
+        if (mode.equals("systemOut")) {
+            systemOut(updateId);
+        } else {
+            slf4j(updateId);
+        }
+    }
+
+    /**
+     * Строки, которые писали WebhookController, onWebhookUpdateReceived, isAdmin и handleUserSignup.
+     */
+    private void systemOut(Integer updateId) {
+        out.println("🌐 Получен webhook запрос, update_id: " + updateId);
+        out.println("🔄 Начало обработки update: " + updateId);
+        out.println("❌ Пользователь " + userId + " НЕ является админом. Настроенные админы: " + Arrays.toString(adminIds));
+        out.println("👤 Пользователь " + userId + " является админом: " + false);
+        out.println("🔘 Обработка записи: " + data);
+        out.println("📅 Дата занятия: " + BotFixtures.LESSON_DATE + ", тип: " + "morning");
+        out.println("📅 Сегодня в Москве: " + LocalDate.now(MOSCOW));
+        out.println("✅ Завершение обработки update: " + updateId);
+    }
+
+    /**
+     * Те же места после перевода на SLF4J.
+     */
+    private void slf4j(Integer updateId) {
+        log.debug("🌐 Получен webhook запрос, update_id: {}", updateId);
+        boolean traced = log.isDebugEnabled() && sampler.sample(sampleEvery);
+        if (traced) {
+            log.debug("🔄 Начало обработки update: {}", updateId);
+            log.debug("👤 Пользователь {} является админом: {}", userId, false);
+        }
+        log.debug("🔘 Обработка записи: {}", data);
+        LocalDate today = LocalDate.now(MOSCOW);
+        log.debug("📅 Дата занятия: {}, тип: {}, сегодня в Москве: {}", BotFixtures.LESSON_DATE, "morning", today);
+        if (traced) {
+            log.debug("✅ Завершение обработки update: {}", updateId);
+        }
+    }
+}
@@ -0,0 +1,326 @@
+package org.example.loadtest;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.example.CallbackData;
+import org.example.SignupCounterUpdater;
+import org.example.YogaBotApplication;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.net.ServerSocket;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.file.Files;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Сквозной нагрузочный тест: поднимает приложение против локальных заглушек Telegram Bot API
+ * и Supabase PostgREST и обстреливает POST-webhook шквалом нажатий кнопки записи.
+ *
+ * Запуск: mvn -Ploadtest compile exec:exec -Dloadtest.args="--users=500 --window-s=10"
+ *
+ * Параметры (все необязательны):
+ *   --users=500                  число пользователей, каждый нажимает кнопку один раз
+ *   --window-s=10                за сколько секунд приходят все нажатия (моменты случайны)
+ *   --action=signup_morning      кнопка под отбивкой (signup|cancel)_(morning|evening), дата - завтра по Москве
+ *   --legacy-callback=false      слать callback_data в старом строковом формате "signup_morning_2030-01-07"
+ *   --warmup=50                  нажатий для прогрева перед замером (на вечернее занятие)
+ *   --telegram-latency-ms=40     задержка заглушки Telegram (+ до --telegram-jitter-ms=20)
+ *   --telegram-error-rate=0      доля ответов 500 от Telegram
+ *   --postgrest-latency-ms=30    задержка заглушки PostgREST (+ до --postgrest-jitter-ms=20)
+ *   --postgrest-error-rate=0     доля ответов 503 от PostgREST
+ *   --drain-timeout-s=30         сколько ждать, пока записи дойдут до "базы"
+ *   --trace-sampling=0.1         доля трасс для экспорта в локальную заглушку OTLP
+ *   --app.<property>=<value>     любое свойство приложения, например --app.webhook.lanes=16
+ *   --verbose=false              не глушить вывод приложения
+ */
+public final class LoadTest {
+
+    private static final ZoneId MOSCOW = ZoneId.of("Europe/Moscow");
+    private static final long FIRST_USER_ID = 500_000_000L;
+    private static final String CHANNEL_ID = "-1001234567890";
+
+    private LoadTest() {
+    }
+
+    public static void main(String[] args) throws Exception {
+        Map<String, String> options = parse(args);
+        PrintStream report = System.out;
+        ObjectMapper objectMapper = new ObjectMapper();
+
+        int users = Integer.parseInt(options.getOrDefault("users", "500"));
+        double windowSeconds = Double.parseDouble(options.getOrDefault("window-s", "10"));
+        String action = options.getOrDefault("action", "signup_morning");
+        int warmup = Integer.parseInt(options.getOrDefault("warmup", "50"));
+        long drainTimeoutMs = (long) (Double.parseDouble(options.getOrDefault("drain-timeout-s", "30")) * 1000);
+        boolean verbose = Boolean.parseBoolean(options.getOrDefault("verbose", "false"));
+        boolean legacyCallback = Boolean.parseBoolean(options.getOrDefault("legacy-callback", "false"));
+        LocalDate lessonDate = LocalDate.now(MOSCOW).plusDays(1);
+
+        try (TelegramApiStub telegram = new TelegramApiStub(objectMapper,
+                longOption(options, "telegram-latency-ms", 40), longOption(options, "telegram-jitter-ms", 20),
+                Double.parseDouble(options.getOrDefault("telegram-error-rate", "0")));
+             PostgrestStub postgrest = new PostgrestStub(objectMapper,
+                     longOption(options, "postgrest-latency-ms", 30), longOption(options, "postgrest-jitter-ms", 20),
+                     Double.parseDouble(options.getOrDefault("postgrest-error-rate", "0")));
+             OtlpCollectorStub otlp = new OtlpCollectorStub()) {
+
+            if (!verbose) {
+                System.setOut(new PrintStream(OutputStream.nullOutputStream()));
+            }
+
+            // Свойства передаются как аргументы командной строки, чтобы перекрыть application.properties
+            int port = freePort();
+            Map<String, String> properties = new LinkedHashMap<>();
+            properties.put("server.port", String.valueOf(port));
+            properties.put("app.url", "http://127.0.0.1:" + port);
+            properties.put("supabase.url", postgrest.url());
+            properties.put("supabase.key", "loadtest");
+            properties.put("supabase.backend", "rest");
+            properties.put("bot.token", "123456:loadtest");
+            properties.put("bot.username", "loadtest_bot");
+            properties.put("telegram.api-url", telegram.url() + "/bot");
+            properties.put("app.adminId", "1");
+            properties.put("app.channelId", CHANNEL_ID);
+            properties.put("app.data-dir", Files.createTempDirectory("yogabot-loadtest").toString());
+            properties.put("logging.level.org.example", verbose ? "INFO" : "WARN");
+            properties.put("management.otlp.tracing.endpoint", otlp.tracesEndpoint());
+            properties.put("management.tracing.sampling.probability", options.getOrDefault("trace-sampling", "0.1"));
+            options.forEach((key, value) -> {
+                if (key.startsWith("app.")) {
+                    properties.put(key.substring("app.".length()), value);
+                }
+            });
+
+            report.println("🚀 Запуск приложения: Telegram " + telegram.url() + ", PostgREST " + postgrest.url());
+            String[] appArgs = properties.entrySet().stream()
+                    .map(e -> "--" + e.getKey() + "=" + e.getValue())
+                    .toArray(String[]::new);
+            try (ConfigurableApplicationContext context = new SpringApplicationBuilder(YogaBotApplication.class).run(appArgs)) {
+                URI webhook = URI.create("http://127.0.0.1:" + port + "/");
+                HttpClient client = HttpClient.newBuilder()
+                        .version(HttpClient.Version.HTTP_1_1)
+                        .connectTimeout(Duration.ofSeconds(5))
+                        .build();
+                AtomicInteger updateIds = new AtomicInteger(1);
+
+                // Отбивки под обе кнопки, как будто бот их уже отправил: счетчик записавшихся
+                // на них обновляется правками editMessageReplyMarkup
+                SignupCounterUpdater signupCounters = context.getBean(SignupCounterUpdater.class);
+                signupCounters.posted(1, SignupCounterUpdater.markup("morning", lessonDate, 0, 0));
+                signupCounters.posted(2, SignupCounterUpdater.markup("evening", lessonDate, 0, 0));
+
+                if (warmup > 0) {
+                    report.println("🔥 Прогрев: " + warmup + " нажатий");
+                    storm(client, webhook, updateIds, FIRST_USER_ID - warmup, warmup, 1.0,
+                            callbackData("signup_evening", lessonDate, legacyCallback));
+                    awaitRegistrations(postgrest, lessonDate, "evening", warmup, drainTimeoutMs);
+                }
+                telegram.resetCounters();
+                postgrest.resetCounters();
+
+                String callbackData = callbackData(action, lessonDate, legacyCallback);
+                report.printf("🌪️  Шквал: %d пользователей за %.1f с, callback_data=%s%n", users, windowSeconds, callbackData);
+                StormResult result = storm(client, webhook, updateIds, FIRST_USER_ID, users, windowSeconds, callbackData);
+
+                String lessonType = action.substring(action.indexOf('_') + 1);
+                long drainStart = System.nanoTime();
+                int persisted = action.startsWith("signup")
+                        ? awaitRegistrations(postgrest, lessonDate, lessonType, users, drainTimeoutMs)
+                        : -1;
+                long drainMs = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - drainStart);
+
+                // Последняя правка счетчика на отбивке уходит не раньше окна и интервала после предыдущей
+                Thread.sleep(Long.parseLong(options.getOrDefault("app.bot.signup-counter.debounce-ms", "2000")) +
+                        Long.parseLong(options.getOrDefault("app.bot.signup-counter.min-interval-ms", "3000")));
+
+                printReport(report, result, users, persisted, drainMs, telegram, postgrest, otlp);
+                printAppMetrics(report, client, port);
+            }
+        } finally {
+            System.setOut(report);
+        }
+        System.exit(0);
+    }
+
+    // === ГЕНЕРАТОР НАГРУЗКИ ===
+
+    private record StormResult(long[] latenciesNanos, Map<String, Integer> statuses, int inlineReplies,
+                               long elapsedNanos) {
+    }
+
+    /**
+     * Каждый пользователь нажимает кнопку один раз в случайный момент окна; замеряется время до ответа webhook.
+     */
+    private static StormResult storm(HttpClient client, URI webhook, AtomicInteger updateIds, long firstUserId,
+                                     int users, double windowSeconds, String callbackData) throws InterruptedException {
+        ScheduledExecutorService scheduler = Executors.newScheduledThreadPool(4);
+        long[] latencies = new long[users];
+        Map<String, Integer> statuses = new ConcurrentSkipListMap<>();
+        AtomicInteger inlineReplies = new AtomicInteger();
+        CountDownLatch done = new CountDownLatch(users);
+        long windowNanos = (long) (windowSeconds * 1_000_000_000L);
+
+        long start = System.nanoTime();
+        for (int i = 0; i < users; i++) {
+            int index = i;
+            String body = callbackUpdate(updateIds.getAndIncrement(), firstUserId + i, callbackData);
+            long delay = windowNanos > 0 ? ThreadLocalRandom.current().nextLong(windowNanos) : 0;
+            scheduler.schedule(() -> {
+                HttpRequest request = HttpRequest.newBuilder(webhook)
+                        .timeout(Duration.ofSeconds(30))
+                        .header("Content-Type", "application/json")
+                        .POST(HttpRequest.BodyPublishers.ofString(body))
+                        .build();
+                long sent = System.nanoTime();
+                client.sendAsync(request, HttpResponse.BodyHandlers.ofString()).whenComplete((response, error) -> {
+                    latencies[index] = System.nanoTime() - sent;
+                    String status = error != null ? error.getClass().getSimpleName() : String.valueOf(response.statusCode());
+                    statuses.merge(status, 1, Integer::sum);
+                    if (response != null && !response.body().isEmpty()) {
+                        inlineReplies.incrementAndGet();
+                    }
+                    done.countDown();
+                });
+            }, delay, TimeUnit.NANOSECONDS);
+        }
+
+        done.await();
+        long elapsed = System.nanoTime() - start;
+        scheduler.shutdownNow();
+        return new StormResult(latencies, statuses, inlineReplies.get(), elapsed);
+    }
+
+    private static int awaitRegistrations(PostgrestStub postgrest, LocalDate lessonDate, String lessonType,
+                                          int expected, long timeoutMs) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + timeoutMs;
+        int count = postgrest.registrationCount(lessonDate.toString(), lessonType);
+        while (count < expected && System.currentTimeMillis() < deadline) {
+            Thread.sleep(50);
+            count = postgrest.registrationCount(lessonDate.toString(), lessonType);
+        }
+        return count;
+    }
+
+    private static String callbackUpdate(int updateId, long userId, String data) {
+        return """
+                {"update_id":%d,"callback_query":{"id":"cb%d","chat_instance":"-7283467382",
+                "from":{"id":%d,"is_bot":false,"first_name":"User%d","username":"user%d","language_code":"ru"},
+                "message":{"message_id":77,"date":%d,"chat":{"id":%s,"type":"channel","title":"Йога"},
+                "text":"Завтра утренняя практика!"},"data":"%s"}}"""
+                .formatted(updateId, updateId, userId, userId, userId, System.currentTimeMillis() / 1000, CHANNEL_ID, data);
+    }
+
+    // === ОТЧЕТ ===
+
+    private static void printReport(PrintStream out, StormResult result, int users, int persisted, long drainMs,
+                                    StubServer telegram, StubServer postgrest, OtlpCollectorStub otlp) {
+        long[] sorted = result.latenciesNanos().clone();
+        Arrays.sort(sorted);
+        long errors = result.statuses().entrySet().stream()
+                .filter(e -> !e.getKey().startsWith("2"))
+                .mapToLong(Map.Entry::getValue)
+                .sum();
+
+        out.println();
+        out.println("📊 Подтверждение webhook (мс)");
+        out.printf("   p50=%.1f  p90=%.1f  p99=%.1f  p99.9=%.1f  max=%.1f  mean=%.1f%n",
+                millis(percentile(sorted, 0.50)), millis(percentile(sorted, 0.90)), millis(percentile(sorted, 0.99)),
+                millis(percentile(sorted, 0.999)), millis(sorted[sorted.length - 1]),
+                millis((long) Arrays.stream(sorted).average().orElse(0)));
+        out.printf("   запросов=%d за %.2f с, ошибок=%d (%.2f%%), ответов в теле webhook=%d%n",
+                users, result.elapsedNanos() / 1e9, errors, 100.0 * errors / users, result.inlineReplies());
+        out.println("   коды: " + result.statuses());
+        if (persisted >= 0) {
+            out.printf("   записей в PostgREST: %d из %d (ожидание после шквала %d мс)%n", persisted, users, drainMs);
+        }
+
+        for (StubServer stub : List.of(telegram, postgrest)) {
+            out.println();
+            out.printf("📡 %s: вызовов=%d (%.2f на нажатие), искусственных ошибок=%d%n",
+                    stub.name(), stub.totalCalls(), (double) stub.totalCalls() / users, stub.injectedErrors());
+            stub.calls().forEach((operation, count) -> out.printf("   %-24s %d%n", operation, count));
+        }
+
+        // Спаны уходят пачками раз в несколько секунд, последняя пачка может не успеть к отчету
+        out.println();
+        out.printf("🛰️ OTLP (с прогревом): пакетов=%d, байт=%d%n", otlp.totalCalls(), otlp.receivedBytes());
+    }
+
+    private static final List<String> APP_METRICS = List.of(
+            "bot_update_seconds_count", "supabase_call_seconds_count", "supabase_call_errors_total",
+            "telegram_api_seconds_count", "telegram_api_errors_total", "tasks_scheduled_execution_seconds_count",
+            "lesson_signup_total", "lesson_waitlist_promoted_total", "channel_signup_counter_changes_total",
+            "channel_signup_counter_edits_total");
+
+    /**
+     * Счетчики самого приложения из /actuator/prometheus (с начала запуска, включая прогрев).
+     */
+    private static void printAppMetrics(PrintStream out, HttpClient client, int port) throws Exception {
+        HttpRequest request = HttpRequest.newBuilder(URI.create("http://127.0.0.1:" + port + "/actuator/prometheus"))
+                .timeout(Duration.ofSeconds(5))
+                .GET()
+                .build();
+        HttpResponse<String> response = client.send(request, HttpResponse.BodyHandlers.ofString());
+
+        out.println();
+        out.println("📈 Метрики приложения (/actuator/prometheus)");
+        response.body().lines()
+                .filter(line -> APP_METRICS.stream().anyMatch(line::startsWith))
+                .forEach(line -> out.println("   " + line));
+    }
+
+    private static long percentile(long[] sorted, double p) {
+        int index = (int) Math.ceil(p * sorted.length) - 1;
+        return sorted[Math.max(0, Math.min(sorted.length - 1, index))];
+    }
+
+    private static double millis(long nanos) {
+        return nanos / 1_000_000.0;
+    }
+
+    private static int freePort() throws IOException {
+        try (ServerSocket socket = new ServerSocket(0)) {
+            return socket.getLocalPort();
+        }
+    }
+
+    private static long longOption(Map<String, String> options, String name, long defaultValue) {
+        String value = options.get(name);
+        return value != null ? Long.parseLong(value) : defaultValue;
+    }
+
+    /**
+     * callback_data кнопки так, как ее публикует бот: компактный CallbackData или старый строковый формат.
+     */
+    private static String callbackData(String action, LocalDate lessonDate, boolean legacy) {
+        if (legacy) {
+            return action + "_" + lessonDate;
+        }
+        int separator = action.indexOf('_');
+        int opcode = action.startsWith("signup") ? CallbackData.SIGNUP : CallbackData.CANCEL;
+        return CallbackData.lesson(opcode, action.substring(separator + 1), lessonDate);
+    }
+
+    private static Map<String, String> parse(String[] args) {
+        Map<String, String> options = new LinkedHashMap<>();
+        for (String arg : args) {
+            if (!arg.startsWith("--") || !arg.contains("=")) {
+                throw new IllegalArgumentException("Ожидался параметр вида --name=value: " + arg);
+            }
+            int eq = arg.indexOf('=');
+            options.put(arg.substring(2, eq), arg.substring(eq + 1));
+        }
+        return options;
+    }
+}
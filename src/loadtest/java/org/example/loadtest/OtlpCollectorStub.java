@@ -0,0 +1,43 @@
+package org.example.loadtest;
+
+import com.sun.net.httpserver.HttpExchange;
+
+import java.io.IOException;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Заглушка OTLP-коллектора (HTTP, /v1/traces): принимает пакеты спанов и считает их объем, не разбирая protobuf.
+ */
+final class OtlpCollectorStub extends StubServer {
+
+    private final LongAdder receivedBytes = new LongAdder();
+
+    OtlpCollectorStub() throws IOException {
+        super("OTLP", 0, 0, 0, 4);
+    }
+
+    String tracesEndpoint() {
+        return url() + "/v1/traces";
+    }
+
+    @Override
+    protected String operation(HttpExchange exchange) {
+        return exchange.getRequestMethod() + " " + exchange.getRequestURI().getPath();
+    }
+
+    @Override
+    protected Reply reply(HttpExchange exchange, String operation, byte[] body) {
+        receivedBytes.add(body.length);
+        // Пустое тело - корректный ExportTraceServiceResponse
+        return new Reply(200, null);
+    }
+
+    @Override
+    protected Reply injectedError() {
+        return new Reply(503, null);
+    }
+
+    long receivedBytes() {
+        return receivedBytes.sum();
+    }
+}
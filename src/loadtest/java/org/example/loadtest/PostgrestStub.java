@@ -0,0 +1,163 @@
+package org.example.loadtest;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.sun.net.httpserver.HttpExchange;
+
+import java.io.IOException;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+
+/**
+ * Заглушка Supabase PostgREST в памяти: таблицы lessons, registrations, channel_messages, bot_settings
+ * и ровно те фильтры, которые использует RestSupabaseRepository.
+ */
+final class PostgrestStub extends StubServer {
+
+    private record RegistrationRow(long userId, String username, String displayName, String lessonDate, String lessonType) {
+    }
+
+    private final ObjectMapper objectMapper;
+
+    // Охраняются this
+    private final Map<String, Map<String, Object>> lessons = new LinkedHashMap<>();
+    private final Map<String, RegistrationRow> registrations = new LinkedHashMap<>();
+    private final Map<Integer, Map<String, Object>> messages = new LinkedHashMap<>();
+    private boolean notificationsEnabled = true;
+
+    PostgrestStub(ObjectMapper objectMapper, long latencyMs, long jitterMs, double errorRate) throws IOException {
+        super("PostgREST", latencyMs, jitterMs, errorRate, 64);
+        this.objectMapper = objectMapper;
+    }
+
+    @Override
+    protected String operation(HttpExchange exchange) {
+        String path = exchange.getRequestURI().getPath();
+        return exchange.getRequestMethod() + " " + path.substring(path.lastIndexOf('/') + 1);
+    }
+
+    @Override
+    protected synchronized Reply reply(HttpExchange exchange, String operation, byte[] body) throws IOException {
+        Map<String, String> params = query(exchange.getRequestURI().getRawQuery());
+
+        return switch (operation) {
+            case "GET lessons" -> json(new ArrayList<>(lessons.values()));
+            case "POST lessons" -> {
+                JsonNode row = objectMapper.readTree(body);
+                Map<String, Object> lesson = new LinkedHashMap<>();
+                lesson.put("day_of_week", row.path("day_of_week").asText());
+                lesson.put("lesson_type", row.path("lesson_type").asText());
+                lesson.put("description", row.path("description").asText());
+                lessons.put(lesson.get("day_of_week") + "/" + lesson.get("lesson_type"), lesson);
+                yield new Reply(201, null);
+            }
+            case "GET registrations" -> {
+                String date = eq(params, "lesson_date");
+                List<Map<String, Object>> rows = new ArrayList<>();
+                for (RegistrationRow r : registrations.values()) {
+                    if (r.lessonDate().equals(date)) {
+                        rows.add(Map.of("user_id", r.userId(), "lesson_type", r.lessonType(),
+                                "display_name", Objects.toString(r.displayName(), "")));
+                    }
+                }
+                yield json(rows);
+            }
+            case "POST registrations" -> {
+                List<Map<String, Object>> inserted = new ArrayList<>();
+                for (JsonNode row : objectMapper.readTree(body)) {
+                    RegistrationRow r = new RegistrationRow(row.path("user_id").asLong(), row.path("username").asText(null),
+                            row.path("display_name").asText(null), row.path("lesson_date").asText(), row.path("lesson_type").asText());
+                    if (registrations.putIfAbsent(key(r.userId(), r.lessonDate(), r.lessonType()), r) == null) {
+                        inserted.add(Map.of("user_id", r.userId(), "lesson_date", r.lessonDate(), "lesson_type", r.lessonType()));
+                    }
+                }
+                yield new Reply(201, objectMapper.writeValueAsString(inserted));
+            }
+            case "DELETE registrations" -> {
+                String date = eq(params, "lesson_date");
+                String lessonType = eq(params, "lesson_type");
+                String ids = params.get("user_id");
+                List<Map<String, Object>> deleted = new ArrayList<>();
+                for (String id : ids.substring("in.(".length(), ids.length() - 1).split(",")) {
+                    long userId = Long.parseLong(id);
+                    if (registrations.remove(key(userId, date, lessonType)) != null) {
+                        deleted.add(Map.of("user_id", userId));
+                    }
+                }
+                yield json(deleted);
+            }
+            case "POST channel_messages" -> {
+                JsonNode row = objectMapper.readTree(body);
+                Map<String, Object> message = new LinkedHashMap<>();
+                message.put("message_id", row.path("message_id").asInt());
+                message.put("lesson_type", row.path("lesson_type").asText());
+                message.put("lesson_date", row.path("lesson_date").asText());
+                message.put("message_text", row.path("message_text").asText());
+                messages.put((Integer) message.get("message_id"), message);
+                yield new Reply(201, null);
+            }
+            case "GET channel_messages" -> {
+                String date = eq(params, "lesson_date");
+                String lessonType = eq(params, "lesson_type");
+                yield json(messages.values().stream()
+                        .filter(m -> m.get("lesson_date").equals(date) && m.get("lesson_type").equals(lessonType))
+                        .toList());
+            }
+            case "DELETE channel_messages" -> {
+                messages.remove(Integer.valueOf(eq(params, "message_id")));
+                yield new Reply(204, null);
+            }
+            case "GET bot_settings" -> json(List.of(Map.of("notifications_enabled", notificationsEnabled)));
+            case "POST bot_settings" -> {
+                notificationsEnabled = objectMapper.readTree(body).path("notifications_enabled").asBoolean(true);
+                yield new Reply(201, null);
+            }
+            default -> new Reply(404, "{\"message\":\"unknown table\"}");
+        };
+    }
+
+    @Override
+    protected Reply injectedError() {
+        return new Reply(503, "{\"message\":\"injected error\"}");
+    }
+
+    /**
+     * Сколько записей на дату и тип занятия уже дошло до "базы".
+     */
+    synchronized int registrationCount(String lessonDate, String lessonType) {
+        int count = 0;
+        for (RegistrationRow r : registrations.values()) {
+            if (r.lessonDate().equals(lessonDate) && r.lessonType().equals(lessonType)) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    private Reply json(Object rows) throws IOException {
+        return new Reply(200, objectMapper.writeValueAsString(rows));
+    }
+
+    private static String key(long userId, String lessonDate, String lessonType) {
+        return userId + "/" + lessonDate + "/" + lessonType;
+    }
+
+    private static String eq(Map<String, String> params, String name) {
+        String value = params.get(name);
+        return value != null && value.startsWith("eq.") ? value.substring("eq.".length()) : value;
+    }
+
+    private static Map<String, String> query(String rawQuery) {
+        Map<String, String> params = new HashMap<>();
+        if (rawQuery != null) {
+            for (String pair : rawQuery.split("&")) {
+                int eq = pair.indexOf('=');
+                if (eq > 0) {
+                    params.put(pair.substring(0, eq), URLDecoder.decode(pair.substring(eq + 1), StandardCharsets.UTF_8));
+                }
+            }
+        }
+        return params;
+    }
+}
@@ -0,0 +1,136 @@
+package org.example.loadtest;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Основа локальных заглушек внешних сервисов: HTTP на loopback, искусственная задержка
+ * (база + случайный разброс), доля искусственных ошибок и счетчики вызовов по операциям.
+ */
+abstract class StubServer implements AutoCloseable {
+
+    /**
+     * Ответ заглушки: код и JSON-тело (null - без тела).
+     */
+    record Reply(int status, String body) {
+    }
+
+    private final String name;
+    private final long latencyMs;
+    private final long jitterMs;
+    private final double errorRate;
+    private final HttpServer server;
+    private final ExecutorService executor;
+
+    private final Map<String, LongAdder> calls = new ConcurrentHashMap<>();
+    private final LongAdder injectedErrors = new LongAdder();
+
+    StubServer(String name, long latencyMs, long jitterMs, double errorRate, int threads) throws IOException {
+        // Без TCP_NODELAY маленькие ответы ждут delayed ACK и задержка заглушки искажается
+        System.setProperty("sun.net.httpserver.nodelay", "true");
+        this.name = name;
+        this.latencyMs = latencyMs;
+        this.jitterMs = jitterMs;
+        this.errorRate = errorRate;
+        this.executor = Executors.newFixedThreadPool(threads);
+        this.server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 1024);
+        this.server.createContext("/", this::handle);
+        this.server.setExecutor(executor);
+        this.server.start();
+    }
+
+    String url() {
+        return "http://127.0.0.1:" + server.getAddress().getPort();
+    }
+
+    /**
+     * Название операции для счетчиков, например "POST registrations" или "sendMessage".
+     */
+    protected abstract String operation(HttpExchange exchange);
+
+    protected abstract Reply reply(HttpExchange exchange, String operation, byte[] body) throws IOException;
+
+    protected abstract Reply injectedError();
+
+    private void handle(HttpExchange exchange) throws IOException {
+        try {
+            String operation = operation(exchange);
+            byte[] body = exchange.getRequestBody().readAllBytes();
+            calls.computeIfAbsent(operation, k -> new LongAdder()).increment();
+
+            long delay = latencyMs + (jitterMs > 0 ? ThreadLocalRandom.current().nextLong(jitterMs + 1) : 0);
+            if (delay > 0) {
+                Thread.sleep(delay);
+            }
+
+            Reply reply;
+            if (errorRate > 0 && ThreadLocalRandom.current().nextDouble() < errorRate) {
+                injectedErrors.increment();
+                reply = injectedError();
+            } else {
+                reply = reply(exchange, operation, body);
+            }
+            send(exchange, reply);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (RuntimeException e) {
+            send(exchange, new Reply(500, "{\"message\":\"" + e.getClass().getSimpleName() + "\"}"));
+        } finally {
+            exchange.close();
+        }
+    }
+
+    private static void send(HttpExchange exchange, Reply reply) throws IOException {
+        if (reply.body() == null) {
+            exchange.sendResponseHeaders(reply.status(), -1);
+            return;
+        }
+        byte[] json = reply.body().getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", "application/json");
+        exchange.sendResponseHeaders(reply.status(), json.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(json);
+        }
+    }
+
+    String name() {
+        return name;
+    }
+
+    Map<String, Long> calls() {
+        Map<String, Long> snapshot = new TreeMap<>();
+        calls.forEach((operation, count) -> snapshot.put(operation, count.sum()));
+        return snapshot;
+    }
+
+    long totalCalls() {
+        return calls.values().stream().mapToLong(LongAdder::sum).sum();
+    }
+
+    long injectedErrors() {
+        return injectedErrors.sum();
+    }
+
+    void resetCounters() {
+        calls.clear();
+        injectedErrors.reset();
+    }
+
+    @Override
+    public void close() {
+        server.stop(0);
+        executor.shutdownNow();
+    }
+}
@@ -0,0 +1,54 @@
+package org.example.loadtest;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.sun.net.httpserver.HttpExchange;
+
+import java.io.IOException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Заглушка Telegram Bot API: /bot<token>/<method>. Отвечает как Telegram на методы,
+ * которые вызывает бот; sendMessage возвращает сообщение с новым message_id.
+ */
+final class TelegramApiStub extends StubServer {
+
+    private final ObjectMapper objectMapper;
+    private final AtomicInteger messageIds = new AtomicInteger(1000);
+
+    TelegramApiStub(ObjectMapper objectMapper, long latencyMs, long jitterMs, double errorRate) throws IOException {
+        super("Telegram", latencyMs, jitterMs, errorRate, 64);
+        this.objectMapper = objectMapper;
+    }
+
+    @Override
+    protected String operation(HttpExchange exchange) {
+        String path = exchange.getRequestURI().getPath();
+        return path.substring(path.lastIndexOf('/') + 1);
+    }
+
+    @Override
+    protected Reply reply(HttpExchange exchange, String operation, byte[] body) throws IOException {
+        return switch (operation) {
+            case "sendMessage" -> {
+                JsonNode request = body.length > 0 ? objectMapper.readTree(body) : objectMapper.createObjectNode();
+                String chatId = request.path("chat_id").asText("0");
+                yield ok("{\"message_id\":" + messageIds.incrementAndGet() + ",\"date\":" + System.currentTimeMillis() / 1000 +
+                        ",\"chat\":{\"id\":" + chatId + ",\"type\":\"" + (chatId.startsWith("-") ? "channel" : "private") + "\"}" +
+                        ",\"text\":" + objectMapper.writeValueAsString(request.path("text").asText("")) + "}");
+            }
+            case "getMe" -> ok("{\"id\":1,\"is_bot\":true,\"first_name\":\"Stub\",\"username\":\"stub_bot\"}");
+            case "getWebhookInfo" -> ok("{\"url\":\"\",\"has_custom_certificate\":false,\"pending_update_count\":0}");
+            default -> ok("true");
+        };
+    }
+
+    @Override
+    protected Reply injectedError() {
+        return new Reply(500, "{\"ok\":false,\"error_code\":500,\"description\":\"Internal Server Error: injected\"}");
+    }
+
+    private static Reply ok(String result) {
+        return new Reply(200, "{\"ok\":true,\"result\":" + result + "}");
+    }
+}
@@ -0,0 +1,248 @@
+package org.example;
+
+import java.time.DayOfWeek;
+import java.time.LocalDate;
+import java.time.format.DateTimeParseException;
+import java.util.Arrays;
+
+/**
+ * Компактный формат callback_data кнопок: "~" и base64url (без паддинга) семи байт
+ * [опкод][тип занятия][день недели][день эпохи, int] - всего 11 символов при лимите Telegram в 64 байта.
+ * Разобранные данные упакованы в long теми же байтами; decode и аксессоры ничего не аллоцируют.
+ * Кнопки, уже опубликованные в старом формате ("signup_morning_2025-10-13", "day_MONDAY_morning",
+ * "back_to_main" ...), разбираются медленным путем в тот же long.
+ */
+public final class CallbackData {
+
+    // === ОПКОДЫ ===
+
+    public static final int SIGNUP = 1;
+    public static final int CANCEL = 2;
+    public static final int SCHEDULE = 3;
+    public static final int DAY = 4;
+    public static final int EDIT = 5;
+    public static final int DELETE = 6;
+    public static final int BACK_TO_SCHEDULE = 7;
+    public static final int BACK_TO_MAIN = 8;
+
+    /**
+     * Размер таблицы маршрутов: опкоды 1..OPCODES-1.
+     */
+    public static final int OPCODES = 9;
+
+    /**
+     * Результат decode для данных, которые не удалось разобрать.
+     */
+    public static final long INVALID = -1L;
+
+    /**
+     * Имена опкодов для тега kind в метриках; обе кнопки "Назад" - "back".
+     */
+    private static final String[] KINDS = {
+            "unknown", "signup", "cancel", "schedule", "day", "edit", "delete", "back", "back"};
+
+    private static final String[] LESSON_TYPES = {null, "morning", "evening"};
+    private static final DayOfWeek[] DAYS = DayOfWeek.values();
+
+    private static final char MARKER = '~';
+    private static final int ENCODED_CHARS = 10;
+    private static final char[] ALPHABET =
+            "ABCDEFGHIJKLMNOPQRSTUVWXYZabcdefghijklmnopqrstuvwxyz0123456789-_".toCharArray();
+    private static final byte[] DECODE = new byte[128];
+
+    static {
+        Arrays.fill(DECODE, (byte) -1);
+        for (int i = 0; i < ALPHABET.length; i++) {
+            DECODE[ALPHABET[i]] = (byte) i;
+        }
+    }
+
+    private CallbackData() {
+    }
+
+    // === КОДИРОВАНИЕ ===
+
+    /**
+     * Кнопка записи / отмены под отбивкой: опкод, тип занятия и дата.
+     */
+    public static String lesson(int opcode, String lessonType, LocalDate lessonDate) {
+        return encode(opcode, lessonType, null, lessonDate);
+    }
+
+    /**
+     * Кнопка админского меню расписания: опкод, тип занятия и, если нужен, день недели.
+     */
+    public static String schedule(int opcode, String lessonType, DayOfWeek dayOfWeek) {
+        return encode(opcode, lessonType, dayOfWeek, null);
+    }
+
+    /**
+     * Кнопка без параметров ("Назад").
+     */
+    public static String of(int opcode) {
+        return encode(opcode, null, null, null);
+    }
+
+    private static String encode(int opcode, String lessonType, DayOfWeek dayOfWeek, LocalDate lessonDate) {
+        if (opcode <= 0 || opcode >= OPCODES) {
+            throw new IllegalArgumentException("Неизвестный опкод callback: " + opcode);
+        }
+        long packed = pack(opcode, lessonTypeIndex(lessonType), dayOfWeek != null ? dayOfWeek.getValue() : 0,
+                lessonDate != null ? Math.toIntExact(lessonDate.toEpochDay()) : 0);
+
+        // 56 бит полезной нагрузки + 4 нулевых бита до 10 символов по 6 бит
+        long bits = packed << 4;
+        char[] chars = new char[ENCODED_CHARS + 1];
+        chars[0] = MARKER;
+        for (int i = 0; i < ENCODED_CHARS; i++) {
+            chars[i + 1] = ALPHABET[(int) (bits >>> (6 * (ENCODED_CHARS - 1 - i))) & 0x3F];
+        }
+        return new String(chars);
+    }
+
+    private static int lessonTypeIndex(String lessonType) {
+        if (lessonType == null) {
+            return 0;
+        }
+        for (int i = 1; i < LESSON_TYPES.length; i++) {
+            if (LESSON_TYPES[i].equals(lessonType)) {
+                return i;
+            }
+        }
+        throw new IllegalArgumentException("Неизвестный тип занятия: " + lessonType);
+    }
+
+    private static long pack(int opcode, int lessonType, int dayOfWeek, int epochDay) {
+        return ((long) opcode << 48) | ((long) lessonType << 40) | ((long) dayOfWeek << 32) | (epochDay & 0xFFFFFFFFL);
+    }
+
+    // === РАЗБОР ===
+
+    /**
+     * Разбирает callback_data в упакованный long; INVALID - если формат не распознан.
+     */
+    public static long decode(String data) {
+        if (data == null || data.isEmpty()) {
+            return INVALID;
+        }
+        return data.charAt(0) == MARKER ? decodeCompact(data) : decodeLegacy(data);
+    }
+
+    private static long decodeCompact(String data) {
+        if (data.length() != ENCODED_CHARS + 1) {
+            return INVALID;
+        }
+        long bits = 0;
+        for (int i = 1; i <= ENCODED_CHARS; i++) {
+            char c = data.charAt(i);
+            int value = c < DECODE.length ? DECODE[c] : -1;
+            if (value < 0) {
+                return INVALID;
+            }
+            bits = (bits << 6) | value;
+        }
+        if ((bits & 0xF) != 0) {
+            return INVALID;
+        }
+        return validate(bits >>> 4);
+    }
+
+    /**
+     * Старый строковый формат: "signup_morning_2025-10-13", "schedule_morning", "day_MONDAY_morning",
+     * "edit_MONDAY_morning", "delete_MONDAY_morning", "back_to_schedule", "back_to_main".
+     */
+    private static long decodeLegacy(String data) {
+        if (data.equals("back_to_schedule")) {
+            return pack(BACK_TO_SCHEDULE, 0, 0, 0);
+        }
+        if (data.equals("back_to_main")) {
+            return pack(BACK_TO_MAIN, 0, 0, 0);
+        }
+
+        String[] parts = data.split("_");
+        try {
+            switch (parts[0]) {
+                case "signup", "cancel" -> {
+                    if (parts.length < 3) {
+                        return INVALID;
+                    }
+                    int opcode = parts[0].equals("signup") ? SIGNUP : CANCEL;
+                    int epochDay = Math.toIntExact(LocalDate.parse(parts[2]).toEpochDay());
+                    return validate(pack(opcode, lessonTypeIndex(parts[1]), 0, epochDay));
+                }
+                case "schedule" -> {
+                    if (parts.length < 2) {
+                        return INVALID;
+                    }
+                    return validate(pack(SCHEDULE, lessonTypeIndex(parts[1]), 0, 0));
+                }
+                case "day", "edit", "delete" -> {
+                    if (parts.length < 3) {
+                        return INVALID;
+                    }
+                    int opcode = switch (parts[0]) {
+                        case "day" -> DAY;
+                        case "edit" -> EDIT;
+                        default -> DELETE;
+                    };
+                    return validate(pack(opcode, lessonTypeIndex(parts[2]), DayOfWeek.valueOf(parts[1]).getValue(), 0));
+                }
+                default -> {
+                    return INVALID;
+                }
+            }
+        } catch (IllegalArgumentException | DateTimeParseException | ArithmeticException e) {
+            return INVALID;
+        }
+    }
+
+    private static long validate(long data) {
+        int opcode = (int) (data >>> 48) & 0xFF;
+        int lessonType = (int) (data >>> 40) & 0xFF;
+        int dayOfWeek = (int) (data >>> 32) & 0xFF;
+        if (opcode == 0 || opcode >= OPCODES || lessonType >= LESSON_TYPES.length || dayOfWeek > DAYS.length) {
+            return INVALID;
+        }
+        return switch (opcode) {
+            case SIGNUP, CANCEL, SCHEDULE -> lessonType != 0 ? data : INVALID;
+            case DAY, EDIT, DELETE -> lessonType != 0 && dayOfWeek != 0 ? data : INVALID;
+            default -> data;
+        };
+    }
+
+    // === ПОЛЯ РАЗОБРАННЫХ ДАННЫХ ===
+
+    public static int opcode(long data) {
+        return (int) (data >>> 48) & 0xFF;
+    }
+
+    /**
+     * "morning" / "evening" - те же строковые константы, что и в остальном коде; null - если не задан.
+     */
+    public static String lessonType(long data) {
+        return LESSON_TYPES[(int) (data >>> 40) & 0xFF];
+    }
+
+    /**
+     * День недели; null - если не задан.
+     */
+    public static DayOfWeek dayOfWeek(long data) {
+        int day = (int) (data >>> 32) & 0xFF;
+        return day == 0 ? null : DAYS[day - 1];
+    }
+
+    public static long epochDay(long data) {
+        return (int) data;
+    }
+
+    public static LocalDate lessonDate(long data) {
+        return LocalDate.ofEpochDay(epochDay(data));
+    }
+
+    /**
+     * Вид кнопки для метрик; для INVALID - "unknown".
+     */
+    public static String kind(long data) {
+        return data == INVALID ? KINDS[0] : KINDS[opcode(data)];
+    }
+}
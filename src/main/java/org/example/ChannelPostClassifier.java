@@ -0,0 +1,28 @@
+package org.example;
+
+/**
+ * Определяет по тексту отбивки в канале, к какому занятию она относится:
+ * morning, evening, no_classes или unknown.
+ */
+public final class ChannelPostClassifier {
+
+    private ChannelPostClassifier() {
+    }
+
+    public static String lessonType(String text) {
+        if (text.contains("утренняя практика") || text.contains("Утренняя практика") ||
+                (text.contains("🌅") && text.contains("практика")) ||
+                (text.contains("утренних") && text.contains("занятий нет"))) {
+            return "morning";
+        } else if (text.contains("вечерняя практика") || text.contains("Вечерняя практика") ||
+                (text.contains("🌇") && text.contains("практика")) ||
+                (text.contains("вечерних") && text.contains("занятий нет"))) {
+            return "evening";
+        } else if (text.contains("занятий нет") || text.contains("Отдыхаем") ||
+                text.contains("отдыхаем") || text.contains("нет занятий") ||
+                (text.contains("Ура") && text.contains("занятий нет"))) {
+            return "no_classes";
+        }
+        return "unknown";
+    }
+}
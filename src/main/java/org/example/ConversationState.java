@@ -0,0 +1,15 @@
+package org.example;
+
+import java.time.DayOfWeek;
+
+/**
+ * Незавершенный диалог с пользователем: что бот ждет от него следующим сообщением.
+ */
+public sealed interface ConversationState permits ConversationState.EditingLesson {
+
+    /**
+     * Админ нажал "Изменить" и должен прислать новое описание занятия.
+     */
+    record EditingLesson(DayOfWeek dayOfWeek, String lessonType) implements ConversationState {
+    }
+}
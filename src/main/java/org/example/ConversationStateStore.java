@@ -0,0 +1,217 @@
+package org.example;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.io.*;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.time.DayOfWeek;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Состояния диалогов по chatId: ConcurrentHashMap с временем жизни записи и верхней границей размера.
+ * Брошенный диалог истекает через ttl: при чтении он уже не виден, из памяти его убирает фоновая чистка.
+ * При переполнении сначала выбрасываются истекшие записи, затем - та, что истекает раньше всех.
+ * Если включен снимок, состояния периодически сохраняются на диск и переживают перезапуск.
+ */
+@Component
+public class ConversationStateStore {
+
+    private static final Logger log = LoggerFactory.getLogger(ConversationStateStore.class);
+
+    private static final int SNAPSHOT_VERSION = 1;
+    private static final byte EDITING_LESSON = 1;
+
+    private record Entry(ConversationState state, long expiresAt) {
+    }
+
+    private final Map<Long, Entry> states = new ConcurrentHashMap<>();
+    private final AtomicBoolean dirty = new AtomicBoolean();
+
+    private final long ttlMillis;
+    private final int maxEntries;
+    private final Path stateFile;
+    private final Counter evictedCounter;
+
+    public ConversationStateStore(MeterRegistry meterRegistry,
+                                  @Value("${bot.state.ttl-minutes:30}") long ttlMinutes,
+                                  @Value("${bot.state.max-entries:1000}") int maxEntries,
+                                  @Value("${bot.state.snapshot-enabled:true}") boolean snapshotEnabled,
+                                  @Value("${app.data-dir:data}") String dataDir) {
+        this.ttlMillis = ttlMinutes * 60_000;
+        this.maxEntries = maxEntries;
+        this.stateFile = snapshotEnabled ? Path.of(dataDir, "conversation-states.bin") : null;
+        this.evictedCounter = Counter.builder("bot.conversation.evicted")
+                .description("Состояния диалогов, удаленные по истечении или переполнению")
+                .register(meterRegistry);
+        Gauge.builder("bot.conversation.states", states, Map::size)
+                .description("Незавершенные диалоги в памяти")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Текущее состояние диалога; null - если его нет или оно истекло.
+     */
+    public ConversationState get(long chatId) {
+        Entry entry = states.get(chatId);
+        if (entry == null) {
+            return null;
+        }
+        if (entry.expiresAt() <= System.currentTimeMillis()) {
+            if (states.remove(chatId, entry)) {
+                evictedCounter.increment();
+                dirty.set(true);
+            }
+            return null;
+        }
+        return entry.state();
+    }
+
+    public void put(long chatId, ConversationState state) {
+        long now = System.currentTimeMillis();
+        if (states.size() >= maxEntries && !states.containsKey(chatId)) {
+            makeRoom(now);
+        }
+        states.put(chatId, new Entry(state, now + ttlMillis));
+        dirty.set(true);
+    }
+
+    public void remove(long chatId) {
+        if (states.remove(chatId) != null) {
+            dirty.set(true);
+        }
+    }
+
+    /**
+     * Граница размера соблюдается приблизительно: параллельные put могут ненадолго превысить ее на число потоков.
+     */
+    private void makeRoom(long now) {
+        evictExpired(now);
+        while (states.size() >= maxEntries) {
+            Map.Entry<Long, Entry> oldest = null;
+            for (Map.Entry<Long, Entry> candidate : states.entrySet()) {
+                if (oldest == null || candidate.getValue().expiresAt() < oldest.getValue().expiresAt()) {
+                    oldest = candidate;
+                }
+            }
+            if (oldest == null) {
+                return;
+            }
+            if (states.remove(oldest.getKey(), oldest.getValue())) {
+                evictedCounter.increment();
+                log.warn("⚠️ Хранилище диалогов заполнено ({}), вытеснен диалог {}", maxEntries, oldest.getKey());
+            }
+        }
+    }
+
+    @Scheduled(fixedDelay = 60000)
+    public void evictExpired() {
+        evictExpired(System.currentTimeMillis());
+    }
+
+    private void evictExpired(long now) {
+        states.forEach((chatId, entry) -> {
+            if (entry.expiresAt() <= now && states.remove(chatId, entry)) {
+                evictedCounter.increment();
+                dirty.set(true);
+                log.debug("⌛ Диалог {} истек: {}", chatId, entry.state());
+            }
+        });
+    }
+
+    // === СНИМОК НА ДИСК ===
+
+    @PostConstruct
+    public void load() {
+        if (stateFile == null || !Files.exists(stateFile)) {
+            return;
+        }
+        long now = System.currentTimeMillis();
+        int restored = 0;
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(stateFile)))) {
+            int version = in.readInt();
+            if (version != SNAPSHOT_VERSION) {
+                log.warn("⚠️ Формат снимка диалогов изменился ({} -> {}), состояние сброшено", version, SNAPSHOT_VERSION);
+                return;
+            }
+            int count = in.readInt();
+            for (int i = 0; i < count; i++) {
+                long chatId = in.readLong();
+                long expiresAt = in.readLong();
+                ConversationState state = readState(in);
+                if (expiresAt > now && states.size() < maxEntries) {
+                    states.putIfAbsent(chatId, new Entry(state, expiresAt));
+                    restored++;
+                }
+            }
+            log.info("✅ Восстановлено незавершенных диалогов: {}", restored);
+        } catch (IOException e) {
+            log.error("❌ Ошибка чтения снимка диалогов", e);
+        }
+    }
+
+    @Scheduled(fixedDelay = 5000)
+    @PreDestroy
+    public void persist() {
+        if (stateFile == null || !dirty.getAndSet(false)) {
+            return;
+        }
+        List<Map.Entry<Long, Entry>> snapshot = new ArrayList<>(states.entrySet());
+
+        try {
+            Files.createDirectories(stateFile.getParent());
+            Path tmp = stateFile.resolveSibling(stateFile.getFileName() + ".tmp");
+            try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(tmp)))) {
+                out.writeInt(SNAPSHOT_VERSION);
+                out.writeInt(snapshot.size());
+                for (Map.Entry<Long, Entry> entry : snapshot) {
+                    out.writeLong(entry.getKey());
+                    out.writeLong(entry.getValue().expiresAt());
+                    writeState(out, entry.getValue().state());
+                }
+            }
+            Files.move(tmp, stateFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            dirty.set(true);
+            log.error("❌ Ошибка сохранения снимка диалогов", e);
+        }
+    }
+
+    private static void writeState(DataOutputStream out, ConversationState state) throws IOException {
+        if (state instanceof ConversationState.EditingLesson editing) {
+            out.writeByte(EDITING_LESSON);
+            out.writeByte(editing.dayOfWeek().getValue());
+            out.writeUTF(editing.lessonType());
+        } else {
+            throw new IllegalStateException("Неизвестное состояние диалога: " + state);
+        }
+    }
+
+    /**
+     * Неизвестный вид - IOException: длина записи зависит от вида, и дальше снимок не прочитать.
+     * Новые виды состояний добавляются вместе с повышением SNAPSHOT_VERSION.
+     */
+    private static ConversationState readState(DataInputStream in) throws IOException {
+        byte kind = in.readByte();
+        if (kind == EDITING_LESSON) {
+            DayOfWeek dayOfWeek = DayOfWeek.of(in.readByte());
+            String lessonType = in.readUTF();
+            return new ConversationState.EditingLesson(dayOfWeek, lessonType);
+        }
+        throw new IOException("Неизвестный вид состояния диалога в снимке: " + kind);
+    }
+}
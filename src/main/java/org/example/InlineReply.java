@@ -0,0 +1,56 @@
+package org.example;
+
+import org.telegram.telegrambots.meta.api.methods.BotApiMethod;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Передача основного ответа бота из воркера в HTTP-поток webhook.
+ * Если ответ готов вовремя, контроллер возвращает его в теле ответа Telegram,
+ * иначе воркер отправляет его сам отдельным запросом.
+ */
+public class InlineReply {
+
+    private static final int PENDING = 0;
+    private static final int READY = 1;
+    private static final int ABANDONED = 2;
+
+    private final AtomicInteger state = new AtomicInteger(PENDING);
+    private final CompletableFuture<BotApiMethod<?>> result = new CompletableFuture<>();
+
+    /**
+     * Вызывается воркером. Возвращает true, если ответ заберет контроллер,
+     * false - если контроллер уже не ждет и ответ нужно отправить самостоятельно.
+     */
+    boolean offer(BotApiMethod<?> reply) {
+        if (state.compareAndSet(PENDING, READY)) {
+            result.complete(reply);
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * Вызывается контроллером: ждет ответ не дольше timeoutMs, иначе отказывается от него.
+     */
+    BotApiMethod<?> await(long timeoutMs) {
+        if (timeoutMs > 0) {
+            try {
+                return result.get(timeoutMs, TimeUnit.MILLISECONDS);
+            } catch (TimeoutException e) {
+                // Не дождались - отказываемся ниже
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } catch (ExecutionException e) {
+                return null;
+            }
+        }
+
+        // Воркер мог отдать ответ в последний момент
+        return state.compareAndSet(PENDING, ABANDONED) ? null : result.join();
+    }
+}
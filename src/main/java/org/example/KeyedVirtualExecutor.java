@@ -0,0 +1,82 @@
+package org.example;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Исполнитель режима VIRTUAL: каждая задача получает свой виртуальный поток,
+ * а задачи с одним ключом выполняются по порядку - каждая ждет хвост цепочки своего ключа.
+ * Ожидающий виртуальный поток ничего не стоит, поэтому полосы не нужны;
+ * ограничено только общее число незавершенных задач.
+ */
+public final class KeyedVirtualExecutor {
+
+    private final ThreadFactory threadFactory;
+    private final int capacity;
+    private final ConcurrentHashMap<Long, CompletableFuture<Void>> tails = new ConcurrentHashMap<>();
+    private final AtomicInteger pending = new AtomicInteger();
+    private volatile boolean shutdown;
+
+    public KeyedVirtualExecutor(String name, int capacity) {
+        this.threadFactory = UpdateExecutors.virtualThreadFactory(name + "-vt-");
+        if (threadFactory == null) {
+            throw new IllegalStateException("Виртуальные потоки недоступны на Java " + Runtime.version().feature());
+        }
+        this.capacity = Math.max(1, capacity);
+    }
+
+    /**
+     * Запускает задачу после всех ранее принятых задач того же ключа.
+     * Возвращает false, если исполнитель остановлен или незавершенных задач уже capacity.
+     */
+    public boolean execute(long key, Runnable task) {
+        if (shutdown) {
+            return false;
+        }
+        if (pending.incrementAndGet() > capacity) {
+            pending.decrementAndGet();
+            return false;
+        }
+
+        CompletableFuture<Void> done = new CompletableFuture<>();
+        CompletableFuture<Void> previous = tails.put(key, done);
+        threadFactory.newThread(() -> {
+            try {
+                if (previous != null) {
+                    previous.join();
+                }
+                task.run();
+            } finally {
+                tails.remove(key, done);
+                pending.decrementAndGet();
+                done.complete(null);
+            }
+        }).start();
+        return true;
+    }
+
+    /**
+     * Количество принятых, но еще не завершенных задач (ожидающих и выполняющихся).
+     */
+    public int pending() {
+        return pending.get();
+    }
+
+    /**
+     * Перестает принимать задачи и ждет завершения принятых не дольше timeout.
+     */
+    public boolean shutdown(long timeout, TimeUnit unit) throws InterruptedException {
+        shutdown = true;
+        long deadline = System.nanoTime() + unit.toNanos(timeout);
+        while (pending.get() > 0) {
+            if (System.nanoTime() >= deadline) {
+                return false;
+            }
+            Thread.sleep(10);
+        }
+        return true;
+    }
+}
@@ -0,0 +1,16 @@
+package org.example;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Выборка частых отладочных событий: пропускает каждое every-е, остальные отбрасывает.
+ * Вызывать после проверки isDebugEnabled, чтобы при выключенном DEBUG не трогать счетчик.
+ */
+public final class LogSampler {
+
+    private final AtomicLong counter = new AtomicLong();
+
+    public boolean sample(int every) {
+        return every <= 1 || counter.getAndIncrement() % every == 0;
+    }
+}
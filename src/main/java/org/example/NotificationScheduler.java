@@ -40,14 +40,6 @@ public class NotificationScheduler {
         if (hasMorning) {
             System.out.println("🌅 Отправка утреннего уведомления...");
             yogaBot.sendMorningNotification(morningLesson);
-
-            // Задержка 1 минута перед вечерним
-            try {
-                System.out.println("⏳ Ждем 1 минуту перед вечерним уведомлением...");
-                Thread.sleep(60000); // 60 секунд
-            } catch (InterruptedException e) {
-                e.printStackTrace();
-            }
         }
 
         if (hasEvening) {
@@ -1,5 +1,6 @@
 package org.example;
 
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
 import org.springframework.web.client.RestTemplate;
@@ -8,7 +9,8 @@ import java.time.LocalDateTime;
 @Service
 public class PingService {
 
-    private final String appUrl = "https://yogabot-8u6q.onrender.com";
+    @Value("${app.url:https://yogabot-8u6q.onrender.com}")
+    private String appUrl;
     private final RestTemplate restTemplate = new RestTemplate();
 
     private LocalDateTime lastSuccessfulPing;
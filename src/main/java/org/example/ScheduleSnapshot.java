@@ -0,0 +1,84 @@
+package org.example;
+
+import java.time.DayOfWeek;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Неизменяемый снимок недельного расписания.
+ * Публикуется целиком через AtomicReference: изменение админом создает новый снимок
+ * со следующей версией, читатели никогда не видят расписание в середине правки.
+ */
+public final class ScheduleSnapshot {
+
+    public static final String NOT_SPECIFIED = "Не указано";
+
+    private static final Map<String, String> NOT_SPECIFIED_DAY = Map.of(
+            "morning", NOT_SPECIFIED,
+            "evening", NOT_SPECIFIED
+    );
+
+    public static final ScheduleSnapshot EMPTY = new ScheduleSnapshot(0, new EnumMap<>(DayOfWeek.class));
+
+    private final long version;
+    private final EnumMap<DayOfWeek, Map<String, String>> days;
+
+    private ScheduleSnapshot(long version, EnumMap<DayOfWeek, Map<String, String>> days) {
+        this.version = version;
+        this.days = days;
+    }
+
+    /**
+     * Создает снимок из карты "день -> (тип занятия -> описание)", копируя ее.
+     */
+    public static ScheduleSnapshot of(long version, Map<DayOfWeek, Map<String, String>> schedule) {
+        EnumMap<DayOfWeek, Map<String, String>> days = new EnumMap<>(DayOfWeek.class);
+        for (Map.Entry<DayOfWeek, Map<String, String>> entry : schedule.entrySet()) {
+            days.put(entry.getKey(), Collections.unmodifiableMap(new HashMap<>(entry.getValue())));
+        }
+        return new ScheduleSnapshot(version, days);
+    }
+
+    public long version() {
+        return version;
+    }
+
+    public boolean hasDay(DayOfWeek dayOfWeek) {
+        return days.containsKey(dayOfWeek);
+    }
+
+    public int size() {
+        return days.size();
+    }
+
+    /**
+     * Занятия дня (неизменяемая карта). Для дня без расписания - "Не указано".
+     */
+    public Map<String, String> lessons(DayOfWeek dayOfWeek) {
+        Map<String, String> lessons = days.get(dayOfWeek);
+        return lessons != null ? lessons : NOT_SPECIFIED_DAY;
+    }
+
+    public String lesson(DayOfWeek dayOfWeek, String lessonType) {
+        Map<String, String> lessons = days.get(dayOfWeek);
+        return lessons != null ? lessons.get(lessonType) : null;
+    }
+
+    /**
+     * Новый снимок со следующей версией, в котором изменено одно занятие.
+     */
+    public ScheduleSnapshot withLesson(DayOfWeek dayOfWeek, String lessonType, String description) {
+        EnumMap<DayOfWeek, Map<String, String>> copy = new EnumMap<>(days);
+        Map<String, String> lessons = new HashMap<>(copy.getOrDefault(dayOfWeek, Map.of()));
+        lessons.put(lessonType, description);
+        copy.put(dayOfWeek, Collections.unmodifiableMap(lessons));
+        return new ScheduleSnapshot(version + 1, copy);
+    }
+
+    @Override
+    public String toString() {
+        return "ScheduleSnapshot{version=" + version + ", days=" + days + "}";
+    }
+}
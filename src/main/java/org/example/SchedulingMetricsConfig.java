@@ -0,0 +1,26 @@
+package org.example;
+
+import io.micrometer.observation.ObservationRegistry;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.scheduling.annotation.SchedulingConfigurer;
+import org.springframework.scheduling.config.ScheduledTaskRegistrar;
+
+/**
+ * Наблюдение за @Scheduled задачами: каждое выполнение попадает в таймер tasks.scheduled.execution
+ * с тегами code.namespace (класс), code.function (метод), outcome и exception.
+ */
+@Configuration
+public class SchedulingMetricsConfig implements SchedulingConfigurer {
+
+    private final ObjectProvider<ObservationRegistry> observationRegistry;
+
+    public SchedulingMetricsConfig(ObjectProvider<ObservationRegistry> observationRegistry) {
+        this.observationRegistry = observationRegistry;
+    }
+
+    @Override
+    public void configureTasks(ScheduledTaskRegistrar taskRegistrar) {
+        observationRegistry.ifAvailable(taskRegistrar::setObservationRegistry);
+    }
+}
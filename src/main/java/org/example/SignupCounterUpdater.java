@@ -0,0 +1,315 @@
+package org.example;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.example.service.SupabaseService;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Lazy;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.telegram.telegrambots.bots.TelegramWebhookBot;
+import org.telegram.telegrambots.meta.api.methods.updatingmessages.EditMessageReplyMarkup;
+import org.telegram.telegrambots.meta.api.objects.replykeyboard.InlineKeyboardMarkup;
+import org.telegram.telegrambots.meta.api.objects.replykeyboard.buttons.InlineKeyboardButton;
+import org.telegram.telegrambots.meta.exceptions.TelegramApiException;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+
+import java.io.*;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Счетчик записавшихся на кнопке "Записаться" под отбивками в канале: "✅ Записаться (7)".
+ * Записи и отмены за окно debounce-ms сливаются в одно редактирование кнопок на занятие,
+ * а одна и та же отбивка редактируется не чаще раза в min-interval-ms.
+ * Редактируются только отбивки, которые бот отправил сам и чья кнопка записи ведет на это занятие:
+ * channel_messages для этого не годится - saveMessageInfo пишет туда завтрашнюю дату для любой отбивки,
+ * включая сегодняшние и "занятий нет". Отправленные отбивки сохраняются на диск и переживают перезапуск.
+ */
+@Component
+public class SignupCounterUpdater {
+
+    private static final Logger log = LoggerFactory.getLogger(SignupCounterUpdater.class);
+
+    private static final int SNAPSHOT_VERSION = 1;
+
+    @FunctionalInterface
+    public interface Editor {
+        void edit(EditMessageReplyMarkup edit) throws TelegramApiException;
+    }
+
+    private record LessonKey(LocalDate lessonDate, String lessonType) {
+    }
+
+    /**
+     * Отбивки одного занятия и состояние их счетчика. shown - число на кнопке после последней правки.
+     */
+    private static final class Posts {
+        final Set<Integer> messageIds = ConcurrentHashMap.newKeySet();
+        final AtomicBoolean scheduled = new AtomicBoolean();
+        volatile long lastEditAt = System.nanoTime() - TimeUnit.DAYS.toNanos(1);
+        volatile int shown;
+    }
+
+    private final Map<LessonKey, Posts> posts = new ConcurrentHashMap<>();
+    private final AtomicBoolean dirty = new AtomicBoolean();
+    private final Path snapshotFile;
+    private final SupabaseService supabaseService;
+    private final Editor editor;
+    private final boolean enabled;
+    private final long debounceNanos;
+    private final long minIntervalNanos;
+    private final Counter changeCounter;
+    private final Counter editCounter;
+    private final Counter editErrorCounter;
+
+    @Value("${app.channelId:}")
+    private String channelId;
+
+    @Autowired
+    public SignupCounterUpdater(SupabaseService supabaseService,
+                                @Lazy TelegramWebhookBot bot,
+                                @Value("${bot.signup-counter.enabled:true}") boolean enabled,
+                                @Value("${bot.signup-counter.debounce-ms:2000}") long debounceMs,
+                                @Value("${bot.signup-counter.min-interval-ms:3000}") long minIntervalMs,
+                                @Value("${app.data-dir:data}") String dataDir,
+                                MeterRegistry meterRegistry) {
+        this(supabaseService, bot::execute, enabled, debounceMs, minIntervalMs, dataDir, meterRegistry);
+    }
+
+    /**
+     * dataDir = null - без снимка отправленных отбивок на диске.
+     */
+    public SignupCounterUpdater(SupabaseService supabaseService, Editor editor, boolean enabled,
+                                long debounceMs, long minIntervalMs, String dataDir, MeterRegistry meterRegistry) {
+        this.supabaseService = supabaseService;
+        this.snapshotFile = dataDir != null ? Path.of(dataDir, "signup-posts.bin") : null;
+        this.editor = editor;
+        this.enabled = enabled;
+        this.debounceNanos = TimeUnit.MILLISECONDS.toNanos(debounceMs);
+        this.minIntervalNanos = TimeUnit.MILLISECONDS.toNanos(minIntervalMs);
+        this.changeCounter = Counter.builder("channel.signup-counter.changes")
+                .description("Изменения списков записавшихся, ждущие обновления счетчика на отбивке")
+                .register(meterRegistry);
+        this.editCounter = Counter.builder("channel.signup-counter.edits")
+                .description("Редактирования кнопок отбивки с новым счетчиком")
+                .tag("outcome", "success")
+                .register(meterRegistry);
+        this.editErrorCounter = Counter.builder("channel.signup-counter.edits")
+                .description("Редактирования кнопок отбивки с новым счетчиком")
+                .tag("outcome", "error")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Кнопки под отбивкой занятия; count = 0 - без счетчика, capacity > 0 - "7/20".
+     */
+    public static InlineKeyboardMarkup markup(String lessonType, LocalDate lessonDate, int count, int capacity) {
+        String signupText = "✅ Записаться";
+        if (count > 0) {
+            signupText += capacity > 0 ? " (" + count + "/" + capacity + ")" : " (" + count + ")";
+        }
+        InlineKeyboardButton signup = new InlineKeyboardButton(signupText);
+        signup.setCallbackData(CallbackData.lesson(CallbackData.SIGNUP, lessonType, lessonDate));
+        InlineKeyboardButton cancel = new InlineKeyboardButton("❌ Отменить запись");
+        cancel.setCallbackData(CallbackData.lesson(CallbackData.CANCEL, lessonType, lessonDate));
+
+        InlineKeyboardMarkup markup = new InlineKeyboardMarkup();
+        markup.setKeyboard(List.of(List.of(signup, cancel)));
+        return markup;
+    }
+
+    /**
+     * Только что отправленная отбивка: кнопку записи ищем в ее разметке, счетчик выставляем сразу,
+     * если на занятие уже кто-то записан.
+     */
+    public void posted(Integer messageId, InlineKeyboardMarkup markup) {
+        if (!enabled || messageId == null || markup == null) {
+            return;
+        }
+        for (List<InlineKeyboardButton> row : markup.getKeyboard()) {
+            for (InlineKeyboardButton button : row) {
+                long data = CallbackData.decode(button.getCallbackData());
+                if (data != CallbackData.INVALID && CallbackData.opcode(data) == CallbackData.SIGNUP) {
+                    LocalDate lessonDate = CallbackData.lessonDate(data);
+                    String lessonType = CallbackData.lessonType(data);
+                    Posts lesson = posts.computeIfAbsent(new LessonKey(lessonDate, lessonType), key -> new Posts());
+                    lesson.messageIds.add(messageId);
+                    lesson.shown = 0;
+                    dirty.set(true);
+                    changed(lessonDate, lessonType);
+                    return;
+                }
+            }
+        }
+    }
+
+    /**
+     * Список записавшихся на занятие изменился. Правка уходит по окончании окна, но не раньше
+     * min-interval после предыдущей; все изменения до этого момента попадут в нее.
+     */
+    public void changed(LocalDate lessonDate, String lessonType) {
+        if (!enabled) {
+            return;
+        }
+        changeCounter.increment();
+        LessonKey key = new LessonKey(lessonDate, lessonType);
+        Posts lesson = posts.computeIfAbsent(key, k -> new Posts());
+        if (!lesson.scheduled.compareAndSet(false, true)) {
+            return;
+        }
+        long delay = Math.max(debounceNanos, lesson.lastEditAt + minIntervalNanos - System.nanoTime());
+        Mono.delay(Duration.ofNanos(delay))
+                .publishOn(Schedulers.boundedElastic())
+                .subscribe(tick -> flush(key, lesson));
+    }
+
+    /**
+     * Правки Telegram блокируют поток, поэтому flush выполняется на boundedElastic.
+     */
+    private void flush(LessonKey key, Posts lesson) {
+        // Изменения, пришедшие после этой точки, запланируют следующую правку
+        lesson.scheduled.set(false);
+        try {
+            if (lesson.messageIds.isEmpty()) {
+                return;
+            }
+
+            Map<String, List<String>> registrations = supabaseService.getRegistrationsForDateAsync(key.lessonDate()).block();
+            int count = registrations != null ? registrations.getOrDefault(key.lessonType(), List.of()).size() : 0;
+            if (count == lesson.shown) {
+                return;
+            }
+
+            InlineKeyboardMarkup markup = markup(key.lessonType(), key.lessonDate(), count,
+                    supabaseService.getCapacity(key.lessonType()));
+            for (Integer messageId : lesson.messageIds) {
+                edit(lesson, messageId, markup);
+            }
+            lesson.shown = count;
+            lesson.lastEditAt = System.nanoTime();
+            log.debug("🔢 Счетчик записавшихся на {} {}: {} ({} отбивок)", key.lessonDate(), key.lessonType(),
+                    count, lesson.messageIds.size());
+        } catch (Exception e) {
+            log.error("❌ Ошибка обновления счетчика записавшихся на {} {}", key.lessonDate(), key.lessonType(), e);
+        }
+    }
+
+    private void edit(Posts lesson, Integer messageId, InlineKeyboardMarkup markup) {
+        EditMessageReplyMarkup edit = new EditMessageReplyMarkup();
+        edit.setChatId(channelId);
+        edit.setMessageId(messageId);
+        edit.setReplyMarkup(markup);
+        try {
+            editor.edit(edit);
+            editCounter.increment();
+        } catch (TelegramApiException e) {
+            String message = String.valueOf(e.getMessage());
+            if (message.contains("message is not modified")) {
+                return;
+            }
+            editErrorCounter.increment();
+            if (message.contains("message to edit not found")) {
+                lesson.messageIds.remove(messageId);
+                dirty.set(true);
+                log.info("ℹ️ Отбивка {} уже удалена из канала, счетчик на ней больше не обновляется", messageId);
+                return;
+            }
+            log.warn("⚠️ Не удалось обновить счетчик на отбивке {}: {}", messageId, message);
+        }
+    }
+
+    @Scheduled(cron = "0 10 0 * * ?", zone = "Europe/Moscow")
+    public void evictPastLessons() {
+        LocalDate today = LocalDate.now(ZoneId.of("Europe/Moscow"));
+        if (posts.keySet().removeIf(key -> key.lessonDate().isBefore(today))) {
+            dirty.set(true);
+        }
+    }
+
+    // === СНИМОК ОТПРАВЛЕННЫХ ОТБИВОК ===
+
+    @PostConstruct
+    public void load() {
+        if (snapshotFile == null || !Files.exists(snapshotFile)) {
+            return;
+        }
+        LocalDate today = LocalDate.now(ZoneId.of("Europe/Moscow"));
+        int restored = 0;
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(snapshotFile)))) {
+            int version = in.readInt();
+            if (version != SNAPSHOT_VERSION) {
+                log.warn("⚠️ Формат снимка отбивок изменился ({} -> {}), счетчики старых отбивок не обновляются",
+                        version, SNAPSHOT_VERSION);
+                return;
+            }
+            int lessons = in.readInt();
+            for (int i = 0; i < lessons; i++) {
+                LocalDate lessonDate = LocalDate.ofEpochDay(in.readLong());
+                String lessonType = in.readUTF();
+                int count = in.readInt();
+                Posts lesson = lessonDate.isBefore(today) ? null
+                        : posts.computeIfAbsent(new LessonKey(lessonDate, lessonType), key -> new Posts());
+                for (int j = 0; j < count; j++) {
+                    int messageId = in.readInt();
+                    if (lesson != null) {
+                        lesson.messageIds.add(messageId);
+                        restored++;
+                    }
+                }
+            }
+            log.info("✅ Восстановлено отбивок со счетчиком записавшихся: {}", restored);
+        } catch (IOException e) {
+            log.error("❌ Ошибка чтения снимка отбивок", e);
+        }
+    }
+
+    @Scheduled(fixedDelay = 5000)
+    @PreDestroy
+    public void persist() {
+        if (snapshotFile == null || !dirty.getAndSet(false)) {
+            return;
+        }
+        Map<LessonKey, List<Integer>> snapshot = new HashMap<>();
+        posts.forEach((key, lesson) -> {
+            if (!lesson.messageIds.isEmpty()) {
+                snapshot.put(key, new ArrayList<>(lesson.messageIds));
+            }
+        });
+
+        try {
+            Files.createDirectories(snapshotFile.getParent());
+            Path tmp = snapshotFile.resolveSibling(snapshotFile.getFileName() + ".tmp");
+            try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(tmp)))) {
+                out.writeInt(SNAPSHOT_VERSION);
+                out.writeInt(snapshot.size());
+                for (Map.Entry<LessonKey, List<Integer>> entry : snapshot.entrySet()) {
+                    out.writeLong(entry.getKey().lessonDate().toEpochDay());
+                    out.writeUTF(entry.getKey().lessonType());
+                    out.writeInt(entry.getValue().size());
+                    for (Integer messageId : entry.getValue()) {
+                        out.writeInt(messageId);
+                    }
+                }
+            }
+            Files.move(tmp, snapshotFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            dirty.set(true);
+            log.error("❌ Ошибка сохранения снимка отбивок", e);
+        }
+    }
+}
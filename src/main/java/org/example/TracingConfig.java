@@ -0,0 +1,29 @@
+package org.example;
+
+import io.micrometer.context.ContextRegistry;
+import org.slf4j.MDC;
+import org.springframework.beans.factory.SmartInitializingSingleton;
+import org.springframework.context.annotation.Configuration;
+import reactor.core.publisher.Hooks;
+
+/**
+ * Сквозной update_id в логах. Контроллер и полоса кладут его в MDC, а Reactor переносит
+ * ключ между потоками вместе с текущим наблюдением, поэтому строки из WebClient и пакетной записи
+ * тоже его несут - даже если трасса не попала в выборку.
+ */
+@Configuration
+public class TracingConfig implements SmartInitializingSingleton {
+
+    public static final String UPDATE_ID = "update_id";
+
+    @Override
+    public void afterSingletonsInstantiated() {
+        ContextRegistry.getInstance().registerThreadLocalAccessor(UPDATE_ID,
+                () -> MDC.get(UPDATE_ID),
+                value -> MDC.put(UPDATE_ID, value),
+                () -> MDC.remove(UPDATE_ID));
+        // spring.reactor.context-propagation=auto здесь не сработает: при lazy-initialization
+        // ReactorAutoConfiguration не создается, поэтому перенос ThreadLocal включаем сами
+        Hooks.enableAutomaticContextPropagation();
+    }
+}
@@ -0,0 +1,222 @@
+package org.example;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.io.*;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.time.Duration;
+import java.util.Arrays;
+
+/**
+ * Отсекает повторные доставки одного и того же update_id.
+ * Хранит кольцевую битовую карту по последним WINDOW идентификаторам и верхнюю отметку.
+ * Состояние периодически сохраняется на диск, чтобы пережить перезапуск; снимок старше
+ * REDELIVERY_HORIZON не загружается - Telegram столько не хранит недоставленные обновления.
+ */
+@Component
+public class UpdateDeduplicator {
+
+    private static final Logger log = LoggerFactory.getLogger(UpdateDeduplicator.class);
+
+    private static final int SNAPSHOT_VERSION = 2;
+    private static final int WINDOW = 4096;
+    private static final int WORDS = WINDOW / Long.SIZE;
+    private static final Duration REDELIVERY_HORIZON = Duration.ofHours(24);
+    private static final int RESET_CONFIRMATIONS = 3;
+
+    private final long[] bits = new long[WORDS];
+    private long highWater = -1;
+    private boolean dirty;
+    private long resetCandidate = -1;
+    private int resetVotes;
+
+    private final Path stateFile;
+    private final long resetGap;
+    private final Counter duplicateCounter;
+    private final Counter staleCounter;
+
+    public UpdateDeduplicator(MeterRegistry meterRegistry,
+                              @Value("${app.data-dir:data}") String dataDir,
+                              @Value("${webhook.dedup.reset-gap:1000000}") long resetGap) {
+        this.stateFile = Path.of(dataDir, "update-dedup.bin");
+        this.resetGap = Math.max(resetGap, WINDOW);
+        this.duplicateCounter = Counter.builder("webhook.updates.duplicate")
+                .description("Повторно доставленные обновления, отброшенные до обработки")
+                .register(meterRegistry);
+        this.staleCounter = Counter.builder("webhook.updates.stale")
+                .description("Обновления ниже окна дедупликации, отброшенные как устаревшие")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Отмечает update_id как полученный. Возвращает false для дубликата внутри окна
+     * и для устаревшего идентификатора ниже окна.
+     * После недели без обновлений Telegram начинает update_id со случайного значения, поэтому
+     * идентификатор ниже окна считается началом новой последовательности, только если разрыв
+     * не меньше resetGap или RESET_CONFIRMATIONS таких идентификаторов подряд идут друг за другом.
+     * Одиночная запоздалая доставка не сбрасывает карту и не открывает окно для повторов;
+     * цена - при сбросе с малым разрывом первые обновления новой последовательности теряются.
+     */
+    public synchronized boolean markIfNew(long updateId) {
+        if (highWater >= 0 && highWater - updateId >= WINDOW) {
+            return markBelowWindow(updateId);
+        }
+        resetVotes = 0;
+
+        if (highWater < 0 || updateId > highWater) {
+            advanceTo(updateId);
+            set(updateId);
+            dirty = true;
+            return true;
+        }
+
+        if (isSet(updateId)) {
+            duplicateCounter.increment();
+            return false;
+        }
+
+        set(updateId);
+        dirty = true;
+        return true;
+    }
+
+    private boolean markBelowWindow(long updateId) {
+        boolean continuesCandidate = resetVotes > 0
+                && updateId > resetCandidate && updateId - resetCandidate < WINDOW;
+        resetVotes = continuesCandidate ? resetVotes + 1 : 1;
+        resetCandidate = updateId;
+
+        if (highWater - updateId < resetGap && resetVotes < RESET_CONFIRMATIONS) {
+            staleCounter.increment();
+            log.warn("⚠️ update_id {} ниже окна отметки {}: отброшен как устаревший", updateId, highWater);
+            return false;
+        }
+
+        log.warn("⚠️ update_id {} намного ниже отметки {}: последовательность сброшена", updateId, highWater);
+        Arrays.fill(bits, 0L);
+        highWater = updateId;
+        resetVotes = 0;
+        set(updateId);
+        dirty = true;
+        return true;
+    }
+
+    /**
+     * Снимает отметку, если обновление не удалось принять и Telegram его повторит.
+     */
+    public synchronized void forget(long updateId) {
+        if (highWater >= 0 && updateId <= highWater && highWater - updateId < WINDOW) {
+            bits[word(updateId)] &= ~mask(updateId);
+            dirty = true;
+        }
+    }
+
+    public synchronized long getHighWater() {
+        return highWater;
+    }
+
+    private void advanceTo(long updateId) {
+        if (highWater < 0 || updateId - highWater >= WINDOW) {
+            Arrays.fill(bits, 0L);
+        } else {
+            for (long id = highWater + 1; id <= updateId; id++) {
+                bits[word(id)] &= ~mask(id);
+            }
+        }
+        highWater = updateId;
+    }
+
+    private boolean isSet(long updateId) {
+        return (bits[word(updateId)] & mask(updateId)) != 0;
+    }
+
+    private void set(long updateId) {
+        bits[word(updateId)] |= mask(updateId);
+    }
+
+    private static int word(long updateId) {
+        return (int) ((updateId % WINDOW) >>> 6);
+    }
+
+    private static long mask(long updateId) {
+        return 1L << (updateId & 63);
+    }
+
+    @PostConstruct
+    public synchronized void load() {
+        if (!Files.exists(stateFile)) {
+            return;
+        }
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(stateFile)))) {
+            int version = in.readInt();
+            if (version != SNAPSHOT_VERSION) {
+                log.warn("⚠️ Формат состояния дедупликации изменился ({} -> {}), состояние сброшено",
+                        version, SNAPSHOT_VERSION);
+                return;
+            }
+            long savedAt = in.readLong();
+            if (System.currentTimeMillis() - savedAt > REDELIVERY_HORIZON.toMillis()) {
+                log.info("ℹ️ Состояние дедупликации старше {} ч, не загружено", REDELIVERY_HORIZON.toHours());
+                return;
+            }
+            long savedHighWater = in.readLong();
+            int words = in.readInt();
+            if (words != WORDS) {
+                log.warn("⚠️ Размер окна дедупликации изменился ({} -> {}), состояние сброшено", words, WORDS);
+                return;
+            }
+            for (int i = 0; i < WORDS; i++) {
+                bits[i] = in.readLong();
+            }
+            highWater = savedHighWater;
+            log.info("✅ Восстановлена отметка update_id: {}", highWater);
+        } catch (IOException e) {
+            log.error("❌ Ошибка чтения состояния дедупликации", e);
+        }
+    }
+
+    @Scheduled(fixedDelay = 5000)
+    @PreDestroy
+    public void persist() {
+        long savedHighWater;
+        long[] snapshot;
+        synchronized (this) {
+            if (!dirty) {
+                return;
+            }
+            savedHighWater = highWater;
+            snapshot = bits.clone();
+            dirty = false;
+        }
+
+        try {
+            Files.createDirectories(stateFile.getParent());
+            Path tmp = stateFile.resolveSibling(stateFile.getFileName() + ".tmp");
+            try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(tmp)))) {
+                out.writeInt(SNAPSHOT_VERSION);
+                out.writeLong(System.currentTimeMillis());
+                out.writeLong(savedHighWater);
+                out.writeInt(WORDS);
+                for (long word : snapshot) {
+                    out.writeLong(word);
+                }
+            }
+            Files.move(tmp, stateFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            synchronized (this) {
+                dirty = true;
+            }
+            log.error("❌ Ошибка сохранения состояния дедупликации", e);
+        }
+    }
+}
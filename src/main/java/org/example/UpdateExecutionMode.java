@@ -0,0 +1,11 @@
+package org.example;
+
+/**
+ * Режим выполнения обработчиков обновлений.
+ * PLATFORM - фиксированный пул обычных потоков,
+ * VIRTUAL - каждый обработчик на виртуальном потоке (требуется Java 21).
+ */
+public enum UpdateExecutionMode {
+    PLATFORM,
+    VIRTUAL
+}
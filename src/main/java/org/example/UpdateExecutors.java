@@ -0,0 +1,67 @@
+package org.example;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Фабрика пулов для обработки обновлений.
+ * Виртуальные потоки подключаются через рефлексию, чтобы сборка на Java 17 не ломалась.
+ */
+public final class UpdateExecutors {
+
+    private static final Logger log = LoggerFactory.getLogger(UpdateExecutors.class);
+
+    private UpdateExecutors() {
+    }
+
+    public static ThreadPoolExecutor create(String name, UpdateExecutionMode mode, int threads,
+                                            BlockingQueue<Runnable> queue) {
+        ThreadPoolExecutor executor = new ThreadPoolExecutor(threads, threads, 60, TimeUnit.SECONDS,
+                queue, threadFactory(name, mode), new ThreadPoolExecutor.AbortPolicy());
+        // Виртуальные потоки дешевые: не держим их, пока нет нагрузки
+        executor.allowCoreThreadTimeOut(mode == UpdateExecutionMode.VIRTUAL);
+        return executor;
+    }
+
+    public static UpdateExecutionMode effectiveMode(UpdateExecutionMode requested) {
+        if (requested == UpdateExecutionMode.VIRTUAL && virtualThreadFactory("probe-") == null) {
+            log.warn("⚠️ Виртуальные потоки недоступны на Java {}, используется режим PLATFORM",
+                    Runtime.version().feature());
+            return UpdateExecutionMode.PLATFORM;
+        }
+        return requested;
+    }
+
+    static ThreadFactory threadFactory(String name, UpdateExecutionMode mode) {
+        if (mode == UpdateExecutionMode.VIRTUAL) {
+            ThreadFactory factory = virtualThreadFactory(name + "-vt-");
+            if (factory != null) {
+                return factory;
+            }
+        }
+
+        AtomicInteger counter = new AtomicInteger();
+        return r -> {
+            Thread thread = new Thread(r, name + "-" + counter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        };
+    }
+
+    static ThreadFactory virtualThreadFactory(String prefix) {
+        try {
+            Object builder = Thread.class.getMethod("ofVirtual").invoke(null);
+            Class<?> builderClass = Class.forName("java.lang.Thread$Builder");
+            builder = builderClass.getMethod("name", String.class, long.class).invoke(builder, prefix, 1L);
+            return (ThreadFactory) builderClass.getMethod("factory").invoke(builder);
+        } catch (ReflectiveOperationException e) {
+            return null;
+        }
+    }
+}
@@ -0,0 +1,186 @@
+package org.example;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.observation.Observation;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.slf4j.MDC;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.telegram.telegrambots.meta.api.methods.BotApiMethod;
+import org.telegram.telegrambots.meta.api.objects.Update;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Ограниченная очередь входящих webhook-обновлений.
+ * Контроллер не ждет медленной обработки. Обновления одного пользователя обрабатываются по порядку,
+ * разные пользователи - параллельно. В режиме PLATFORM обработка идет на последовательных полосах (lanes):
+ * пользователь всегда попадает в одну полосу. В режиме VIRTUAL каждое обновление получает свой
+ * виртуальный поток, а порядок держит KeyedVirtualExecutor.
+ */
+@Component
+public class UpdateIngestQueue {
+
+    private static final Logger log = LoggerFactory.getLogger(UpdateIngestQueue.class);
+
+    private final YogaBot bot;
+    private final Lane[] lanes;
+    private final KeyedVirtualExecutor virtualExecutor;
+
+    private final Timer waitTimer;
+    private final Counter rejectedCounter;
+
+    public UpdateIngestQueue(YogaBot bot,
+                             MeterRegistry meterRegistry,
+                             @Value("${webhook.lanes:8}") int platformLanes,
+                             @Value("${webhook.lane.capacity:64}") int laneCapacity,
+                             @Value("${webhook.execution-mode:platform}") UpdateExecutionMode requestedMode,
+                             @Value("${webhook.virtual.capacity:512}") int virtualCapacity) {
+        this.bot = bot;
+
+        UpdateExecutionMode mode = UpdateExecutors.effectiveMode(requestedMode);
+        if (mode == UpdateExecutionMode.VIRTUAL) {
+            this.lanes = new Lane[0];
+            this.virtualExecutor = new KeyedVirtualExecutor("update", virtualCapacity);
+            log.info("✅ Очередь обновлений: mode={}, capacity={}", mode, virtualCapacity);
+        } else {
+            this.lanes = createLanes(Math.max(1, platformLanes), laneCapacity, meterRegistry);
+            this.virtualExecutor = null;
+            log.info("✅ Очередь обновлений: mode={}, lanes={}, laneCapacity={}", mode, lanes.length, laneCapacity);
+        }
+
+        Gauge.builder("webhook.queue.depth", this, UpdateIngestQueue::depth)
+                .description("Количество обновлений, ожидающих обработки")
+                .register(meterRegistry);
+        this.waitTimer = Timer.builder("webhook.queue.wait")
+                .description("Время ожидания обновления в очереди")
+                .register(meterRegistry);
+        this.rejectedCounter = Counter.builder("webhook.queue.rejected")
+                .description("Обновления, отклоненные из-за переполнения очереди")
+                .register(meterRegistry);
+    }
+
+    private static Lane[] createLanes(int laneCount, int laneCapacity, MeterRegistry meterRegistry) {
+        Lane[] lanes = new Lane[laneCount];
+        for (int i = 0; i < laneCount; i++) {
+            ArrayBlockingQueue<Runnable> queue = new ArrayBlockingQueue<>(laneCapacity);
+            lanes[i] = new Lane(queue, UpdateExecutors.create("update-lane-" + i, UpdateExecutionMode.PLATFORM, 1, queue));
+
+            Gauge.builder("webhook.lane.backlog", queue, ArrayBlockingQueue::size)
+                    .description("Количество обновлений, ожидающих в полосе")
+                    .tag("lane", String.valueOf(i))
+                    .register(meterRegistry);
+        }
+        return lanes;
+    }
+
+    /**
+     * Ставит обновление в очередь его пользователя.
+     * Возвращает ожидание основного ответа или null, если очередь переполнена.
+     * Запущенное наблюдение update полоса делает текущим на время обработки и останавливает.
+     */
+    public InlineReply submit(Update update, Observation observation) {
+        long enqueuedAt = System.nanoTime();
+        InlineReply reply = new InlineReply();
+        long key = orderingKey(update);
+        Runnable task = () -> process(update, enqueuedAt, reply, observation);
+        try {
+            if (virtualExecutor != null) {
+                if (!virtualExecutor.execute(key, task)) {
+                    throw new RejectedExecutionException("Превышена емкость webhook.virtual.capacity");
+                }
+            } else {
+                lanes[laneIndex(key)].executor().execute(task);
+            }
+            return reply;
+        } catch (RejectedExecutionException e) {
+            rejectedCounter.increment();
+            log.warn("⚠️ Очередь переполнена, update {} отклонен", update.getUpdateId());
+            observation.error(e);
+            observation.stop();
+            return null;
+        }
+    }
+
+    private void process(Update update, long enqueuedAt, InlineReply reply, Observation observation) {
+        waitTimer.record(System.nanoTime() - enqueuedAt, TimeUnit.NANOSECONDS);
+        MDC.put(TracingConfig.UPDATE_ID, String.valueOf(update.getUpdateId()));
+        try (Observation.Scope scope = observation.openScope()) {
+            BotApiMethod<?> method = null;
+            try {
+                method = bot.onWebhookUpdateReceived(update);
+            } catch (Exception e) {
+                observation.error(e);
+                log.error("❌ Ошибка обработки update {}", update.getUpdateId(), e);
+            }
+
+            // Контроллер уже ответил Telegram - отправляем ответ отдельным запросом
+            if (!reply.offer(method) && method != null) {
+                bot.sendReply(method);
+            }
+        } finally {
+            observation.stop();
+            MDC.remove(TracingConfig.UPDATE_ID);
+        }
+    }
+
+    /**
+     * Ключ упорядочивания: пользователь, затем чат, иначе само обновление.
+     */
+    private static long orderingKey(Update update) {
+        if (update.hasMessage() && update.getMessage().getFrom() != null) {
+            return update.getMessage().getFrom().getId();
+        }
+        if (update.hasCallbackQuery()) {
+            return update.getCallbackQuery().getFrom().getId();
+        }
+        if (update.hasMessage()) {
+            return update.getMessage().getChatId();
+        }
+        return update.getUpdateId();
+    }
+
+    private int laneIndex(long key) {
+        // Перемешиваем биты, чтобы соседние id не попадали в одну полосу
+        long h = key * 0x9E3779B97F4A7C15L;
+        return (int) Math.floorMod(h ^ (h >>> 32), (long) lanes.length);
+    }
+
+    private int depth() {
+        if (virtualExecutor != null) {
+            return virtualExecutor.pending();
+        }
+        int depth = 0;
+        for (Lane lane : lanes) {
+            depth += lane.queue().size();
+        }
+        return depth;
+    }
+
+    @PreDestroy
+    public void shutdown() throws InterruptedException {
+        if (virtualExecutor != null && !virtualExecutor.shutdown(10, TimeUnit.SECONDS)) {
+            log.warn("⚠️ Не все обновления обработаны до остановки: {}", virtualExecutor.pending());
+        }
+        for (Lane lane : lanes) {
+            lane.executor().shutdown();
+        }
+        for (Lane lane : lanes) {
+            if (!lane.executor().awaitTermination(10, TimeUnit.SECONDS)) {
+                log.warn("⚠️ Не все обновления обработаны до остановки: {}", lane.queue().size());
+                lane.executor().shutdownNow();
+            }
+        }
+    }
+
+    private record Lane(ArrayBlockingQueue<Runnable> queue, ThreadPoolExecutor executor) {
+    }
+}
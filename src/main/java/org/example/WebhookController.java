@@ -1,9 +1,19 @@
 package org.example;
 
+import io.micrometer.core.instrument.Tag;
+import io.micrometer.observation.Observation;
+import io.micrometer.observation.ObservationRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.slf4j.MDC;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.telegram.telegrambots.meta.api.methods.BotApiMethod;
 import org.telegram.telegrambots.meta.api.objects.Update;
 import org.example.service.MessageCleanupService;
+import org.example.service.ShadowComparisonStats;
 import org.example.service.SupabaseService;
 import org.springframework.jdbc.core.JdbcTemplate;
 
@@ -18,31 +28,97 @@ import java.util.Map;
 @RequestMapping("/")
 public class WebhookController {
 
+    private static final Logger log = LoggerFactory.getLogger(WebhookController.class);
+
     private final YogaBot bot;
+    private final UpdateIngestQueue updateIngestQueue;
+    private final UpdateDeduplicator updateDeduplicator;
     private final PingService pingService;
     private final SupabaseService supabaseService;
     private final MessageCleanupService messageCleanupService;
     private final JdbcTemplate jdbcTemplate;
-
-    public WebhookController(YogaBot bot, PingService pingService,
+    private final ShadowComparisonStats shadowComparisonStats;
+    private final ObservationRegistry observationRegistry;
+
+    /**
+     * Сколько HTTP-поток ждет основной ответ. Пока он ждет, Telegram не получает 200 и поток Tomcat
+     * занят - ровно то, от чего уводит очередь приема; поэтому ждем коротко и только там, где ответ бывает.
+     */
+    @Value("${webhook.inline-reply.timeout-ms:250}")
+    private long inlineReplyTimeoutMs;
+
+    public WebhookController(YogaBot bot, UpdateIngestQueue updateIngestQueue,
+                             UpdateDeduplicator updateDeduplicator,
+                             PingService pingService,
                              SupabaseService supabaseService,
                              MessageCleanupService messageCleanupService,
-                             JdbcTemplate jdbcTemplate) {
+                             JdbcTemplate jdbcTemplate,
+                             ShadowComparisonStats shadowComparisonStats,
+                             ObservationRegistry observationRegistry) {
         this.bot = bot;
+        this.updateIngestQueue = updateIngestQueue;
+        this.updateDeduplicator = updateDeduplicator;
         this.pingService = pingService;
         this.supabaseService = supabaseService;
         this.messageCleanupService = messageCleanupService;
         this.jdbcTemplate = jdbcTemplate;
+        this.shadowComparisonStats = shadowComparisonStats;
+        this.observationRegistry = observationRegistry;
     }
 
     @PostMapping
-    public ResponseEntity<Void> onUpdateReceived(@RequestBody Update update) {
-        System.out.println("🌐 Получен webhook запрос, update_id: " + update.getUpdateId());
+    public ResponseEntity<BotApiMethod<?>> onUpdateReceived(@RequestBody Update update) {
+        MDC.put(TracingConfig.UPDATE_ID, String.valueOf(update.getUpdateId()));
+        try {
+            log.debug("🌐 Получен webhook запрос, update_id: {}", update.getUpdateId());
 
-        // Передаем Update в бота для обработки
-        bot.onWebhookUpdateReceived(update);
+            // Повторная доставка: подтверждаем, но не обрабатываем
+            if (!updateDeduplicator.markIfNew(update.getUpdateId())) {
+                log.info("♻️ Дубликат update_id: {}", update.getUpdateId());
+                return ResponseEntity.ok().build();
+            }
 
-        return ResponseEntity.ok().build();
+            // Ставим Update в очередь, при переполнении просим Telegram повторить доставку позже.
+            // Спан update открывается здесь, а закрывается полосой после обработки
+            InlineReply reply = updateIngestQueue.submit(update, startObservation(update));
+            if (reply == null) {
+                updateDeduplicator.forget(update.getUpdateId());
+                return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE).build();
+            }
+
+            // Если основной ответ готов быстро - возвращаем его прямо в теле webhook-ответа,
+            // это экономит отдельный HTTPS-запрос к Telegram. Ответ бывает только у сообщений
+            // и нажатий кнопок: на посты канала и правки сразу отдаем 200
+            long timeoutMs = expectsInlineReply(update) ? inlineReplyTimeoutMs : 0;
+            BotApiMethod<?> method = reply.await(timeoutMs);
+            if (method != null) {
+                return ResponseEntity.ok(method);
+            }
+
+            return ResponseEntity.ok().build();
+        } finally {
+            MDC.remove(TracingConfig.UPDATE_ID);
+        }
+    }
+
+    private static boolean expectsInlineReply(Update update) {
+        return update.hasMessage() || update.hasCallbackQuery();
+    }
+
+    /**
+     * Наблюдение webhook.update: спан от приема до конца обработки (дочерний к http.server.requests)
+     * и таймер с теми же type/kind, что у bot.update, но с учетом ожидания в очереди.
+     */
+    private Observation startObservation(Update update) {
+        Observation observation = Observation.createNotStarted("webhook.update", observationRegistry)
+                .highCardinalityKeyValue(TracingConfig.UPDATE_ID, String.valueOf(update.getUpdateId()));
+        for (Tag tag : YogaBot.updateTags(update)) {
+            observation.lowCardinalityKeyValue(tag.getKey(), tag.getValue());
+            if (tag.getKey().equals("kind")) {
+                observation.contextualName("update " + tag.getValue());
+            }
+        }
+        return observation.start();
     }
 
     @GetMapping
@@ -62,6 +138,7 @@ public class WebhookController {
         status.put("timestamp", LocalDateTime.now().toString());
         status.put("service", "YogaBot");
         status.put("version", "1.0");
+        status.put("lastUpdateId", updateDeduplicator.getHighWater());
 
         if (pingService != null) {
             status.put("lastPing", pingService.getLastSuccessfulPing() != null ?
@@ -242,7 +319,7 @@ public class WebhookController {
             """);
             return ResponseEntity.ok(messages);
         } catch (Exception e) {
-            System.err.println("❌ Ошибка получения сообщений: " + e.getMessage());
+            log.error("❌ Ошибка получения сообщений: {}", e.getMessage());
             return ResponseEntity.status(500).build();
         }
     }
@@ -273,7 +350,7 @@ public class WebhookController {
 
             return ResponseEntity.ok(debugInfo);
         } catch (Exception e) {
-            System.err.println("❌ Ошибка отладки: " + e.getMessage());
+            log.error("❌ Ошибка отладки: {}", e.getMessage());
             return ResponseEntity.status(500).build();
         }
     }
@@ -354,11 +431,20 @@ public class WebhookController {
         """);
             return ResponseEntity.ok(messages);
         } catch (Exception e) {
-            System.err.println("❌ Ошибка получения сообщений: " + e.getMessage());
+            log.error("❌ Ошибка получения сообщений: {}", e.getMessage());
             return ResponseEntity.status(500).build();
         }
     }
 
+    /**
+     * Сводка теневого сравнения хранилищ (supabase.shadow.enabled).
+     * Те же данные есть в /actuator/metrics/supabase.shadow.latency и supabase.shadow.compare.
+     */
+    @GetMapping("/debug/shadow")
+    public ResponseEntity<Map<String, Object>> debugShadow() {
+        return ResponseEntity.ok(shadowComparisonStats.snapshot());
+    }
+
     @GetMapping("/force-cleanup")
     public ResponseEntity<String> forceCleanup() {
         try {
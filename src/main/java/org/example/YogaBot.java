@@ -1,7 +1,14 @@
 package org.example;
 
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+import io.micrometer.tracing.Span;
+import io.micrometer.tracing.Tracer;
+import org.example.service.CallMetrics;
 import org.example.service.MessageCleanupService;
+import org.example.service.SignupResult;
 import org.example.service.SupabaseService;
+import org.example.service.TelegramRateLimiter;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.example.service.MessageSender;
@@ -9,10 +16,13 @@ import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Lazy;
 import org.springframework.stereotype.Component;
 import jakarta.annotation.PostConstruct;
+import org.telegram.telegrambots.bots.DefaultBotOptions;
 import org.telegram.telegrambots.bots.TelegramWebhookBot;
+import org.telegram.telegrambots.meta.api.methods.AnswerCallbackQuery;
 import org.telegram.telegrambots.meta.api.methods.BotApiMethod;
 import org.telegram.telegrambots.meta.api.methods.send.SendMessage;
 import org.telegram.telegrambots.meta.api.methods.updatingmessages.DeleteMessage;
+import org.telegram.telegrambots.meta.api.methods.updatingmessages.EditMessageReplyMarkup;
 import org.telegram.telegrambots.meta.api.methods.updatingmessages.EditMessageText;
 import org.telegram.telegrambots.meta.api.objects.Update;
 import org.telegram.telegrambots.meta.api.objects.replykeyboard.InlineKeyboardMarkup;
@@ -20,10 +30,12 @@ import org.telegram.telegrambots.meta.api.objects.replykeyboard.ReplyKeyboardMar
 import org.telegram.telegrambots.meta.api.objects.replykeyboard.buttons.InlineKeyboardButton;
 import org.telegram.telegrambots.meta.api.objects.replykeyboard.buttons.KeyboardRow;
 import org.telegram.telegrambots.meta.exceptions.TelegramApiException;
+import reactor.core.publisher.Mono;
 
 import java.time.*;
 import java.time.format.DateTimeFormatter;
 import java.util.*;
+import java.util.concurrent.atomic.AtomicReference;
 
 @Component
 public class YogaBot extends TelegramWebhookBot implements MessageSender {
@@ -45,46 +57,129 @@ public class YogaBot extends TelegramWebhookBot implements MessageSender {
     @Value("${app.adminId:}")
     private String adminId;
 
+    @Value("${bot.log.update-sample-every:16}")
+    private int updateLogSampleEvery = 16;
+
+    private final LogSampler updateLogSample = new LogSampler();
+
     @Override
     public boolean executeDeleteMessage(DeleteMessage deleteMessage) throws TelegramApiException {
         return execute(deleteMessage);
     }
 
+    /**
+     * Все запросы к Bot API идут через ограничитель: глобальный и по чатам лимит, обработка 429.
+     */
+    @Override
+    public <T extends java.io.Serializable, Method extends BotApiMethod<T>> T execute(Method method) throws TelegramApiException {
+        // Время вызова включает ожидание ограничителя и повторы после 429.
+        // Спан без наблюдения: таймер этого вызова уже ведет apiMetrics
+        Span span = tracer.nextSpan().name("telegram " + method.getMethod()).start();
+        try (Tracer.SpanInScope scope = tracer.withSpan(span)) {
+            return apiMetrics.call(Tags.of("method", method.getMethod()),
+                    () -> rateLimiter.execute(chatIdOf(method), () -> super.execute(method)));
+        } catch (TelegramApiException | RuntimeException e) {
+            span.error(e);
+            throw e;
+        } finally {
+            span.end();
+        }
+    }
+
+    private static String chatIdOf(BotApiMethod<?> method) {
+        if (method instanceof SendMessage sendMessage) {
+            return sendMessage.getChatId();
+        } else if (method instanceof EditMessageText editMessageText) {
+            return editMessageText.getChatId();
+        } else if (method instanceof EditMessageReplyMarkup editMessageReplyMarkup) {
+            return editMessageReplyMarkup.getChatId();
+        } else if (method instanceof DeleteMessage deleteMessage) {
+            return deleteMessage.getChatId();
+        }
+        return null;
+    }
+
     private final SupabaseService supabaseService;
-    private final Map<Long, String> userStates = new HashMap<>();
-    private final Map<DayOfWeek, Map<String, String>> fixedSchedule = new HashMap<>();
+    private final TelegramRateLimiter rateLimiter;
+    private final ConversationStateStore conversationStates;
+    private final AtomicReference<ScheduleSnapshot> fixedSchedule = new AtomicReference<>(ScheduleSnapshot.EMPTY);
+
+    private static final DateTimeFormatter WEEK_DAY_FORMATTER = DateTimeFormatter.ofPattern("EEEE (dd.MM)");
+
+    /**
+     * Готовый текст расписания на 7 дней вперед для версии расписания и даты начала (по Москве).
+     * Устаревает сам: после правки меняется версия, после полуночи - дата.
+     */
+    private record RenderedSchedule(long version, LocalDate startDate, String userText, String adminText) {
+    }
+
+    private final AtomicReference<RenderedSchedule> renderedSchedule = new AtomicReference<>();
     private final MessageCleanupService messageCleanupService;
+    private final SignupCounterUpdater signupCounters;
+    private final CallMetrics updateMetrics;
+    private final CallMetrics apiMetrics;
+    private final Tracer tracer;
 
     public YogaBot(SupabaseService supabaseService,
-                   @Lazy MessageCleanupService messageCleanupService) {
+                   TelegramRateLimiter rateLimiter,
+                   ConversationStateStore conversationStates,
+                   @Lazy MessageCleanupService messageCleanupService,
+                   SignupCounterUpdater signupCounters,
+                   @Value("${telegram.api-url:https://api.telegram.org/bot}") String telegramApiUrl,
+                   MeterRegistry meterRegistry,
+                   Tracer tracer) {
+        super(botOptions(telegramApiUrl));
         this.supabaseService = supabaseService;
+        this.rateLimiter = rateLimiter;
+        this.conversationStates = conversationStates;
         this.messageCleanupService = messageCleanupService;
+        this.signupCounters = signupCounters;
+        this.updateMetrics = new CallMetrics(meterRegistry, "bot.update",
+                "Обработка update от получения до основного ответа", true);
+        this.apiMetrics = new CallMetrics(meterRegistry, "telegram.api",
+                "Запросы к Telegram Bot API", false);
+        this.tracer = tracer;
+    }
+
+    /**
+     * Адрес Bot API настраивается, чтобы нагрузочный тест мог подставить локальную заглушку.
+     */
+    private static DefaultBotOptions botOptions(String telegramApiUrl) {
+        DefaultBotOptions options = new DefaultBotOptions();
+        options.setBaseUrl(telegramApiUrl);
+        return options;
     }
 
     @PostConstruct
     public void postConstruct() {
-        System.out.println("🔄 Инициализация YogaBot...");
-        System.out.println("Admin ID: " + adminId);
-        System.out.println("Channel ID: " + channelId);
+        log.info("🔄 Инициализация YogaBot...");
+        log.info("Admin ID: {}", adminId);
+        log.info("Channel ID: {}", channelId);
 
         // Проверка админских ID
-        if (adminId != null) {
+        if (adminId == null || adminId.isEmpty()) {
+            log.warn("⚠️ Admin ID не настроен");
+        } else {
             String[] adminIds = adminId.split(",");
-            System.out.println("👨‍💼 Настроенные админы:");
+            log.info("👨‍💼 Настроенные админы:");
             for (String id : adminIds) {
-                System.out.println("   - " + id.trim());
+                log.info("   - {}", id.trim());
             }
         }
 
         // Принудительная инициализация БД через SupabaseService
         supabaseService.initializeDatabase();
+        supabaseService.onWaitlistPromotion(registration -> {
+            notifyWaitlistPromotion(registration);
+            signupCounters.changed(registration.lessonDate(), registration.lessonType());
+        });
 
         initializeFixedSchedule();
-        System.out.println("✅ YogaBot инициализирован");
+        log.info("✅ YogaBot инициализирован");
     }
 
     private void initializeFixedSchedule() {
-        System.out.println("🔄 Инициализация расписания...");
+        log.info("🔄 Инициализация расписания...");
 
         // Сначала инициализируем дефолтное расписание в БД
         supabaseService.initializeDefaultSchedule();
@@ -92,68 +187,72 @@ public class YogaBot extends TelegramWebhookBot implements MessageSender {
         // Затем загружаем из БД
         Map<DayOfWeek, Map<String, String>> savedSchedule = supabaseService.loadSchedule();
 
-        System.out.println("📊 Результат загрузки из БД: " + (savedSchedule != null ? savedSchedule.size() : "null") + " дней");
+        log.info("📊 Результат загрузки из БД: {} дней", savedSchedule != null ? savedSchedule.size() : "null");
 
         if (savedSchedule != null && !savedSchedule.isEmpty()) {
-            fixedSchedule.putAll(savedSchedule);
-            System.out.println("✅ Расписание загружено из БД: " + savedSchedule.size() + " дней");
+            fixedSchedule.set(ScheduleSnapshot.of(1, savedSchedule));
+            log.info("✅ Расписание загружено из БД: {} дней", savedSchedule.size());
 
             // Отладочная информация
             for (Map.Entry<DayOfWeek, Map<String, String>> entry : savedSchedule.entrySet()) {
-                System.out.println("   - " + entry.getKey() + ": " + entry.getValue());
+                log.debug("   - {}: {}", entry.getKey(), entry.getValue());
             }
         } else {
             // Резервная инициализация
-            System.out.println("⚠️ Используется резервное расписание");
+            log.warn("⚠️ Используется резервное расписание");
             initializeBackupSchedule();
         }
 
-        System.out.println("📋 Итоговый fixedSchedule: " + fixedSchedule.size() + " дней");
-        System.out.println("✅ Расписание инициализировано");
+        log.info("📋 Итоговый fixedSchedule: {} дней", fixedSchedule.get().size());
+        log.info("✅ Расписание инициализировано");
     }
 
     private void initializeBackupSchedule() {
+        Map<DayOfWeek, Map<String, String>> backup = new EnumMap<>(DayOfWeek.class);
+
         // Понедельник
         Map<String, String> monday = new HashMap<>();
         monday.put("morning", "8:00 - 11:30 - Майсор класс");
         monday.put("evening", "17:00 - 20:30 - Майсор класс");
-        fixedSchedule.put(DayOfWeek.MONDAY, monday);
+        backup.put(DayOfWeek.MONDAY, monday);
 
         // Вторник
         Map<String, String> tuesday = new HashMap<>();
         tuesday.put("morning", "8:00 - 11:30 - Майсор класс");
         tuesday.put("evening", "18:30 - 20:00 - Майсор класс");
-        fixedSchedule.put(DayOfWeek.TUESDAY, tuesday);
+        backup.put(DayOfWeek.TUESDAY, tuesday);
 
         // Среда
         Map<String, String> wednesday = new HashMap<>();
         wednesday.put("morning", "8:00 - 11:30 - Майсор класс");
         wednesday.put("evening", "17:00 - 20:30 - Майсор класс");
-        fixedSchedule.put(DayOfWeek.WEDNESDAY, wednesday);
+        backup.put(DayOfWeek.WEDNESDAY, wednesday);
 
         // Четверг
         Map<String, String> thursday = new HashMap<>();
         thursday.put("morning", "8:00 - 11:30 - Майсор класс");
         thursday.put("evening", "17:00 - 20:30 - Майсор класс");
-        fixedSchedule.put(DayOfWeek.THURSDAY, thursday);
+        backup.put(DayOfWeek.THURSDAY, thursday);
 
         // Пятница
         Map<String, String> friday = new HashMap<>();
         friday.put("morning", "8:00 - 11:30 - Майсор класс");
         friday.put("evening", "17:00 - 20:30 - Майсор класс");
-        fixedSchedule.put(DayOfWeek.FRIDAY, friday);
+        backup.put(DayOfWeek.FRIDAY, friday);
 
         // Суббота
         Map<String, String> saturday = new HashMap<>();
         saturday.put("morning", "ОТДЫХ");
         saturday.put("evening", "ОТДЫХ");
-        fixedSchedule.put(DayOfWeek.SATURDAY, saturday);
+        backup.put(DayOfWeek.SATURDAY, saturday);
 
         // Воскресенье
         Map<String, String> sunday = new HashMap<>();
         sunday.put("morning", "10:00 - 11:30 LED-КЛАСС");
         sunday.put("evening", "Отдых");
-        fixedSchedule.put(DayOfWeek.SUNDAY, sunday);
+        backup.put(DayOfWeek.SUNDAY, sunday);
+
+        fixedSchedule.set(ScheduleSnapshot.of(1, backup));
     }
 
     @Override
@@ -171,9 +270,26 @@ public class YogaBot extends TelegramWebhookBot implements MessageSender {
         return botPath != null && !botPath.isEmpty() ? botPath : "/";
     }
 
+    /**
+     * Обрабатывает обновление и возвращает основной ответ (или null),
+     * который WebhookController отдает Telegram прямо в теле ответа на webhook.
+     * Ждет результат onWebhookUpdateReceivedAsync один раз - на границе полосы обработки.
+     */
     @Override
     public BotApiMethod<?> onWebhookUpdateReceived(Update update) {
-        System.out.println("🔄 Начало обработки update: " + update.getUpdateId());
+        return onWebhookUpdateReceivedAsync(update).block();
+    }
+
+    /**
+     * Неблокирующая обработка обновления: запись и отмена идут цепочкой Mono
+     * до ответа на callback, без ожидания в промежуточных вызовах.
+     */
+    public Mono<BotApiMethod<?>> onWebhookUpdateReceivedAsync(Update update) {
+        // Подробный след обновления при DEBUG пишется для каждого N-го update, решение одно на update
+        boolean traced = log.isDebugEnabled() && updateLogSample.sample(updateLogSampleEvery);
+        if (traced) {
+            log.debug("🔄 Начало обработки update: {}", update.getUpdateId());
+        }
 
         Long userId = null;
         if (update.hasMessage()) {
@@ -183,56 +299,106 @@ public class YogaBot extends TelegramWebhookBot implements MessageSender {
         }
 
         if (userId == null) {
-            System.out.println("⛔ Неизвестный пользователь");
-            return null;
+            log.warn("⛔ Неизвестный пользователь");
+            return Mono.empty();
         }
 
         // Проверяем тип доступа
         boolean isAdminUser = isAdmin(userId);
-        System.out.println("👤 Пользователь " + userId + " является админом: " + isAdminUser);
+        if (traced) {
+            log.debug("👤 Пользователь {} является админом: {}", userId, isAdminUser);
+        }
 
+        Long senderId = userId;
+        Mono<BotApiMethod<?>> reply;
         if (update.hasMessage() && update.getMessage().hasText()) {
-            handleMessage(update.getMessage().getChatId(), update.getMessage().getText(), userId, isAdminUser);
+            reply = Mono.fromCallable(() -> handleMessage(update.getMessage().getChatId(),
+                    update.getMessage().getText(), senderId, isAdminUser));
         } else if (update.hasCallbackQuery()) {
-            handleCallbackQuery(update.getCallbackQuery(), isAdminUser);
+            reply = handleCallbackQueryAsync(update.getCallbackQuery(), isAdminUser);
+        } else {
+            reply = Mono.empty();
         }
 
-        System.out.println("✅ Завершение обработки update: " + update.getUpdateId());
-        return null;
+        Mono<BotApiMethod<?>> timed = updateMetrics.mono(updateTags(update), reply);
+        if (!traced) {
+            return timed;
+        }
+        return timed.doFinally(signal -> log.debug("✅ Завершение обработки update: {} ({})", update.getUpdateId(), signal));
+    }
+
+    private static final Map<String, String> MESSAGE_KINDS = Map.of(
+            "/start", "start",
+            "📅 Расписание", "schedule",
+            "🕒 Проверить время", "time");
+
+    /**
+     * Вид update для метрик: команда меню или вид кнопки из CallbackData.
+     * Произвольный текст и нераспознанные callback сводятся к text/unknown, чтобы число рядов не росло.
+     */
+    static Tags updateTags(Update update) {
+        if (update.hasCallbackQuery()) {
+            return Tags.of("type", "callback", "kind", CallbackData.kind(CallbackData.decode(update.getCallbackQuery().getData())));
+        }
+        if (update.hasMessage() && update.getMessage().hasText()) {
+            return Tags.of("type", "message", "kind", MESSAGE_KINDS.getOrDefault(update.getMessage().getText(), "text"));
+        }
+        return Tags.of("type", "other", "kind", "other");
+    }
+
+    /**
+     * Отправляет ответ, который не удалось вернуть в теле webhook-ответа.
+     */
+    public void sendReply(BotApiMethod<?> reply) {
+        try {
+            executeReply(reply);
+        } catch (TelegramApiException e) {
+            log.error("❌ Ошибка отправки ответа {}: {}", reply.getMethod(), e.getMessage());
+        }
+    }
+
+    private <T extends java.io.Serializable> void executeReply(BotApiMethod<T> reply) throws TelegramApiException {
+        execute(reply);
     }
 
-    private void handleMessage(Long chatId, String text, Long userId, boolean isAdminUser) {
-        System.out.println("💬 Обработка сообщения от " + userId + " (admin: " + isAdminUser + "): " + text);
+    private BotApiMethod<?> handleMessage(Long chatId, String text, Long userId, boolean isAdminUser) {
+        log.debug("💬 Обработка сообщения от {} (admin: {}): {}", userId, isAdminUser, text);
 
         // Команды доступные всем пользователям
         switch (text) {
             case "/start" -> {
-                System.out.println("🚀 Команда /start от пользователя " + userId + " (admin: " + isAdminUser + ")");
-                showMainMenu(chatId, isAdminUser);
+                log.debug("🚀 Команда /start от пользователя {} (admin: {})", userId, isAdminUser);
+                return mainMenuMessage(chatId, isAdminUser);
             }
             case "📅 Расписание" -> {
-                System.out.println("📅 Пользователь запросил расписание (admin: " + isAdminUser + ")");
+                log.debug("📅 Пользователь запросил расписание (admin: {})", isAdminUser);
                 if (isAdminUser) {
-                    System.out.println("👨‍💼 Это админ, показываем меню управления расписанием");
+                    log.debug("👨‍💼 Это админ, показываем меню управления расписанием");
                     showScheduleMenu(chatId);
-                } else {
-                    System.out.println("👤 Это обычный пользователь, показываем простое расписание");
-                    showScheduleForUsers(chatId);
+                    return null;
                 }
+                log.debug("👤 Это обычный пользователь, показываем простое расписание");
+                return scheduleForUsersMessage(chatId);
+            }
+            case "🕒 Проверить время" -> {
+                return timeInfoMessage(chatId);
             }
-            case "🕒 Проверить время" -> checkAndSendTime(chatId);
             default -> {
                 if (isAdminUser) {
-                    System.out.println("👨‍💼 Админская команда: " + text);
+                    log.debug("👨‍💼 Админская команда: {}", text);
                     handleAdminMessage(chatId, text, userId);
-                } else {
-                    sendMsg(chatId, "❌ Команда не найдена. Используйте кнопки меню.");
+                    return null;
                 }
+                return textMessage(chatId, "❌ Команда не найдена. Используйте кнопки меню.");
             }
         }
     }
 
     private void checkAndSendTime(Long chatId) {
+        sendReply(timeInfoMessage(chatId));
+    }
+
+    private SendMessage timeInfoMessage(Long chatId) {
         checkServerTime();
 
         LocalDateTime utcTime = LocalDateTime.now(ZoneOffset.UTC);
@@ -244,96 +410,87 @@ public class YogaBot extends TelegramWebhookBot implements MessageSender {
                 "Час сервера: " + utcTime.getHour() + "\n" +
                 "Час Москвы: " + moscowTime.getHour();
 
-        sendMsg(chatId, timeInfo);
+        return textMessage(chatId, timeInfo);
     }
 
     public void checkServerTime() {
         LocalDateTime utcTime = LocalDateTime.now(ZoneOffset.UTC);
         LocalDateTime moscowTime = LocalDateTime.now(ZoneId.of("Europe/Moscow"));
 
-        System.out.println("🕒 Текущее время сервера (UTC): " + utcTime);
-        System.out.println("🕒 Текущее время Moscow (UTC+3): " + moscowTime);
-        System.out.println("🕒 Текущий час (UTC): " + utcTime.getHour());
-        System.out.println("🕒 Текущий час (Moscow): " + moscowTime.getHour());
-        System.out.println("🕒 Текущая дата Moscow: " + moscowTime.toLocalDate());
+        log.debug("🕒 Текущее время сервера (UTC): {}", utcTime);
+        log.debug("🕒 Текущее время Moscow (UTC+3): {}", moscowTime);
+        log.debug("🕒 Текущий час (UTC): {}", utcTime.getHour());
+        log.debug("🕒 Текущий час (Moscow): {}", moscowTime.getHour());
+        log.debug("🕒 Текущая дата Moscow: {}", moscowTime.toLocalDate());
     }
 
     private LocalDate getMoscowDate() {
         return LocalDate.now(ZoneId.of("Europe/Moscow"));
     }
 
-    private void handleCallbackQuery(org.telegram.telegrambots.meta.api.objects.CallbackQuery callbackQuery, boolean isAdminUser) {
-        Long chatId = callbackQuery.getMessage().getChatId();
-        Long userId = callbackQuery.getFrom().getId();
-        String data = callbackQuery.getData();
-        Integer messageId = callbackQuery.getMessage().getMessageId();
+    /**
+     * Обработчик callback: получает запрос и разобранные CallbackData; пустой Mono - ответа в теле webhook нет.
+     */
+    @FunctionalInterface
+    private interface CallbackHandler {
+        Mono<BotApiMethod<?>> handle(org.telegram.telegrambots.meta.api.objects.CallbackQuery callbackQuery, long data);
+    }
 
-        System.out.println("🔘 Обработка callback: " + data + " от пользователя " + userId + " (admin: " + isAdminUser + ")");
+    /**
+     * Маршрут callback: adminOnly - кнопка доступна только администраторам.
+     */
+    private record CallbackRoute(boolean adminOnly, CallbackHandler handler) {
+    }
 
-        // Проверяем права админа для функций изменения расписания
-        if (data.startsWith("schedule_") || data.startsWith("day_") || data.startsWith("edit_") ||
-                data.startsWith("delete_") || data.equals("back_to_schedule") || data.equals("back_to_main")) {
+    /**
+     * Таблица маршрутов по опкоду CallbackData.
+     */
+    private final CallbackRoute[] callbackRoutes = callbackRoutes();
+
+    private CallbackRoute[] callbackRoutes() {
+        CallbackRoute[] routes = new CallbackRoute[CallbackData.OPCODES];
+        routes[CallbackData.SIGNUP] = new CallbackRoute(false, (query, data) -> handleUserSignup(query, data).map(answer -> answer));
+        routes[CallbackData.CANCEL] = new CallbackRoute(false, (query, data) -> handleUserCancel(query, data).map(answer -> answer));
+        routes[CallbackData.SCHEDULE] = adminRoute((query, data) ->
+                showDaySelection(query.getMessage().getChatId(), CallbackData.lessonType(data)));
+        routes[CallbackData.DAY] = adminRoute((query, data) ->
+                handleDaySelection(query.getMessage().getChatId(), CallbackData.dayOfWeek(data), CallbackData.lessonType(data)));
+        routes[CallbackData.EDIT] = adminRoute((query, data) ->
+                handleEditLesson(query.getMessage().getChatId(), CallbackData.dayOfWeek(data), CallbackData.lessonType(data)));
+        routes[CallbackData.DELETE] = adminRoute((query, data) ->
+                handleDeleteLesson(query.getMessage().getChatId(), CallbackData.dayOfWeek(data), CallbackData.lessonType(data),
+                        query.getMessage().getMessageId(), query.getId()));
+        routes[CallbackData.BACK_TO_SCHEDULE] = adminRoute((query, data) -> showScheduleMenu(query.getMessage().getChatId()));
+        routes[CallbackData.BACK_TO_MAIN] = adminRoute((query, data) -> showMainMenu(query.getMessage().getChatId(), true));
+        return routes;
+    }
 
-            if (!isAdminUser) {
-                System.out.println("⛔ Попытка доступа к админским функциям без прав: " + userId);
-                answerCallbackQuery(callbackQuery.getId(), "❌ Эта функция доступна только администраторам");
-                return;
-            }
-        }
+    /**
+     * Админский маршрут, который сам отправляет сообщения через execute и ничего не возвращает в теле webhook.
+     */
+    private static CallbackRoute adminRoute(BiLongConsumer<org.telegram.telegrambots.meta.api.objects.CallbackQuery> action) {
+        return new CallbackRoute(true, (query, data) -> Mono.fromRunnable(() -> action.accept(query, data)));
+    }
 
-        // Обработка callback'ов
-        switch (data) {
-            case "schedule_morning" -> {
-                if (isAdminUser) {
-                    showDaySelection(chatId, "morning");
-                } else {
-                    answerCallbackQuery(callbackQuery.getId(), "❌ Недостаточно прав");
-                }
-            }
-            case "schedule_evening" -> {
-                if (isAdminUser) {
-                    showDaySelection(chatId, "evening");
-                } else {
-                    answerCallbackQuery(callbackQuery.getId(), "❌ Недостаточно прав");
-                }
-            }
-            case "back_to_schedule" -> {
-                if (isAdminUser) {
-                    showScheduleMenu(chatId);
-                } else {
-                    answerCallbackQuery(callbackQuery.getId(), "❌ Недостаточно прав");
-                }
-            }
-            case "back_to_main" -> showMainMenu(chatId, isAdminUser);
-            default -> {
-                if (data.startsWith("day_")) {
-                    if (isAdminUser) {
-                        handleDaySelection(chatId, data);
-                    } else {
-                        answerCallbackQuery(callbackQuery.getId(), "❌ Недостаточно прав");
-                    }
-                } else if (data.startsWith("edit_")) {
-                    if (isAdminUser) {
-                        handleEditLesson(chatId, data);
-                    } else {
-                        answerCallbackQuery(callbackQuery.getId(), "❌ Недостаточно прав");
-                    }
-                } else if (data.startsWith("delete_")) {
-                    if (isAdminUser) {
-                        handleDeleteLesson(chatId, data, messageId);
-                    } else {
-                        answerCallbackQuery(callbackQuery.getId(), "❌ Недостаточно прав");
-                    }
-                } else if (data.startsWith("signup_")) {
-                    handleUserSignup(callbackQuery);
-                } else if (data.startsWith("cancel_")) {
-                    handleUserCancel(callbackQuery);
-                } else {
-                    System.out.println("⛔ Неизвестный callback: " + data);
-                    answerCallbackQuery(callbackQuery.getId(), "❌ Неизвестная команда");
-                }
-            }
+    @FunctionalInterface
+    private interface BiLongConsumer<T> {
+        void accept(T value, long data);
+    }
+
+    private Mono<BotApiMethod<?>> handleCallbackQueryAsync(org.telegram.telegrambots.meta.api.objects.CallbackQuery callbackQuery,
+                                                           boolean isAdminUser) {
+        long data = CallbackData.decode(callbackQuery.getData());
+        CallbackRoute route = data != CallbackData.INVALID ? callbackRoutes[CallbackData.opcode(data)] : null;
+
+        if (route == null) {
+            log.warn("⛔ Неизвестный callback: {}", callbackQuery.getData());
+            return Mono.just(callbackAnswer(callbackQuery.getId(), "❌ Неизвестная команда"));
+        }
+        if (route.adminOnly() && !isAdminUser) {
+            log.warn("⛔ Попытка доступа к админским функциям без прав: {}", callbackQuery.getFrom().getId());
+            return Mono.just(callbackAnswer(callbackQuery.getId(), "❌ Эта функция доступна только администраторам"));
         }
+        return route.handler().handle(callbackQuery, data);
     }
 
     private void showRegistrationsForDate(Long chatId, LocalDate date) {
@@ -354,6 +511,7 @@ public class YogaBot extends TelegramWebhookBot implements MessageSender {
                 }
                 sb.append("\n");
             }
+            appendWaitlist(sb, supabaseService.getWaitlist(date, "morning"));
 
             sb.append("🌇 *Вечерняя практика:*\n");
             if (registrations.get("evening").isEmpty()) {
@@ -365,6 +523,11 @@ public class YogaBot extends TelegramWebhookBot implements MessageSender {
                     counter++;
                 }
             }
+            List<String> eveningWaitlist = supabaseService.getWaitlist(date, "evening");
+            if (!eveningWaitlist.isEmpty()) {
+                sb.append("\n");
+                appendWaitlist(sb, eveningWaitlist);
+            }
 
             sb.append("\n\n📊 *Статистика:*\n");
             sb.append("• Утренние: ").append(registrations.get("morning").size()).append(" чел.\n");
@@ -374,14 +537,27 @@ public class YogaBot extends TelegramWebhookBot implements MessageSender {
             sendMsg(chatId, sb.toString());
 
         } catch (Exception e) {
-            System.err.println("❌ Ошибка получения записей: " + e.getMessage());
+            log.error("❌ Ошибка получения записей: {}", e.getMessage());
             sendMsg(chatId, "❌ Ошибка при загрузке записей");
         }
     }
 
+    private static void appendWaitlist(StringBuilder sb, List<String> waitlist) {
+        if (waitlist.isEmpty()) {
+            return;
+        }
+        sb.append("⏳ Лист ожидания:\n");
+        int counter = 1;
+        for (String name : waitlist) {
+            sb.append(counter).append(". ").append(name).append("\n");
+            counter++;
+        }
+        sb.append("\n");
+    }
+
     private void enableNotifications(Long chatId) {
         try {
-            System.out.println("🔄 Включение уведомлений...");
+            log.info("🔄 Включение уведомлений...");
             boolean success = supabaseService.forceEnableNotifications();
             String status = supabaseService.getNotificationsStatus();
 
@@ -403,21 +579,21 @@ public class YogaBot extends TelegramWebhookBot implements MessageSender {
                 sendMsg(chatId, "❌ Ошибка включения уведомлений. Проверьте логи.");
             }
         } catch (Exception e) {
-            System.err.println("❌ Ошибка включения уведомлений: " + e.getMessage());
+            log.error("❌ Ошибка включения уведомлений: {}", e.getMessage());
             sendMsg(chatId, "❌ Ошибка включения уведомлений: " + e.getMessage());
         }
     }
 
     private void disableNotifications(Long chatId) {
         try {
-            System.out.println("🔄 Выключение уведомлений...");
+            log.info("🔄 Выключение уведомлений...");
             boolean success = supabaseService.forceDisableNotifications();
 
             // Принудительно получаем актуальный статус
             boolean currentStatus = supabaseService.areNotificationsEnabled();
             String status = supabaseService.getNotificationsStatus();
 
-            System.out.println("🔕 Результат выключения: success=" + success + ", currentStatus=" + currentStatus);
+            log.info("🔕 Результат выключения: success={}, currentStatus={}", success, currentStatus);
 
             if (success) {
                 String text = """
@@ -435,7 +611,7 @@ public class YogaBot extends TelegramWebhookBot implements MessageSender {
                 sendMsg(chatId, "❌ Ошибка выключения уведомлений. Текущий статус: " + status);
             }
         } catch (Exception e) {
-            System.err.println("❌ Ошибка выключения уведомлений: " + e.getMessage());
+            log.error("❌ Ошибка выключения уведомлений: {}", e.getMessage());
             sendMsg(chatId, "❌ Ошибка выключения уведомлений: " + e.getMessage());
         }
     }
@@ -463,61 +639,61 @@ public class YogaBot extends TelegramWebhookBot implements MessageSender {
 
             sendMsg(chatId, text);
         } catch (Exception e) {
-            System.err.println("❌ Ошибка получения статуса уведомлений: " + e.getMessage());
+            log.error("❌ Ошибка получения статуса уведомлений: {}", e.getMessage());
             sendMsg(chatId, "❌ Ошибка получения статуса уведомлений");
         }
     }
 
     private void handleAdminMessage(Long chatId, String text, Long userId) {
-        System.out.println("👨‍💼 Обработка админской команды: " + text);
+        log.debug("👨‍💼 Обработка админской команды: {}", text);
 
         switch (text) {
             case "📅 Расписание" -> {
-                System.out.println("📅 Админ запросил меню расписания");
+                log.debug("📅 Админ запросил меню расписания");
                 showScheduleMenu(chatId);
             }
             // ЗАМЕНЯЕМ старую кнопку на две новые
             case "🔔 Включить уведомления" -> {
-                System.out.println("🔔 Админ включает уведомления");
+                log.debug("🔔 Админ включает уведомления");
                 enableNotifications(chatId);
             }
             case "🔕 Выключить уведомления" -> {
-                System.out.println("🔕 Админ выключает уведомления");
+                log.debug("🔕 Админ выключает уведомления");
                 disableNotifications(chatId);
             }
             case "📊 Статус уведомлений" -> {
-                System.out.println("📊 Админ запрашивает статус уведомлений");
+                log.debug("📊 Админ запрашивает статус уведомлений");
                 showNotificationsStatus(chatId);
             }
             case "📋 Записи на сегодня" -> {
-                System.out.println("📋 Админ запросил записи на сегодня");
+                log.debug("📋 Админ запросил записи на сегодня");
                 showTodayRegistrations(chatId);
             }
             case "📋 Записи на завтра" -> {
-                System.out.println("📋 Админ запросил записи на завтра");
+                log.debug("📋 Админ запросил записи на завтра");
                 showRegistrationsForDate(chatId, getMoscowDate().plusDays(1));
             }
             case "🔔 Отбивка на сегодня" -> {
-                System.out.println("🔔 Админ отправляет отбивку на сегодня");
+                log.debug("🔔 Админ отправляет отбивку на сегодня");
                 sendTodayNotification();
                 sendMsg(chatId, "✅ Отбивка на сегодня отправлена в канал!");
             }
             case "🔔 Отбивка на завтра" -> {
-                System.out.println("🔔 Админ отправляет отбивку на завтра");
+                log.debug("🔔 Админ отправляет отбивку на завтра");
                 sendTestNotification();
                 sendMsg(chatId, "✅ Отбивка на завтра отправлена в канал!");
             }
             case "🕒 Проверить время" -> {
-                System.out.println("🕒 Админ проверяет время");
+                log.debug("🕒 Админ проверяет время");
                 checkAndSendTime(chatId);
             }
             case "🚫 Отмена" -> {
-                System.out.println("🚫 Админ отменяет действие");
-                userStates.remove(userId);
+                log.debug("🚫 Админ отменяет действие");
+                conversationStates.remove(userId);
                 showMainMenu(chatId, true);
             }
             default -> {
-                System.out.println("📝 Админ вводит текст: " + text);
+                log.debug("📝 Админ вводит текст: {}", text);
                 handleState(chatId, text, userId);
             }
         }
@@ -533,6 +709,15 @@ public class YogaBot extends TelegramWebhookBot implements MessageSender {
     }
 
     private void showMainMenu(Long chatId, boolean isAdminUser) {
+        try {
+            execute(mainMenuMessage(chatId, isAdminUser));
+            log.debug("✅ Показано главное меню для чата {} (admin: {})", chatId, isAdminUser);
+        } catch (TelegramApiException e) {
+            log.error("❌ Ошибка отправки меню: {}", e.getMessage());
+        }
+    }
+
+    private SendMessage mainMenuMessage(Long chatId, boolean isAdminUser) {
         String text;
         if (isAdminUser) {
             text = "🧘 *Админ-панель YogaBot*\n\nВыберите раздел для управления:";
@@ -543,13 +728,7 @@ public class YogaBot extends TelegramWebhookBot implements MessageSender {
         SendMessage message = new SendMessage(chatId.toString(), text);
         message.setParseMode("Markdown");
         message.setReplyMarkup(createMainMenuKeyboard(isAdminUser));
-
-        try {
-            execute(message);
-            System.out.println("✅ Показано главное меню для чата " + chatId + " (admin: " + isAdminUser + ")");
-        } catch (TelegramApiException e) {
-            System.err.println("❌ Ошибка отправки меню: " + e.getMessage());
-        }
+        return message;
     }
 
     private ReplyKeyboardMarkup createMainMenuKeyboard(boolean isAdminUser) {
@@ -572,7 +751,7 @@ public class YogaBot extends TelegramWebhookBot implements MessageSender {
 
         // Кнопки только для админов
         if (isAdminUser) {
-            System.out.println("👨‍💼 Создаем админские кнопки для пользователя");
+            log.debug("👨‍💼 Создаем админские кнопки для пользователя");
 
             // ЗАМЕНЯЕМ одну кнопку на две отдельные
             KeyboardRow adminRow1 = new KeyboardRow();
@@ -600,120 +779,116 @@ public class YogaBot extends TelegramWebhookBot implements MessageSender {
         return keyboardMarkup;
     }
 
-    private void showScheduleForUsers(Long chatId) {
-        String scheduleText = getWeeklySchedule();
-        String text = "📅 *Расписание на неделю:*\n\n" + scheduleText +
-                "\n\nЗаписывайтесь на занятия через уведомления в канале!";
-
-        SendMessage message = new SendMessage(chatId.toString(), text);
+    private SendMessage scheduleForUsersMessage(Long chatId) {
+        SendMessage message = new SendMessage(chatId.toString(), renderedSchedule().userText());
         message.setParseMode("Markdown");
-
-        try {
-            execute(message);
-        } catch (TelegramApiException e) {
-            System.err.println("❌ Ошибка отправки расписания: " + e.getMessage());
-        }
+        return message;
     }
     
     private void showScheduleMenu(Long chatId) {
-        System.out.println("🎯 НАЧАЛО showScheduleMenu для чата " + chatId);
+        log.debug("🎯 НАЧАЛО showScheduleMenu для чата {}", chatId);
 
         try {
-            System.out.println("🔄 Получаем расписание...");
-            String scheduleText = getWeeklySchedule();
-            System.out.println("✅ Расписание получено, длина: " + scheduleText.length());
-
-            String text = "📅 *Расписание на неделю:*\n\n" + scheduleText + "\n\nВыберите раздел для управления:";
+            String text = renderedSchedule().adminText();
 
-            System.out.println("🔧 Создаем inline-кнопки...");
+            log.debug("🔧 Создаем inline-кнопки...");
 
             InlineKeyboardMarkup markup = new InlineKeyboardMarkup();
             List<List<InlineKeyboardButton>> rows = new ArrayList<>();
 
             List<InlineKeyboardButton> row1 = new ArrayList<>();
-            row1.add(createInlineButton("🌅 Утренние занятия", "schedule_morning"));
-            row1.add(createInlineButton("🌇 Вечерние занятия", "schedule_evening"));
+            row1.add(createInlineButton("🌅 Утренние занятия", CallbackData.schedule(CallbackData.SCHEDULE, "morning", null)));
+            row1.add(createInlineButton("🌇 Вечерние занятия", CallbackData.schedule(CallbackData.SCHEDULE, "evening", null)));
 
             List<InlineKeyboardButton> row2 = new ArrayList<>();
-            row2.add(createInlineButton("🔙 Назад в меню", "back_to_main"));
+            row2.add(createInlineButton("🔙 Назад в меню", CallbackData.of(CallbackData.BACK_TO_MAIN)));
 
             rows.add(row1);
             rows.add(row2);
             markup.setKeyboard(rows);
 
-            System.out.println("✅ Кнопки созданы, отправляем сообщение...");
+            log.debug("✅ Кнопки созданы, отправляем сообщение...");
 
             SendMessage message = new SendMessage(chatId.toString(), text);
             message.setParseMode("Markdown");
             message.setReplyMarkup(markup);
 
-            System.out.println("🚀 Отправляем сообщение с inline-кнопками...");
+            log.debug("🚀 Отправляем сообщение с inline-кнопками...");
             execute(message);
-            System.out.println("✅ Меню расписания УСПЕШНО отправлено для чата " + chatId);
+            log.debug("✅ Меню расписания УСПЕШНО отправлено для чата {}", chatId);
 
         } catch (Exception e) {
-            System.err.println("❌ КРИТИЧЕСКАЯ ОШИБКА в showScheduleMenu: " + e.getMessage());
-            e.printStackTrace();
+            log.error("❌ КРИТИЧЕСКАЯ ОШИБКА в showScheduleMenu", e);
 
             try {
                 sendMsg(chatId, "❌ Ошибка при загрузке расписания: " + e.getMessage());
             } catch (Exception ex) {
-                System.err.println("❌ Не удалось отправить сообщение об ошибке: " + ex.getMessage());
+                log.error("❌ Не удалось отправить сообщение об ошибке: {}", ex.getMessage());
             }
         }
 
-        System.out.println("🎯 КОНЕЦ showScheduleMenu");
+        log.debug("🎯 КОНЕЦ showScheduleMenu");
     }
 
-    private String getWeeklySchedule() {
-        System.out.println("🔄 Вызов getWeeklySchedule()");
-        System.out.println("📊 fixedSchedule size: " + fixedSchedule.size());
-
-        try {
-            StringBuilder sb = new StringBuilder();
-            LocalDate today = LocalDate.now();
-            DateTimeFormatter formatter = DateTimeFormatter.ofPattern("EEEE (dd.MM)");
+    private RenderedSchedule renderedSchedule() {
+        ScheduleSnapshot schedule = fixedSchedule.get();
+        LocalDate today = getMoscowDate();
 
-            for (int i = 0; i < 7; i++) {
-                LocalDate date = today.plusDays(i);
-                DayOfWeek dayOfWeek = date.getDayOfWeek();
+        RenderedSchedule cached = renderedSchedule.get();
+        if (cached != null && cached.version() == schedule.version() && cached.startDate().equals(today)) {
+            return cached;
+        }
 
-                System.out.println("📅 Обрабатываем день: " + dayOfWeek);
+        try {
+            String weekly = renderWeeklySchedule(schedule, today);
+            RenderedSchedule rendered = new RenderedSchedule(schedule.version(), today,
+                    "📅 *Расписание на неделю:*\n\n" + weekly + "\n\nЗаписывайтесь на занятия через уведомления в канале!",
+                    "📅 *Расписание на неделю:*\n\n" + weekly + "\n\nВыберите раздел для управления:");
+            renderedSchedule.set(rendered);
+            log.debug("✅ Расписание отрисовано: версия {}, с {}", schedule.version(), today);
+            return rendered;
 
-                // Проверяем, есть ли расписание для этого дня
-                if (!fixedSchedule.containsKey(dayOfWeek)) {
-                    System.out.println("⚠️ Нет расписания для дня: " + dayOfWeek);
-                    continue;
-                }
+        } catch (Exception e) {
+            log.error("❌ Ошибка в getWeeklySchedule", e);
+            String error = "⚠️ Ошибка загрузки расписания. Попробуйте позже.";
+            return new RenderedSchedule(schedule.version(), today,
+                    "📅 *Расписание на неделю:*\n\n" + error,
+                    "📅 *Расписание на неделю:*\n\n" + error + "\n\nВыберите раздел для управления:");
+        }
+    }
 
-                String dayName = date.format(formatter);
-                dayName = dayName.substring(0, 1).toUpperCase() + dayName.substring(1);
+    /**
+     * Текст расписания на 7 дней начиная с today. Открыт для бенчмарков.
+     */
+    public static String renderWeeklySchedule(ScheduleSnapshot schedule, LocalDate today) {
+        StringBuilder sb = new StringBuilder();
 
-                sb.append("📅 *").append(dayName).append("*\n");
+        for (int i = 0; i < 7; i++) {
+            LocalDate date = today.plusDays(i);
+            DayOfWeek dayOfWeek = date.getDayOfWeek();
 
-                String morningLesson = fixedSchedule.get(dayOfWeek).get("morning");
-                String eveningLesson = fixedSchedule.get(dayOfWeek).get("evening");
+            // Проверяем, есть ли расписание для этого дня
+            if (!schedule.hasDay(dayOfWeek)) {
+                continue;
+            }
 
-                // Проверяем на null
-                morningLesson = morningLesson != null ? morningLesson : "Не указано";
-                eveningLesson = eveningLesson != null ? eveningLesson : "Не указано";
+            String dayName = date.format(WEEK_DAY_FORMATTER);
+            dayName = dayName.substring(0, 1).toUpperCase() + dayName.substring(1);
 
-                sb.append("🌅 *Утро:* ").append(morningLesson).append("\n");
-                sb.append("🌇 *Вечер:* ").append(eveningLesson).append("\n\n");
+            sb.append("📅 *").append(dayName).append("*\n");
 
-                System.out.println("   - Утро: " + morningLesson);
-                System.out.println("   - Вечер: " + eveningLesson);
-            }
+            String morningLesson = schedule.lesson(dayOfWeek, "morning");
+            String eveningLesson = schedule.lesson(dayOfWeek, "evening");
 
-            String result = sb.toString();
-            System.out.println("✅ getWeeklySchedule успешно завершен, длина: " + result.length());
-            return result;
+            // Проверяем на null
+            morningLesson = morningLesson != null ? morningLesson : "Не указано";
+            eveningLesson = eveningLesson != null ? eveningLesson : "Не указано";
 
-        } catch (Exception e) {
-            System.err.println("❌ Ошибка в getWeeklySchedule: " + e.getMessage());
-            e.printStackTrace();
-            return "⚠️ Ошибка загрузки расписания. Попробуйте позже.";
+            sb.append("🌅 *Утро:* ").append(morningLesson).append("\n");
+            sb.append("🌇 *Вечер:* ").append(eveningLesson).append("\n\n");
         }
+
+        return sb.toString();
     }
 
     private void showDaySelection(Long chatId, String lessonType) {
@@ -732,13 +907,13 @@ public class YogaBot extends TelegramWebhookBot implements MessageSender {
 
         for (int i = 0; i < days.length; i++) {
             List<InlineKeyboardButton> row = new ArrayList<>();
-            String callbackData = "day_" + days[i] + "_" + lessonType;
+            String callbackData = CallbackData.schedule(CallbackData.DAY, lessonType, days[i]);
             row.add(createInlineButton(dayNames[i], callbackData));
             rows.add(row);
         }
 
         List<InlineKeyboardButton> backRow = new ArrayList<>();
-        backRow.add(createInlineButton("🔙 Назад", "back_to_schedule"));
+        backRow.add(createInlineButton("🔙 Назад", CallbackData.of(CallbackData.BACK_TO_SCHEDULE)));
         rows.add(backRow);
 
         markup.setKeyboard(rows);
@@ -748,19 +923,15 @@ public class YogaBot extends TelegramWebhookBot implements MessageSender {
 
         try {
             execute(message);
-            System.out.println("✅ Показан выбор дней для " + lessonType + " для админа " + chatId);
+            log.debug("✅ Показан выбор дней для {} для админа {}", lessonType, chatId);
         } catch (TelegramApiException e) {
-            System.err.println("❌ Ошибка отправки выбора дня: " + e.getMessage());
+            log.error("❌ Ошибка отправки выбора дня: {}", e.getMessage());
         }
     }
 
-    private void handleDaySelection(Long chatId, String data) {
-        String[] parts = data.split("_");
-        DayOfWeek dayOfWeek = DayOfWeek.valueOf(parts[1]);
-        String lessonType = parts[2];
-
+    private void handleDaySelection(Long chatId, DayOfWeek dayOfWeek, String lessonType) {
         String dayName = getRussianDayNameFull(dayOfWeek);
-        String currentSchedule = fixedSchedule.get(dayOfWeek).get(lessonType);
+        String currentSchedule = fixedSchedule.get().lesson(dayOfWeek, lessonType);
 
         String text = "📅 *" + dayName + " - " + (lessonType.equals("morning") ? "Утро" : "Вечер") + "*\n\n";
         text += "📝 *Текущее расписание:*\n" + currentSchedule + "\n\n";
@@ -771,12 +942,12 @@ public class YogaBot extends TelegramWebhookBot implements MessageSender {
 
         // Кнопки действий - ВОТ ОНИ!
         List<InlineKeyboardButton> actionRow = new ArrayList<>();
-        actionRow.add(createInlineButton("✏️ Изменить", "edit_" + dayOfWeek + "_" + lessonType));
-        actionRow.add(createInlineButton("🗑️ Удалить", "delete_" + dayOfWeek + "_" + lessonType));
+        actionRow.add(createInlineButton("✏️ Изменить", CallbackData.schedule(CallbackData.EDIT, lessonType, dayOfWeek)));
+        actionRow.add(createInlineButton("🗑️ Удалить", CallbackData.schedule(CallbackData.DELETE, lessonType, dayOfWeek)));
 
         // Кнопка назад
         List<InlineKeyboardButton> backRow = new ArrayList<>();
-        backRow.add(createInlineButton("🔙 Назад", "schedule_" + lessonType));
+        backRow.add(createInlineButton("🔙 Назад", CallbackData.schedule(CallbackData.SCHEDULE, lessonType, null)));
 
         rows.add(actionRow);
         rows.add(backRow);
@@ -788,30 +959,25 @@ public class YogaBot extends TelegramWebhookBot implements MessageSender {
 
         try {
             execute(message);
-            System.out.println("✅ Показаны действия для дня " + dayName + " " + lessonType + " для админа " + chatId);
+            log.debug("✅ Показаны действия для дня {} {} для админа {}", dayName, lessonType, chatId);
         } catch (TelegramApiException e) {
-            System.err.println("❌ Ошибка отправки действий для дня: " + e.getMessage());
+            log.error("❌ Ошибка отправки действий для дня: {}", e.getMessage());
         }
     }
 
-    private void handleEditLesson(Long chatId, String data) {
+    private void handleEditLesson(Long chatId, DayOfWeek dayOfWeek, String lessonType) {
         // Дополнительная проверка прав
         if (!isAdmin(chatId)) {
             sendMsg(chatId, "❌ Недостаточно прав для изменения расписания");
             return;
         }
 
-        // data format: "edit_MONDAY_morning"
-        String[] parts = data.split("_");
-        DayOfWeek dayOfWeek = DayOfWeek.valueOf(parts[1]);
-        String lessonType = parts[2];
-
         String dayName = getRussianDayNameFull(dayOfWeek);
         String typeText = lessonType.equals("morning") ? "утреннего" : "вечернего";
-        String currentSchedule = fixedSchedule.get(dayOfWeek).get(lessonType);
+        String currentSchedule = fixedSchedule.get().lesson(dayOfWeek, lessonType);
 
         // Сохраняем состояние для обработки ввода
-        userStates.put(chatId, "editing_" + dayOfWeek + "_" + lessonType);
+        conversationStates.put(chatId, new ConversationState.EditingLesson(dayOfWeek, lessonType));
 
         String text = "✏️ *Изменение " + typeText + " занятия на " + dayName + "*\n\n";
         text += "📝 *Текущее расписание:*\n" + currentSchedule + "\n\n";
@@ -826,26 +992,23 @@ public class YogaBot extends TelegramWebhookBot implements MessageSender {
         try {
             execute(message);
         } catch (TelegramApiException e) {
-            System.err.println("❌ Ошибка запроса изменения: " + e.getMessage());
+            log.error("❌ Ошибка запроса изменения: {}", e.getMessage());
         }
     }
 
-    private void handleDeleteLesson(Long chatId, String data, Integer messageId) {
+    private void handleDeleteLesson(Long chatId, DayOfWeek dayOfWeek, String lessonType, Integer messageId,
+                                    String callbackQueryId) {
         // Дополнительная проверка прав
         if (!isAdmin(chatId)) {
-            answerCallbackQuery(data, "❌ Недостаточно прав для удаления занятий");
+            answerCallbackQuery(callbackQueryId, "❌ Недостаточно прав для удаления занятий");
             return;
         }
 
-        String[] parts = data.split("_");
-        DayOfWeek dayOfWeek = DayOfWeek.valueOf(parts[1]);
-        String lessonType = parts[2];
-
         String dayName = getRussianDayNameFull(dayOfWeek);
         String typeText = lessonType.equals("morning") ? "утреннее" : "вечернее";
 
         String deletedSchedule = "Отдых";
-        fixedSchedule.get(dayOfWeek).put(lessonType, deletedSchedule);
+        fixedSchedule.updateAndGet(schedule -> schedule.withLesson(dayOfWeek, lessonType, deletedSchedule));
 
         // СОХРАНЯЕМ ИЗМЕНЕНИЕ В БАЗУ ДАННЫХ
         supabaseService.saveSchedule(dayOfWeek, lessonType, deletedSchedule, chatId);
@@ -862,27 +1025,18 @@ public class YogaBot extends TelegramWebhookBot implements MessageSender {
         try {
             execute(editMessage);
         } catch (TelegramApiException e) {
-            System.err.println("❌ Ошибка обновления сообщения: " + e.getMessage());
+            log.error("❌ Ошибка обновления сообщения: {}", e.getMessage());
         }
 
-        try {
-            Thread.sleep(1000);
-        } catch (InterruptedException e) {
-            e.printStackTrace();
-        }
         showDaySelection(chatId, lessonType);
     }
 
     private void handleState(Long chatId, String text, Long userId) {
-        String state = userStates.get(userId);
-
-        if (state != null && state.startsWith("editing_")) {
-            String[] parts = state.split("_");
-            DayOfWeek dayOfWeek = DayOfWeek.valueOf(parts[1]);
-            String lessonType = parts[2];
+        ConversationState state = conversationStates.get(userId);
 
-            updateLessonSchedule(chatId, text, dayOfWeek, lessonType);
-            userStates.remove(userId);
+        if (state instanceof ConversationState.EditingLesson editing) {
+            updateLessonSchedule(chatId, text, editing.dayOfWeek(), editing.lessonType());
+            conversationStates.remove(userId);
         }
     }
 
@@ -890,15 +1044,15 @@ public class YogaBot extends TelegramWebhookBot implements MessageSender {
         // Проверка прав перед сохранением в БД
         if (!isAdmin(chatId)) {
             sendMsg(chatId, "❌ Недостаточно прав для сохранения изменений");
-            userStates.remove(chatId);
+            conversationStates.remove(chatId);
             return;
         }
 
         String dayName = getRussianDayNameFull(dayOfWeek);
         String typeText = lessonType.equals("morning") ? "утреннее" : "вечернее";
 
-        // Обновляем в памяти
-        fixedSchedule.get(dayOfWeek).put(lessonType, newSchedule);
+        // Обновляем в памяти: новый снимок расписания заменяет старый целиком
+        fixedSchedule.updateAndGet(schedule -> schedule.withLesson(dayOfWeek, lessonType, newSchedule));
 
         // СОХРАНЯЕМ В БАЗУ ДАННЫХ с логированием
         supabaseService.saveSchedule(dayOfWeek, lessonType, newSchedule, chatId);
@@ -913,15 +1067,10 @@ public class YogaBot extends TelegramWebhookBot implements MessageSender {
         try {
             execute(message);
         } catch (TelegramApiException e) {
-            System.err.println("❌ Ошибка отправки подтверждения: " + e.getMessage());
+            log.error("❌ Ошибка отправки подтверждения: {}", e.getMessage());
         }
 
-        // Возвращаем к выбору дня
-        try {
-            Thread.sleep(1000);
-        } catch (InterruptedException e) {
-            e.printStackTrace();
-        }
+        // Возвращаем к выбору дня (паузу между сообщениями выдерживает ограничитель)
         showDaySelection(chatId, lessonType);
     }
 
@@ -962,26 +1111,15 @@ public class YogaBot extends TelegramWebhookBot implements MessageSender {
     }
 
     public Map<String, String> getScheduleForDate(LocalDate date) {
-        Map<String, String> schedule = new HashMap<>();
-        DayOfWeek dayOfWeek = date.getDayOfWeek();
-
-        if (fixedSchedule.containsKey(dayOfWeek)) {
-            schedule.put("morning", fixedSchedule.get(dayOfWeek).get("morning"));
-            schedule.put("evening", fixedSchedule.get(dayOfWeek).get("evening"));
-        } else {
-            schedule.put("morning", "Не указано");
-            schedule.put("evening", "Не указано");
-        }
-
-        return schedule;
+        return fixedSchedule.get().lessons(date.getDayOfWeek());
     }
 
     private void showTodayRegistrations(Long chatId) {
         LocalDate today = getMoscowDate();
-        System.out.println("🔍 Запрос записей на сегодня: " + today);
+        log.debug("🔍 Запрос записей на сегодня: {}", today);
 
         Map<String, List<String>> registrations = supabaseService.getRegistrationsForDate(today);
-        System.out.println("🔍 Найдено записей: утро=" + registrations.get("morning").size() + ", вечер=" + registrations.get("evening").size());
+        log.debug("🔍 Найдено записей: утро={}, вечер={}", registrations.get("morning").size(), registrations.get("evening").size());
 
         StringBuilder sb = new StringBuilder();
         sb.append("📋 *Записи на сегодня (").append(today.format(DateTimeFormatter.ofPattern("dd.MM"))).append(")*\n\n");
@@ -997,6 +1135,7 @@ public class YogaBot extends TelegramWebhookBot implements MessageSender {
             }
             sb.append("\n");
         }
+        appendWaitlist(sb, supabaseService.getWaitlist(today, "morning"));
 
         sb.append("🌇 *Вечерняя практика:*\n");
         if (registrations.get("evening").isEmpty()) {
@@ -1008,6 +1147,11 @@ public class YogaBot extends TelegramWebhookBot implements MessageSender {
                 counter++;
             }
         }
+        List<String> eveningWaitlist = supabaseService.getWaitlist(today, "evening");
+        if (!eveningWaitlist.isEmpty()) {
+            sb.append("\n");
+            appendWaitlist(sb, eveningWaitlist);
+        }
 
         sb.append("\n\n📊 *Статистика:*\n");
         sb.append("• Утренние: ").append(registrations.get("morning").size()).append(" чел.\n");
@@ -1037,11 +1181,7 @@ public class YogaBot extends TelegramWebhookBot implements MessageSender {
         text += "📍 *Место:* Yoga Shala\n\n";
         text += "Записаться⤵️";
 
-        InlineKeyboardMarkup markup = new InlineKeyboardMarkup();
-        List<InlineKeyboardButton> row = new ArrayList<>();
-        row.add(createInlineButton("✅ Записаться", "signup_morning_" + today));
-        row.add(createInlineButton("❌ Отменить запись", "cancel_morning_" + today));
-        markup.setKeyboard(List.of(row));
+        InlineKeyboardMarkup markup = SignupCounterUpdater.markup("morning", today, 0, 0);
 
         org.telegram.telegrambots.meta.api.objects.Message sentMessage = sendToChannel(text, markup);
         if (sentMessage != null) {
@@ -1075,11 +1215,7 @@ public class YogaBot extends TelegramWebhookBot implements MessageSender {
         text += "📍 *Место:* " + location + "\n\n";
         text += "Записаться⤵️";
 
-        InlineKeyboardMarkup markup = new InlineKeyboardMarkup();
-        List<InlineKeyboardButton> row = new ArrayList<>();
-        row.add(createInlineButton("✅ Записаться", "signup_evening_" + today));
-        row.add(createInlineButton("❌ Отменить запись", "cancel_evening_" + today));
-        markup.setKeyboard(List.of(row));
+        InlineKeyboardMarkup markup = SignupCounterUpdater.markup("evening", today, 0, 0);
 
         org.telegram.telegrambots.meta.api.objects.Message sentMessage = sendToChannel(text, markup);
         if (sentMessage != null) {
@@ -1088,7 +1224,7 @@ public class YogaBot extends TelegramWebhookBot implements MessageSender {
     }
 
     public void sendTodayNotification() {
-        System.out.println("🔔 Отправка уведомлений на сегодня...");
+        log.info("🔔 Отправка уведомлений на сегодня...");
 
         LocalDate today = getMoscowDate();
         Map<String, String> todaySchedule = getScheduleForDate(today); // ИСПРАВЛЕНО
@@ -1098,15 +1234,10 @@ public class YogaBot extends TelegramWebhookBot implements MessageSender {
         boolean hasMorning = morningLesson != null && !morningLesson.equals("ОТДЫХ") && !morningLesson.equals("Отдых");
         boolean hasEvening = eveningLesson != null && !eveningLesson.equals("ОТДЫХ") && !eveningLesson.equals("Отдых");
 
-        System.out.println("📊 На сегодня: утро=" + hasMorning + ", вечер=" + hasEvening);
+        log.info("📊 На сегодня: утро={}, вечер={}", hasMorning, hasEvening);
 
         if (hasMorning) {
             sendTodayMorningNotification();
-            try {
-                Thread.sleep(2000);
-            } catch (InterruptedException e) {
-                e.printStackTrace();
-            }
         }
 
         if (hasEvening) {
@@ -1119,7 +1250,7 @@ public class YogaBot extends TelegramWebhookBot implements MessageSender {
     }
 
     public void sendTestNotification() {
-        System.out.println("🧪 Отправка тестового уведомления...");
+        log.info("🧪 Отправка тестового уведомления...");
 
         LocalDate tomorrow = LocalDate.now().plusDays(1);
         Map<String, String> tomorrowSchedule = getTomorrowSchedule(tomorrow);
@@ -1127,22 +1258,17 @@ public class YogaBot extends TelegramWebhookBot implements MessageSender {
         String morningLesson = tomorrowSchedule.get("morning");
         String eveningLesson = tomorrowSchedule.get("evening");
 
-        System.out.println("📅 Расписание на завтра:");
-        System.out.println("Утро: " + morningLesson);
-        System.out.println("Вечер: " + eveningLesson);
+        log.info("📅 Расписание на завтра:");
+        log.info("Утро: {}", morningLesson);
+        log.info("Вечер: {}", eveningLesson);
 
-        System.out.println("🔔 Тест утреннего уведомления...");
+        log.info("🔔 Тест утреннего уведомления...");
         sendMorningNotification(morningLesson);
 
-        try {
-            Thread.sleep(2000);
-            System.out.println("🔔 Тест вечернего уведомления...");
-            sendEveningNotification(eveningLesson);
-        } catch (InterruptedException e) {
-            e.printStackTrace();
-        }
+        log.info("🔔 Тест вечернего уведомления...");
+        sendEveningNotification(eveningLesson);
 
-        System.out.println("✅ Тестовые уведомления отправлены с кнопками отмены!");
+        log.info("✅ Тестовые уведомления отправлены с кнопками отмены!");
     }
 
     private void sendTestNotificationToAdmin(Long chatId) {
@@ -1155,7 +1281,7 @@ public class YogaBot extends TelegramWebhookBot implements MessageSender {
     }
 
     public void sendManualNotification(String type) {
-        System.out.println("🔔 Ручная отправка уведомления: " + type);
+        log.info("🔔 Ручная отправка уведомления: {}", type);
 
         LocalDate tomorrow = LocalDate.now().plusDays(1);
         Map<String, String> tomorrowSchedule = getTomorrowSchedule(tomorrow);
@@ -1180,13 +1306,7 @@ public class YogaBot extends TelegramWebhookBot implements MessageSender {
     }
 
     public Map<String, String> getTomorrowSchedule(LocalDate tomorrow) {
-        Map<String, String> schedule = new HashMap<>();
-        DayOfWeek dayOfWeek = tomorrow.getDayOfWeek();
-
-        schedule.put("morning", fixedSchedule.get(dayOfWeek).get("morning"));
-        schedule.put("evening", fixedSchedule.get(dayOfWeek).get("evening"));
-
-        return schedule;
+        return getScheduleForDate(tomorrow);
     }
 
     public void sendMorningNotification(String morningLesson) {
@@ -1204,11 +1324,7 @@ public class YogaBot extends TelegramWebhookBot implements MessageSender {
         text += "📍 *Место:* Yoga Shala\n\n";
         text += "Записаться⤵️";
 
-        InlineKeyboardMarkup markup = new InlineKeyboardMarkup();
-        List<InlineKeyboardButton> row = new ArrayList<>();
-        row.add(createInlineButton("✅ Записаться", "signup_morning_" + tomorrow));
-        row.add(createInlineButton("❌ Отменить запись", "cancel_morning_" + tomorrow));
-        markup.setKeyboard(List.of(row));
+        InlineKeyboardMarkup markup = SignupCounterUpdater.markup("morning", tomorrow, 0, 0);
 
         org.telegram.telegrambots.meta.api.objects.Message sentMessage = sendToChannel(text, markup);
         if (sentMessage != null) {
@@ -1236,11 +1352,7 @@ public class YogaBot extends TelegramWebhookBot implements MessageSender {
         text += "📍 *Место:* " + location + "\n\n";
         text += "Записаться⤵️";
 
-        InlineKeyboardMarkup markup = new InlineKeyboardMarkup();
-        List<InlineKeyboardButton> row = new ArrayList<>();
-        row.add(createInlineButton("✅ Записаться", "signup_evening_" + tomorrow));
-        row.add(createInlineButton("❌ Отменить запись", "cancel_evening_" + tomorrow));
-        markup.setKeyboard(List.of(row));
+        InlineKeyboardMarkup markup = SignupCounterUpdater.markup("evening", tomorrow, 0, 0);
 
         org.telegram.telegrambots.meta.api.objects.Message sentMessage = sendToChannel(text, markup);
         if (sentMessage != null) {
@@ -1271,7 +1383,7 @@ public class YogaBot extends TelegramWebhookBot implements MessageSender {
                 saveMessageInfo(sentMessage, text);
             }
         } else {
-            System.out.println("✅ Оба занятия есть, уведомление не требуется");
+            log.info("✅ Оба занятия есть, уведомление не требуется");
         }
     }
 
@@ -1281,7 +1393,7 @@ public class YogaBot extends TelegramWebhookBot implements MessageSender {
 
     private org.telegram.telegrambots.meta.api.objects.Message sendToChannel(String text, InlineKeyboardMarkup markup) {
         if (channelId == null || channelId.isEmpty()) {
-            System.out.println("⚠️ Channel ID не настроен");
+            log.warn("⚠️ Channel ID не настроен");
             return null;
         }
 
@@ -1294,10 +1406,11 @@ public class YogaBot extends TelegramWebhookBot implements MessageSender {
 
         try {
             org.telegram.telegrambots.meta.api.objects.Message sentMessage = execute(message);
-            System.out.println("✅ Уведомление отправлено в канал, ID: " + sentMessage.getMessageId());
+            log.info("✅ Уведомление отправлено в канал, ID: {}", sentMessage.getMessageId());
+            signupCounters.posted(sentMessage.getMessageId(), markup);
             return sentMessage;
         } catch (TelegramApiException e) {
-            System.err.println("❌ Ошибка отправки в канал: " + e.getMessage());
+            log.error("❌ Ошибка отправки в канал: {}", e.getMessage());
             return null;
         }
     }
@@ -1311,31 +1424,17 @@ public class YogaBot extends TelegramWebhookBot implements MessageSender {
                 return;
             }
 
-            String lessonType = "unknown";
             LocalDate lessonDate;
 
             // Логируем текст для отладки
             log.info("📝 Текст сообщения для анализа: {}", text.substring(0, Math.min(100, text.length())));
 
             // ОПРЕДЕЛЕНИЕ ТИПА СООБЩЕНИЯ
-            if (text.contains("утренняя практика") || text.contains("Утренняя практика") ||
-                    (text.contains("🌅") && text.contains("практика")) ||
-                    (text.contains("утренних") && text.contains("занятий нет"))) {
-                lessonType = "morning";
-                log.info("🔍 Определен тип: morning");
-            } else if (text.contains("вечерняя практика") || text.contains("Вечерняя практика") ||
-                    (text.contains("🌇") && text.contains("практика")) ||
-                    (text.contains("вечерних") && text.contains("занятий нет"))) {
-                lessonType = "evening";
-                log.info("🔍 Определен тип: evening");
-            } else if (text.contains("занятий нет") || text.contains("Отдыхаем") ||
-                    text.contains("отдыхаем") || text.contains("нет занятий") ||
-                    (text.contains("Ура") && text.contains("занятий нет"))) {
-                lessonType = "no_classes";
-                log.info("🔍 Определен тип: no_classes");
-            } else {
+            String lessonType = ChannelPostClassifier.lessonType(text);
+            if (lessonType.equals("unknown")) {
                 log.warn("⚠️ Не удалось определить тип занятия для текста: {}", text.substring(0, Math.min(50, text.length())));
-                lessonType = "unknown";
+            } else {
+                log.info("🔍 Определен тип: {}", lessonType);
             }
 
             // ОПРЕДЕЛЕНИЕ ДАТЫ - ВСЕГДА ЗАВТРАШНИЙ ДЕНЬ для отбивок в 16:00
@@ -1356,101 +1455,110 @@ public class YogaBot extends TelegramWebhookBot implements MessageSender {
         }
     }
 
-    private void handleUserSignup(org.telegram.telegrambots.meta.api.objects.CallbackQuery callbackQuery) {
-        String data = callbackQuery.getData();
+    private Mono<AnswerCallbackQuery> handleUserSignup(org.telegram.telegrambots.meta.api.objects.CallbackQuery callbackQuery,
+                                                       long data) {
         Long userId = callbackQuery.getFrom().getId();
         String username = callbackQuery.getFrom().getUserName();
         String firstName = callbackQuery.getFrom().getFirstName();
 
         String displayName = username != null ? "@" + username : firstName;
 
-        System.out.println("🔘 Обработка записи: " + data);
-
-        // Парсим данные: "signup_morning_2025-10-13"
-        String[] parts = data.split("_");
-        if (parts.length < 3) {
-            System.out.println("❌ Неверный формат callback данных: " + data);
-            answerCallbackQuery(callbackQuery.getId(), "❌ Ошибка формата данных");
-            return;
-        }
+        log.debug("🔘 Обработка записи: {}", callbackQuery.getData());
 
-        String lessonType = parts[1];
-        LocalDate lessonDate = LocalDate.parse(parts[2]);
+        String lessonType = CallbackData.lessonType(data);
+        LocalDate lessonDate = CallbackData.lessonDate(data);
 
-        System.out.println("📅 Дата занятия: " + lessonDate + ", тип: " + lessonType);
-        System.out.println("📅 Сегодня в Москве: " + getMoscowDate());
+        LocalDate today = getMoscowDate();
+        log.debug("📅 Дата занятия: {}, тип: {}, сегодня в Москве: {}", lessonDate, lessonType, today);
 
         // Проверяем, что дата не прошедшая (по московскому времени)
-        if (lessonDate.isBefore(getMoscowDate())) {
-            System.out.println("❌ Попытка записи на прошедшее занятие: " + lessonDate);
-            answerCallbackQuery(callbackQuery.getId(), "❌ Нельзя записаться на прошедшее занятие!");
-            return;
+        if (lessonDate.isBefore(today)) {
+            log.info("❌ Попытка записи на прошедшее занятие: {}", lessonDate);
+            return Mono.just(callbackAnswer(callbackQuery.getId(), "❌ Нельзя записаться на прошедшее занятие!"));
         }
 
-        boolean success = supabaseService.registerUser(userId, username, displayName, lessonDate, lessonType);
-
-        String answer = success ?
-                "✅ Вы записаны на " + (lessonType.equals("morning") ? "утреннюю" : "вечернюю") + " практику!" :
-                "❌ Вы уже записаны на это занятие!";
+        String practice = lessonType.equals("morning") ? "утреннюю" : "вечернюю";
+        return supabaseService.signUpAsync(userId, username, displayName, lessonDate, lessonType)
+                .doOnNext(result -> {
+                    if (result == SignupResult.REGISTERED) {
+                        signupCounters.changed(lessonDate, lessonType);
+                    }
+                })
+                .map(result -> callbackAnswer(callbackQuery.getId(), switch (result) {
+                    case REGISTERED -> "✅ Вы записаны на " + practice + " практику!";
+                    case ALREADY_REGISTERED -> "❌ Вы уже записаны на это занятие!";
+                    case WAITLISTED -> "⏳ Мест нет - вы в листе ожидания. Запишем автоматически, если место освободится!";
+                    case ALREADY_WAITLISTED -> "⏳ Вы уже в листе ожидания на это занятие";
+                    case UNAVAILABLE -> "⚠️ Не удалось проверить свободные места. Попробуйте еще раз через минуту.";
+                }));
+    }
 
-        answerCallbackQuery(callbackQuery.getId(), answer);
+    /**
+     * Сообщение в личку тому, кого перевели из листа ожидания. Дойдет, только если пользователь
+     * хоть раз писал боту - иначе Telegram не даст написать первым.
+     */
+    private void notifyWaitlistPromotion(org.example.service.RegistrationWriteBatcher.Registration registration) {
+        String practice = registration.lessonType().equals("morning") ? "утреннюю" : "вечернюю";
+        sendMsg(registration.userId(), "🎉 Освободилось место! Вы записаны на " + practice + " практику " +
+                registration.lessonDate().format(DateTimeFormatter.ofPattern("dd.MM")) + ".");
     }
 
-    private void handleUserCancel(org.telegram.telegrambots.meta.api.objects.CallbackQuery callbackQuery) {
-        String data = callbackQuery.getData();
+    private Mono<AnswerCallbackQuery> handleUserCancel(org.telegram.telegrambots.meta.api.objects.CallbackQuery callbackQuery,
+                                                       long data) {
         Long userId = callbackQuery.getFrom().getId();
 
-        System.out.println("🔘 Обработка отмены: " + data);
+        log.debug("🔘 Обработка отмены: {}", callbackQuery.getData());
 
-        // Парсим данные: "cancel_evening_2025-10-13"
-        String[] parts = data.split("_");
-        if (parts.length < 3) {
-            System.out.println("❌ Неверный формат callback данных: " + data);
-            answerCallbackQuery(callbackQuery.getId(), "❌ Ошибка формата данных");
-            return;
-        }
+        String lessonType = CallbackData.lessonType(data);
+        LocalDate lessonDate = CallbackData.lessonDate(data);
 
-        String lessonType = parts[1];
-        LocalDate lessonDate = LocalDate.parse(parts[2]);
-
-        System.out.println("📅 Дата занятия для отмены: " + lessonDate + ", тип: " + lessonType);
-        System.out.println("📅 Сегодня в Москве: " + getMoscowDate());
+        LocalDate today = getMoscowDate();
+        log.debug("📅 Дата занятия для отмены: {}, тип: {}, сегодня в Москве: {}", lessonDate, lessonType, today);
 
         // Проверяем, что дата не прошедшая (по московскому времени)
-        if (lessonDate.isBefore(getMoscowDate())) {
-            System.out.println("❌ Попытка отмены прошедшего занятия: " + lessonDate);
-            answerCallbackQuery(callbackQuery.getId(), "❌ Нельзя отменить запись на прошедшее занятие!");
-            return;
+        if (lessonDate.isBefore(today)) {
+            log.info("❌ Попытка отмены прошедшего занятия: {}", lessonDate);
+            return Mono.just(callbackAnswer(callbackQuery.getId(), "❌ Нельзя отменить запись на прошедшее занятие!"));
         }
 
-        boolean success = supabaseService.cancelRegistration(userId, lessonDate, lessonType);
-
-        String answer = success ?
-                "❌ Запись на " + (lessonType.equals("morning") ? "утреннюю" : "вечернюю") + " практику отменена!" :
-                "❌ Вы не записаны на это занятие!";
-
-        answerCallbackQuery(callbackQuery.getId(), answer);
+        return supabaseService.cancelRegistrationAsync(userId, lessonDate, lessonType)
+                .doOnNext(success -> {
+                    if (success) {
+                        signupCounters.changed(lessonDate, lessonType);
+                    }
+                })
+                .map(success -> callbackAnswer(callbackQuery.getId(), success ?
+                        "❌ Запись на " + (lessonType.equals("morning") ? "утреннюю" : "вечернюю") + " практику отменена!" :
+                        "❌ Вы не записаны на это занятие!"));
     }
 
     private void answerCallbackQuery(String callbackQueryId, String text) {
         try {
-            org.telegram.telegrambots.meta.api.methods.AnswerCallbackQuery answer = new org.telegram.telegrambots.meta.api.methods.AnswerCallbackQuery();
-            answer.setCallbackQueryId(callbackQueryId);
-            answer.setText(text);
-            answer.setShowAlert(false);
-            execute(answer);
+            execute(callbackAnswer(callbackQueryId, text));
         } catch (TelegramApiException e) {
-            System.err.println("❌ Ошибка ответа на callback: " + e.getMessage());
+            log.error("❌ Ошибка ответа на callback: {}", e.getMessage());
         }
     }
 
+    private AnswerCallbackQuery callbackAnswer(String callbackQueryId, String text) {
+        AnswerCallbackQuery answer = new AnswerCallbackQuery();
+        answer.setCallbackQueryId(callbackQueryId);
+        answer.setText(text);
+        answer.setShowAlert(false);
+        return answer;
+    }
+
+    private SendMessage textMessage(Long chatId, String text) {
+        return new SendMessage(chatId.toString(), text);
+    }
+
     private void sendMsg(Long chatId, String text) {
-        SendMessage message = new SendMessage(chatId.toString(), text);
+        SendMessage message = textMessage(chatId, text);
         try {
             execute(message);
-            System.out.println("✅ Отправлено сообщение в чат " + chatId);
+            log.debug("✅ Отправлено сообщение в чат {}", chatId);
         } catch (TelegramApiException e) {
-            System.err.println("❌ Ошибка отправки сообщения: " + e.getMessage());
+            log.error("❌ Ошибка отправки сообщения: {}", e.getMessage());
         }
     }
 
@@ -1460,9 +1568,12 @@ public class YogaBot extends TelegramWebhookBot implements MessageSender {
         return button;
     }
 
+    /**
+     * Вызывается на каждое обновление, поэтому ничего не пишет: результат попадает
+     * в след обновления, а список админов - в лог при старте.
+     */
     private boolean isAdmin(Long userId) {
         if (adminId == null || adminId.isEmpty()) {
-            System.out.println("⚠️ Admin ID не настроен");
             return false;
         }
 
@@ -1470,12 +1581,9 @@ public class YogaBot extends TelegramWebhookBot implements MessageSender {
         String[] adminIds = adminId.split(",");
         for (String id : adminIds) {
             if (id.trim().equals(userId.toString())) {
-                System.out.println("✅ Пользователь " + userId + " является админом (ID: " + id.trim() + ")");
                 return true;
             }
         }
-
-        System.out.println("❌ Пользователь " + userId + " НЕ является админом. Настроенные админы: " + Arrays.toString(adminIds));
         return false;
     }
 
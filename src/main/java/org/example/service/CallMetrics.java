@@ -0,0 +1,89 @@
+package org.example.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+import io.micrometer.core.instrument.Timer;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Таймер и счетчик ошибок для группы однотипных вызовов: обращений к Supabase, Bot API, обработки update.
+ * Таймер {name}{теги вызова, outcome=success|error} меряет каждый вызов,
+ * счетчик {name}.errors{теги вызова, exception} - только упавшие.
+ * Теги вызова должны иметь ограниченный набор значений: имя метода, вид update и т.п.
+ */
+public final class CallMetrics {
+
+    @FunctionalInterface
+    public interface Call<T, E extends Exception> {
+        T call() throws E;
+    }
+
+    private final MeterRegistry meterRegistry;
+    private final String name;
+    private final String description;
+    private final boolean histogram;
+
+    /**
+     * histogram - публиковать бакеты гистограммы (для histogram_quantile в Prometheus);
+     * без нее остаются count, sum и max.
+     */
+    public CallMetrics(MeterRegistry meterRegistry, String name, String description, boolean histogram) {
+        this.meterRegistry = meterRegistry;
+        this.name = name;
+        this.description = description;
+        this.histogram = histogram;
+    }
+
+    public <T> Mono<T> mono(Tags tags, Mono<T> call) {
+        return Mono.defer(() -> {
+            long start = System.nanoTime();
+            return call
+                    .doOnSuccess(value -> record(tags, start, null))
+                    .doOnError(e -> record(tags, start, e));
+        });
+    }
+
+    public <T> Flux<T> flux(Tags tags, Flux<T> call) {
+        return Flux.defer(() -> {
+            long start = System.nanoTime();
+            return call
+                    .doOnComplete(() -> record(tags, start, null))
+                    .doOnError(e -> record(tags, start, e));
+        });
+    }
+
+    public <T, E extends Exception> T call(Tags tags, Call<T, E> call) throws E {
+        long start = System.nanoTime();
+        try {
+            T result = call.call();
+            record(tags, start, null);
+            return result;
+        } catch (Exception e) {
+            record(tags, start, e);
+            throw e;
+        }
+    }
+
+    private void record(Tags tags, long start, Throwable error) {
+        Timer.builder(name)
+                .description(description)
+                .tags(tags)
+                .tag("outcome", error == null ? "success" : "error")
+                .publishPercentileHistogram(histogram)
+                .register(meterRegistry)
+                .record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+
+        if (error != null) {
+            Counter.builder(name + ".errors")
+                    .description(description + ": ошибки")
+                    .tags(tags)
+                    .tag("exception", error.getClass().getSimpleName())
+                    .register(meterRegistry)
+                    .increment();
+        }
+    }
+}
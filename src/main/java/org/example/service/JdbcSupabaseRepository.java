@@ -0,0 +1,221 @@
+package org.example.service;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+
+import java.sql.Date;
+import java.time.DayOfWeek;
+import java.time.LocalDate;
+import java.time.OffsetDateTime;
+import java.util.*;
+import java.util.concurrent.Callable;
+
+/**
+ * Доступ к тем же таблицам Supabase напрямую через JDBC (пул Hikari из spring.datasource).
+ * Запросы подготовленные, пачки записей и отмен уходят через batchUpdate.
+ * JDBC блокирующий, поэтому каждый вызов выполняется на boundedElastic.
+ *
+ * Upsert сделан как UPDATE, а при 0 строк - INSERT ... ON CONFLICT DO NOTHING:
+ * так SQL одинаково работает в Postgres и во встроенной H2 (режим PostgreSQL) для бенчмарков.
+ */
+@Repository
+public class JdbcSupabaseRepository implements SupabaseRepository {
+
+    private static final Logger log = LoggerFactory.getLogger(JdbcSupabaseRepository.class);
+
+    private final JdbcTemplate jdbcTemplate;
+
+    public JdbcSupabaseRepository(JdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    // === РАСПИСАНИЕ ===
+
+    @Override
+    public Mono<Void> saveSchedule(DayOfWeek dayOfWeek, String lessonType, String description) {
+        return run(() -> {
+            upsert("UPDATE lessons SET description = ? WHERE day_of_week = ? AND lesson_type = ?",
+                    new Object[]{description, dayOfWeek.toString(), lessonType},
+                    "INSERT INTO lessons (day_of_week, lesson_type, description) VALUES (?, ?, ?) ON CONFLICT DO NOTHING",
+                    new Object[]{dayOfWeek.toString(), lessonType, description});
+            log.info("✅ Расписание сохранено: {} {} - {}", dayOfWeek, lessonType, description);
+            return null;
+        }).then();
+    }
+
+    @Override
+    public Mono<Map<DayOfWeek, Map<String, String>>> loadSchedule() {
+        return run(() -> {
+            Map<DayOfWeek, Map<String, String>> schedule = new HashMap<>();
+            jdbcTemplate.query("SELECT day_of_week, lesson_type, description FROM lessons", rs -> {
+                try {
+                    DayOfWeek dayOfWeek = DayOfWeek.valueOf(rs.getString("day_of_week"));
+                    schedule.computeIfAbsent(dayOfWeek, k -> new HashMap<>())
+                            .put(rs.getString("lesson_type"), rs.getString("description"));
+                } catch (IllegalArgumentException e) {
+                    log.warn("⚠️ Неизвестный день недели в БД: {}", rs.getString("day_of_week"));
+                }
+            });
+            return schedule;
+        });
+    }
+
+    @Override
+    public Mono<Integer> countLessons() {
+        return run(() -> jdbcTemplate.queryForObject("SELECT COUNT(*) FROM lessons", Integer.class));
+    }
+
+    // === ЗАПИСИ ===
+
+    @Override
+    public Mono<Set<RegistrationWriteBatcher.RegistrationKey>> insertRegistrations(
+            List<RegistrationWriteBatcher.Registration> registrations) {
+        return run(() -> {
+            List<Object[]> rows = new ArrayList<>(registrations.size());
+            for (RegistrationWriteBatcher.Registration r : registrations) {
+                rows.add(new Object[]{r.userId(), r.username(), r.displayName(),
+                        Date.valueOf(r.lessonDate()), r.lessonType()});
+            }
+
+            int[] counts = jdbcTemplate.batchUpdate(
+                    "INSERT INTO registrations (user_id, username, display_name, lesson_date, lesson_type) " +
+                            "VALUES (?, ?, ?, ?, ?) ON CONFLICT DO NOTHING", rows);
+
+            Set<RegistrationWriteBatcher.RegistrationKey> inserted = new HashSet<>();
+            for (int i = 0; i < counts.length; i++) {
+                if (counts[i] > 0) {
+                    RegistrationWriteBatcher.Registration r = registrations.get(i);
+                    inserted.add(new RegistrationWriteBatcher.RegistrationKey(r.userId(), r.lessonDate(), r.lessonType()));
+                }
+            }
+            return inserted;
+        });
+    }
+
+    @Override
+    public Mono<Set<Long>> deleteRegistrations(LocalDate lessonDate, String lessonType, List<Long> userIds) {
+        return run(() -> {
+            List<Object[]> rows = new ArrayList<>(userIds.size());
+            for (Long userId : userIds) {
+                rows.add(new Object[]{userId, Date.valueOf(lessonDate), lessonType});
+            }
+
+            int[] counts = jdbcTemplate.batchUpdate(
+                    "DELETE FROM registrations WHERE user_id = ? AND lesson_date = ? AND lesson_type = ?", rows);
+
+            Set<Long> deleted = new HashSet<>();
+            for (int i = 0; i < counts.length; i++) {
+                if (counts[i] > 0) {
+                    deleted.add(userIds.get(i));
+                }
+            }
+            return deleted;
+        });
+    }
+
+    @Override
+    public Mono<Map<String, LinkedHashMap<Long, String>>> loadRegistrationsForDate(LocalDate date) {
+        return run(() -> {
+            Map<String, LinkedHashMap<Long, String>> registrations = new HashMap<>();
+            for (String lessonType : LESSON_TYPES) {
+                registrations.put(lessonType, new LinkedHashMap<>());
+            }
+
+            jdbcTemplate.query("SELECT user_id, lesson_type, display_name FROM registrations " +
+                            "WHERE lesson_date = ? ORDER BY created_at",
+                    rs -> {
+                        LinkedHashMap<Long, String> roster = registrations.get(rs.getString("lesson_type"));
+                        if (roster != null) {
+                            roster.put(rs.getLong("user_id"), rs.getString("display_name"));
+                        }
+                    },
+                    Date.valueOf(date));
+
+            log.info("✅ Загружены записи на {}: утро={}, вечер={}",
+                    date, registrations.get("morning").size(), registrations.get("evening").size());
+            return registrations;
+        });
+    }
+
+    // === СООБЩЕНИЯ В КАНАЛЕ ===
+
+    @Override
+    public Mono<Void> saveMessageId(Integer messageId, String lessonType, LocalDate lessonDate, String messageText) {
+        return run(() -> {
+            upsert("UPDATE channel_messages SET lesson_type = ?, lesson_date = ?, message_text = ? WHERE message_id = ?",
+                    new Object[]{lessonType, Date.valueOf(lessonDate), messageText, messageId},
+                    "INSERT INTO channel_messages (message_id, lesson_type, lesson_date, message_text) " +
+                            "VALUES (?, ?, ?, ?) ON CONFLICT DO NOTHING",
+                    new Object[]{messageId, lessonType, Date.valueOf(lessonDate), messageText});
+            log.info("💾 Сохранен ID сообщения: {} для {} занятия на {}", messageId, lessonType, lessonDate);
+            return null;
+        }).then();
+    }
+
+    @Override
+    public Flux<Map<String, Object>> getMessagesForDeletion(LocalDate date, String lessonType) {
+        return run(() -> jdbcTemplate.query(
+                "SELECT message_id, message_text FROM channel_messages WHERE lesson_date = ? AND lesson_type = ?",
+                (rs, rowNum) -> {
+                    Map<String, Object> message = new HashMap<>();
+                    message.put("message_id", rs.getInt("message_id"));
+                    message.put("message_text", rs.getString("message_text"));
+                    return message;
+                },
+                Date.valueOf(date), lessonType))
+                .flatMapIterable(messages -> messages);
+    }
+
+    @Override
+    public Mono<Void> deleteMessageRecord(Integer messageId, LocalDate date, String lessonType) {
+        return run(() -> {
+            jdbcTemplate.update("DELETE FROM channel_messages WHERE message_id = ? AND lesson_date = ? AND lesson_type = ?",
+                    messageId, Date.valueOf(date), lessonType);
+            log.info("✅ Запись сообщения {} удалена из БД", messageId);
+            return null;
+        }).then();
+    }
+
+    // === НАСТРОЙКИ ===
+
+    @Override
+    public Mono<Boolean> fetchNotificationsEnabled() {
+        return run(() -> {
+            List<Boolean> values = jdbcTemplate.queryForList(
+                    "SELECT notifications_enabled FROM bot_settings WHERE id = 1", Boolean.class);
+            return values.isEmpty() ? null : values.get(0);
+        });
+    }
+
+    @Override
+    public Mono<Void> saveNotificationsState(boolean enabled) {
+        return run(() -> {
+            OffsetDateTime now = OffsetDateTime.now();
+            upsert("UPDATE bot_settings SET notifications_enabled = ?, updated_at = ? WHERE id = 1",
+                    new Object[]{enabled, now},
+                    "INSERT INTO bot_settings (id, notifications_enabled, updated_at) VALUES (1, ?, ?) ON CONFLICT DO NOTHING",
+                    new Object[]{enabled, now});
+            return null;
+        }).then();
+    }
+
+    // === ВСПОМОГАТЕЛЬНОЕ ===
+
+    private void upsert(String updateSql, Object[] updateArgs, String insertSql, Object[] insertArgs) {
+        if (jdbcTemplate.update(updateSql, updateArgs) == 0) {
+            jdbcTemplate.update(insertSql, insertArgs);
+        }
+    }
+
+    /**
+     * Выполняет блокирующий JDBC-вызов вне потоков Reactor; null превращается в пустой Mono.
+     */
+    private static <T> Mono<T> run(Callable<T> call) {
+        return Mono.fromCallable(call).subscribeOn(Schedulers.boundedElastic());
+    }
+}
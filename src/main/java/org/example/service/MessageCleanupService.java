@@ -5,11 +5,12 @@ import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
 
 import java.time.LocalDate;
 import java.time.LocalDateTime;
-import java.util.List;
-import java.util.Map;
 
 @Service
 public class MessageCleanupService {
@@ -97,38 +98,49 @@ public class MessageCleanupService {
     }
 
     public void deleteMessagesForDateAndType(LocalDate date, String lessonType) {
-        try {
-            log.info("🔍 Поиск сообщений для удаления: date={}, type={}", date, lessonType);
-
-            List<Map<String, Object>> messages = supabaseService.getMessagesForDeletion(date, lessonType);
-
-            log.info("📋 Найдено сообщений для удаления: {} для {} {}", messages.size(), date, lessonType);
-
-            if (messages.isEmpty()) {
-                log.info("ℹ️ Не найдено сообщений для удаления: {} {}", date, lessonType);
-                return;
-            }
-
-            int deletedCount = 0;
-            for (Map<String, Object> message : messages) {
-                Integer messageId = (Integer) message.get("message_id");
-                String messageText = (String) message.get("message_text");
-
-                log.info("🔍 Удаление сообщения {}: {}", messageId,
-                        messageText != null ? messageText.substring(0, Math.min(100, messageText.length())) : "null");
-
-                if (deleteMessageFromChannel(messageId)) {
-                    deletedCount++;
-                    // Удаляем запись из БД после успешного удаления из канала
-                    supabaseService.deleteMessageRecord(messageId, date, lessonType);
-                }
-            }
-
-            log.info("✅ Удалено {} сообщений из {} для {} {}", deletedCount, messages.size(), date, lessonType);
+        deleteMessagesForDateAndTypeAsync(date, lessonType).block();
+    }
 
-        } catch (Exception e) {
-            log.error("❌ Ошибка удаления сообщений для {} {}", date, lessonType, e);
-        }
+    /**
+     * Удаляет сообщения из канала и их записи из БД одной цепочкой.
+     * Вызов Telegram блокирующий, поэтому выполняется на boundedElastic.
+     */
+    public Mono<Long> deleteMessagesForDateAndTypeAsync(LocalDate date, String lessonType) {
+        log.info("🔍 Поиск сообщений для удаления: date={}, type={}", date, lessonType);
+
+        return supabaseService.getMessagesForDeletionAsync(date, lessonType)
+                .collectList()
+                .flatMap(messages -> {
+                    log.info("📋 Найдено сообщений для удаления: {} для {} {}", messages.size(), date, lessonType);
+
+                    if (messages.isEmpty()) {
+                        log.info("ℹ️ Не найдено сообщений для удаления: {} {}", date, lessonType);
+                        return Mono.just(0L);
+                    }
+
+                    return Flux.fromIterable(messages)
+                            .concatMap(message -> {
+                                Integer messageId = (Integer) message.get("message_id");
+                                String messageText = (String) message.get("message_text");
+
+                                log.info("🔍 Удаление сообщения {}: {}", messageId,
+                                        messageText != null ? messageText.substring(0, Math.min(100, messageText.length())) : "null");
+
+                                return Mono.fromCallable(() -> deleteMessageFromChannel(messageId))
+                                        .subscribeOn(Schedulers.boundedElastic())
+                                        .filter(Boolean::booleanValue)
+                                        // Удаляем запись из БД после успешного удаления из канала
+                                        .flatMap(deleted -> supabaseService.deleteMessageRecordAsync(messageId, date, lessonType)
+                                                .thenReturn(messageId));
+                            })
+                            .count()
+                            .doOnNext(deletedCount -> log.info("✅ Удалено {} сообщений из {} для {} {}",
+                                    deletedCount, messages.size(), date, lessonType));
+                })
+                .onErrorResume(e -> {
+                    log.error("❌ Ошибка удаления сообщений для {} {}", date, lessonType, e);
+                    return Mono.just(0L);
+                });
     }
 
     private boolean deleteMessageFromChannel(Integer messageId) {
@@ -0,0 +1,195 @@
+package org.example.service;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+
+import java.io.IOException;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Типизированные строки таблиц Supabase и их разбор потоковым парсером Jackson.
+ * Ответ PostgREST читается токен за токеном прямо из буфера, без промежуточной строки
+ * и дерева JsonNode; незнакомые поля пропускаются.
+ * Тела запросов - записи с именами колонок, их пишут заранее созданные ObjectWriter.
+ */
+public final class PostgrestRows {
+
+    private PostgrestRows() {
+    }
+
+    @FunctionalInterface
+    public interface RowReader<T> {
+        /**
+         * Читает одну строку; парсер стоит на START_OBJECT, после вызова - на END_OBJECT.
+         */
+        T read(JsonParser parser) throws IOException;
+    }
+
+    // === СТРОКИ ОТВЕТОВ ===
+
+    public record LessonRow(String dayOfWeek, String lessonType, String description) {
+    }
+
+    public record RosterRow(long userId, String lessonType, String displayName) {
+    }
+
+    public record MessageRow(int messageId, String messageText) {
+    }
+
+    public static final RowReader<LessonRow> LESSON = parser -> {
+        String dayOfWeek = null;
+        String lessonType = null;
+        String description = null;
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            String field = parser.currentName();
+            parser.nextToken();
+            switch (field) {
+                case "day_of_week" -> dayOfWeek = parser.getValueAsString();
+                case "lesson_type" -> lessonType = parser.getValueAsString();
+                case "description" -> description = parser.getValueAsString();
+                default -> parser.skipChildren();
+            }
+        }
+        return new LessonRow(dayOfWeek, lessonType, description);
+    };
+
+    public static final RowReader<RosterRow> ROSTER = parser -> {
+        long userId = 0;
+        String lessonType = null;
+        String displayName = null;
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            String field = parser.currentName();
+            parser.nextToken();
+            switch (field) {
+                case "user_id" -> userId = parser.getValueAsLong();
+                case "lesson_type" -> lessonType = parser.getValueAsString();
+                case "display_name" -> displayName = parser.getValueAsString();
+                default -> parser.skipChildren();
+            }
+        }
+        return new RosterRow(userId, lessonType, displayName);
+    };
+
+    public static final RowReader<MessageRow> MESSAGE = parser -> {
+        int messageId = 0;
+        String messageText = null;
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            String field = parser.currentName();
+            parser.nextToken();
+            switch (field) {
+                case "message_id" -> messageId = parser.getValueAsInt();
+                case "message_text" -> messageText = parser.getValueAsString();
+                default -> parser.skipChildren();
+            }
+        }
+        return new MessageRow(messageId, messageText);
+    };
+
+    public static final RowReader<RegistrationWriteBatcher.RegistrationKey> REGISTRATION_KEY = parser -> {
+        long userId = 0;
+        LocalDate lessonDate = null;
+        String lessonType = null;
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            String field = parser.currentName();
+            parser.nextToken();
+            switch (field) {
+                case "user_id" -> userId = parser.getValueAsLong();
+                case "lesson_date" -> lessonDate = LocalDate.parse(parser.getValueAsString());
+                case "lesson_type" -> lessonType = parser.getValueAsString();
+                default -> parser.skipChildren();
+            }
+        }
+        return new RegistrationWriteBatcher.RegistrationKey(userId, lessonDate, lessonType);
+    };
+
+    public static final RowReader<Long> USER_ID = parser -> {
+        long userId = 0;
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            String field = parser.currentName();
+            parser.nextToken();
+            if (field.equals("user_id")) {
+                userId = parser.getValueAsLong();
+            } else {
+                parser.skipChildren();
+            }
+        }
+        return userId;
+    };
+
+    public static final RowReader<Boolean> NOTIFICATIONS_ENABLED = parser -> {
+        boolean enabled = false;
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            String field = parser.currentName();
+            parser.nextToken();
+            if (field.equals("notifications_enabled")) {
+                enabled = parser.getValueAsBoolean();
+            } else {
+                parser.skipChildren();
+            }
+        }
+        return enabled;
+    };
+
+    /**
+     * Строка без разбора полей - когда важно только их число.
+     */
+    public static final RowReader<Boolean> ANY = parser -> {
+        parser.skipChildren();
+        return Boolean.TRUE;
+    };
+
+    /**
+     * Читает массив строк. Пустой ответ - пустой список; ответ не-массив (например, объект ошибки) - исключение.
+     */
+    public static <T> List<T> read(JsonParser parser, RowReader<T> reader) throws IOException {
+        JsonToken token = parser.nextToken();
+        if (token == null) {
+            return List.of();
+        }
+        if (token != JsonToken.START_ARRAY) {
+            throw new IllegalStateException("Некорректный ответ Supabase: ожидался массив, получено " + token);
+        }
+
+        List<T> rows = new ArrayList<>();
+        while ((token = parser.nextToken()) == JsonToken.START_OBJECT) {
+            rows.add(reader.read(parser));
+        }
+        if (token != JsonToken.END_ARRAY) {
+            throw new IllegalStateException("Некорректный ответ Supabase: ожидался объект, получено " + token);
+        }
+        return rows;
+    }
+
+    // === ТЕЛА ЗАПРОСОВ ===
+
+    public record LessonBody(@JsonProperty("day_of_week") String dayOfWeek,
+                             @JsonProperty("lesson_type") String lessonType,
+                             @JsonProperty("description") String description) {
+    }
+
+    public record RegistrationBody(@JsonProperty("user_id") Long userId,
+                                   @JsonProperty("username") String username,
+                                   @JsonProperty("display_name") String displayName,
+                                   @JsonProperty("lesson_date") String lessonDate,
+                                   @JsonProperty("lesson_type") String lessonType) {
+
+        public static RegistrationBody of(RegistrationWriteBatcher.Registration r) {
+            return new RegistrationBody(r.userId(), r.username(), r.displayName(),
+                    r.lessonDate().toString(), r.lessonType());
+        }
+    }
+
+    public record MessageBody(@JsonProperty("message_id") Integer messageId,
+                              @JsonProperty("lesson_type") String lessonType,
+                              @JsonProperty("lesson_date") String lessonDate,
+                              @JsonProperty("message_text") String messageText) {
+    }
+
+    public record SettingsBody(@JsonProperty("id") int id,
+                               @JsonProperty("notifications_enabled") boolean notificationsEnabled,
+                               @JsonProperty("updated_at") String updatedAt) {
+    }
+}
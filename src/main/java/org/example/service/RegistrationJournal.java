@@ -0,0 +1,398 @@
+package org.example.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDate;
+import java.util.*;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.CRC32;
+
+/**
+ * Локальный журнал записей и отмен на случай, когда Supabase тормозит или недоступен.
+ * Операция дописывается в конец файла и подтверждается пользователю после fsync;
+ * одновременные добавления делят один fsync (групповой сброс на диск).
+ *
+ * Фоновый поток по порядку отправляет операции в Supabase через тот же Sink, что и пачки.
+ * Повтор безопасен: вставка игнорирует дубликаты, удаление отсутствующей записи ничего не делает.
+ * Отправленная операция помечается в журнале записью ACK; после полной отправки файл обнуляется.
+ *
+ * Формат записи: [длина][CRC32][тип, seq, ...]. Оборванный хвост (сбой посреди записи)
+ * при запуске отбрасывается, все до него - восстанавливается.
+ */
+public class RegistrationJournal implements AutoCloseable {
+
+    private static final Logger log = LoggerFactory.getLogger(RegistrationJournal.class);
+
+    private static final byte REGISTER = 1;
+    private static final byte CANCEL = 2;
+    private static final byte ACK = 3;
+
+    private static final int HEADER_BYTES = Integer.BYTES * 2;
+    private static final int MAX_RECORD_BYTES = 64 * 1024;
+
+    private record Entry(long seq, boolean cancel, RegistrationWriteBatcher.Registration registration,
+                         long appendedAt) {
+
+        RegistrationWriteBatcher.RegistrationKey key() {
+            return new RegistrationWriteBatcher.RegistrationKey(
+                    registration.userId(), registration.lessonDate(), registration.lessonType());
+        }
+    }
+
+    private final Path file;
+    private final FileChannel channel;
+    private final RegistrationWriteBatcher.Sink sink;
+    private final long replayDelayMillis;
+    private final ScheduledExecutorService replayer;
+
+    // Охраняются this: неотправленные операции в порядке seq и последняя операция по каждому ключу
+    private final LinkedHashMap<Long, Entry> pending = new LinkedHashMap<>();
+    private final Map<RegistrationWriteBatcher.RegistrationKey, Entry> lastByKey = new HashMap<>();
+    private long nextSeq = 1;
+    private long writtenPosition;
+
+    // Охраняется syncLock; порядок захвата: syncLock, затем this
+    private final Object syncLock = new Object();
+    private long syncedPosition;
+
+    private final Counter appendedCounter;
+    private final Counter replayedCounter;
+    private final Counter replayFailureCounter;
+    private final Timer fsyncTimer;
+
+    public RegistrationJournal(Path file, RegistrationWriteBatcher.Sink sink, long replayDelayMillis,
+                               long replayIntervalMillis, MeterRegistry meterRegistry) throws IOException {
+        this.file = file;
+        this.sink = sink;
+        this.replayDelayMillis = replayDelayMillis;
+
+        Files.createDirectories(file.toAbsolutePath().getParent());
+        this.channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        recover();
+
+        this.appendedCounter = Counter.builder("supabase.journal.appended")
+                .description("Операции, записанные в локальный журнал")
+                .register(meterRegistry);
+        this.replayedCounter = Counter.builder("supabase.journal.replayed")
+                .description("Операции журнала, отправленные в Supabase")
+                .register(meterRegistry);
+        this.replayFailureCounter = Counter.builder("supabase.journal.replay.failures")
+                .description("Неудачные попытки отправить операцию журнала")
+                .register(meterRegistry);
+        this.fsyncTimer = Timer.builder("supabase.journal.fsync")
+                .description("Время сброса журнала на диск")
+                .register(meterRegistry);
+        Gauge.builder("supabase.journal.pending", this, RegistrationJournal::pendingCount)
+                .description("Операции журнала, еще не отправленные в Supabase")
+                .register(meterRegistry);
+        Gauge.builder("supabase.journal.bytes", this, RegistrationJournal::sizeBytes)
+                .description("Размер файла журнала")
+                .baseUnit("bytes")
+                .register(meterRegistry);
+        Gauge.builder("supabase.journal.replay.lag", this, RegistrationJournal::replayLagSeconds)
+                .description("Возраст самой старой неотправленной операции")
+                .baseUnit("seconds")
+                .register(meterRegistry);
+
+        this.replayer = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "registration-journal");
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.replayer.scheduleWithFixedDelay(this::replay, replayIntervalMillis, replayIntervalMillis, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Есть ли по ключу неотправленные операции. Пока есть, новые операции по нему тоже идут
+     * через журнал, иначе они могли бы обогнать более ранние.
+     */
+    public synchronized boolean hasPending(RegistrationWriteBatcher.RegistrationKey key) {
+        return lastByKey.containsKey(key);
+    }
+
+    /**
+     * Журналирует запись. false - если последняя операция по ключу уже запись (повторное нажатие).
+     */
+    public boolean register(RegistrationWriteBatcher.Registration registration) throws IOException {
+        return append(registration, false);
+    }
+
+    /**
+     * Журналирует отмену. false - если последняя операция по ключу уже отмена.
+     */
+    public boolean cancel(Long userId, LocalDate lessonDate, String lessonType) throws IOException {
+        return append(new RegistrationWriteBatcher.Registration(userId, null, null, lessonDate, lessonType), true);
+    }
+
+    /**
+     * Накладывает неотправленные операции на списки, загруженные из Supabase.
+     */
+    public synchronized void overlay(LocalDate date, Map<String, LinkedHashMap<Long, String>> rosters) {
+        for (Entry entry : pending.values()) {
+            RegistrationWriteBatcher.Registration r = entry.registration();
+            if (!r.lessonDate().equals(date)) {
+                continue;
+            }
+            LinkedHashMap<Long, String> roster = rosters.computeIfAbsent(r.lessonType(), k -> new LinkedHashMap<>());
+            if (entry.cancel()) {
+                roster.remove(r.userId());
+            } else {
+                roster.putIfAbsent(r.userId(), r.displayName());
+            }
+        }
+    }
+
+    private boolean append(RegistrationWriteBatcher.Registration registration, boolean cancel) throws IOException {
+        long position;
+        synchronized (this) {
+            Entry last = lastByKey.get(new RegistrationWriteBatcher.RegistrationKey(
+                    registration.userId(), registration.lessonDate(), registration.lessonType()));
+            if (last != null && last.cancel() == cancel) {
+                return false;
+            }
+
+            Entry entry = new Entry(nextSeq, cancel, registration, System.currentTimeMillis());
+            write(encode(entry));
+            nextSeq++;
+            pending.put(entry.seq(), entry);
+            lastByKey.put(entry.key(), entry);
+            position = writtenPosition;
+        }
+        sync(position);
+        appendedCounter.increment();
+        return true;
+    }
+
+    /**
+     * Сбрасывает журнал на диск хотя бы до position. Кто ждал, пока шел чужой fsync,
+     * чаще всего уже покрыт им и возвращается без своего.
+     */
+    private void sync(long position) throws IOException {
+        synchronized (syncLock) {
+            if (syncedPosition >= position) {
+                return;
+            }
+            long target;
+            synchronized (this) {
+                target = writtenPosition;
+            }
+            long start = System.nanoTime();
+            channel.force(false);
+            fsyncTimer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+            syncedPosition = target;
+        }
+    }
+
+    // === ОТПРАВКА В SUPABASE ===
+
+    /**
+     * Отправляет операции по порядку и останавливается на первой ошибке,
+     * чтобы запись и отмена одного пользователя не поменялись местами.
+     */
+    void replay() {
+        try {
+            while (true) {
+                Entry entry;
+                synchronized (this) {
+                    Iterator<Entry> it = pending.values().iterator();
+                    entry = it.hasNext() ? it.next() : null;
+                }
+                if (entry == null) {
+                    compact();
+                    return;
+                }
+                // Пачка, по таймауту которой операция попала в журнал, к этому времени уже завершена
+                if (System.currentTimeMillis() - entry.appendedAt() < replayDelayMillis) {
+                    return;
+                }
+
+                RegistrationWriteBatcher.Registration r = entry.registration();
+                if (entry.cancel()) {
+                    sink.delete(r.lessonDate(), r.lessonType(), List.of(r.userId()));
+                } else {
+                    sink.insert(List.of(r));
+                }
+                acknowledge(entry);
+                replayedCounter.increment();
+                log.info("✅ Операция журнала #{} отправлена в Supabase: {} {} {} {}", entry.seq(),
+                        entry.cancel() ? "отмена" : "запись", r.userId(), r.lessonDate(), r.lessonType());
+            }
+        } catch (Exception e) {
+            replayFailureCounter.increment();
+            log.warn("⚠️ Журнал записей: Supabase пока недоступен ({}), повторим позже", e.getMessage());
+        }
+    }
+
+    private synchronized void acknowledge(Entry entry) throws IOException {
+        // ACK без fsync: потерянная отметка приведет лишь к безопасному повтору
+        write(encodeAck(entry.seq()));
+        pending.remove(entry.seq());
+        lastByKey.remove(entry.key(), entry);
+    }
+
+    private void compact() throws IOException {
+        synchronized (syncLock) {
+            synchronized (this) {
+                if (!pending.isEmpty() || writtenPosition == 0) {
+                    return;
+                }
+                channel.truncate(0);
+                channel.force(false);
+                writtenPosition = 0;
+                syncedPosition = 0;
+            }
+        }
+    }
+
+    // === ФАЙЛ ===
+
+    private void write(byte[] record) throws IOException {
+        ByteBuffer buffer = ByteBuffer.wrap(record);
+        while (buffer.hasRemaining()) {
+            writtenPosition += channel.write(buffer, writtenPosition);
+        }
+    }
+
+    private static byte[] encode(Entry entry) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(128);
+        DataOutputStream out = new DataOutputStream(bytes);
+        RegistrationWriteBatcher.Registration r = entry.registration();
+        out.writeByte(entry.cancel() ? CANCEL : REGISTER);
+        out.writeLong(entry.seq());
+        out.writeLong(entry.appendedAt());
+        out.writeLong(r.userId());
+        out.writeLong(r.lessonDate().toEpochDay());
+        out.writeUTF(r.lessonType());
+        writeNullable(out, r.username());
+        writeNullable(out, r.displayName());
+        return frame(bytes.toByteArray());
+    }
+
+    private static byte[] encodeAck(long seq) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(16);
+        DataOutputStream out = new DataOutputStream(bytes);
+        out.writeByte(ACK);
+        out.writeLong(seq);
+        return frame(bytes.toByteArray());
+    }
+
+    private static byte[] frame(byte[] payload) {
+        CRC32 crc = new CRC32();
+        crc.update(payload);
+        return ByteBuffer.allocate(HEADER_BYTES + payload.length)
+                .putInt(payload.length)
+                .putInt((int) crc.getValue())
+                .put(payload)
+                .array();
+    }
+
+    private static void writeNullable(DataOutputStream out, String value) throws IOException {
+        out.writeBoolean(value != null);
+        if (value != null) {
+            out.writeUTF(value);
+        }
+    }
+
+    private static String readNullable(DataInputStream in) throws IOException {
+        return in.readBoolean() ? in.readUTF() : null;
+    }
+
+    /**
+     * Читает журнал после перезапуска: неподтвержденные операции снова становятся в очередь.
+     */
+    private void recover() throws IOException {
+        long size = channel.size();
+        long position = 0;
+        long maxSeq = 0;
+
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file)))) {
+            while (position + HEADER_BYTES <= size) {
+                int length = in.readInt();
+                int crc = in.readInt();
+                if (length <= 0 || length > MAX_RECORD_BYTES || position + HEADER_BYTES + length > size) {
+                    break;
+                }
+                byte[] payload = in.readNBytes(length);
+                CRC32 actual = new CRC32();
+                actual.update(payload);
+                if ((int) actual.getValue() != crc) {
+                    break;
+                }
+
+                DataInputStream record = new DataInputStream(new ByteArrayInputStream(payload));
+                byte type = record.readByte();
+                long seq = record.readLong();
+                if (type == ACK) {
+                    Entry acked = pending.remove(seq);
+                    if (acked != null) {
+                        lastByKey.remove(acked.key(), acked);
+                    }
+                } else {
+                    long appendedAt = record.readLong();
+                    long userId = record.readLong();
+                    LocalDate lessonDate = LocalDate.ofEpochDay(record.readLong());
+                    String lessonType = record.readUTF();
+                    String username = readNullable(record);
+                    String displayName = readNullable(record);
+                    Entry entry = new Entry(seq, type == CANCEL, new RegistrationWriteBatcher.Registration(
+                            userId, username, displayName, lessonDate, lessonType), appendedAt);
+                    pending.put(seq, entry);
+                    lastByKey.put(entry.key(), entry);
+                }
+                maxSeq = Math.max(maxSeq, seq);
+                position += HEADER_BYTES + length;
+            }
+        }
+
+        if (position < size) {
+            log.warn("⚠️ Журнал записей: отброшен оборванный хвост {} байт", size - position);
+            channel.truncate(position);
+            channel.force(false);
+        }
+        writtenPosition = position;
+        syncedPosition = position;
+        nextSeq = maxSeq + 1;
+
+        if (!pending.isEmpty()) {
+            log.info("🔄 Журнал записей: восстановлено {} неотправленных операций", pending.size());
+        }
+    }
+
+    // === МЕТРИКИ ===
+
+    private synchronized int pendingCount() {
+        return pending.size();
+    }
+
+    private synchronized long sizeBytes() {
+        return writtenPosition;
+    }
+
+    private synchronized double replayLagSeconds() {
+        Iterator<Entry> it = pending.values().iterator();
+        return it.hasNext() ? (System.currentTimeMillis() - it.next().appendedAt()) / 1000.0 : 0;
+    }
+
+    @Override
+    public void close() {
+        replayer.shutdownNow();
+        try {
+            channel.close();
+        } catch (IOException e) {
+            log.warn("⚠️ Ошибка закрытия журнала записей: {}", e.getMessage());
+        }
+    }
+}
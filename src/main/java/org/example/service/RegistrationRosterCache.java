@@ -0,0 +1,142 @@
+package org.example.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Кэш списков записавшихся по ключу (дата, тип занятия).
+ * Собственные записи и отмены бота обновляют его сразу (write-through),
+ * изменения, сделанные в обход бота, подхватываются по истечении TTL.
+ * Размер ограничен: прошедшие даты вытесняются первыми, затем самые старые загрузки.
+ */
+public class RegistrationRosterCache {
+
+    private static final ZoneId MOSCOW = ZoneId.of("Europe/Moscow");
+
+    public record RosterKey(LocalDate lessonDate, String lessonType) {
+    }
+
+    /**
+     * Неизменяемый список записавшихся в порядке записи: user_id -> отображаемое имя.
+     */
+    private record Roster(LinkedHashMap<Long, String> members, long loadedAt) {
+
+        Roster with(Long userId, String displayName) {
+            LinkedHashMap<Long, String> copy = new LinkedHashMap<>(members);
+            copy.putIfAbsent(userId, displayName);
+            return new Roster(copy, loadedAt);
+        }
+
+        Roster without(Long userId) {
+            LinkedHashMap<Long, String> copy = new LinkedHashMap<>(members);
+            copy.remove(userId);
+            return new Roster(copy, loadedAt);
+        }
+    }
+
+    private final Map<RosterKey, Roster> rosters = new ConcurrentHashMap<>();
+    private final long ttlNanos;
+    private final int maxEntries;
+
+    // Счетчик изменений: загрузка, начатая до записи, не должна перетереть write-through
+    private final AtomicLong writeStamp = new AtomicLong();
+
+    private final Counter hitCounter;
+    private final Counter missCounter;
+
+    public RegistrationRosterCache(long ttlMillis, int maxEntries, MeterRegistry meterRegistry) {
+        this.ttlNanos = TimeUnit.MILLISECONDS.toNanos(ttlMillis);
+        this.maxEntries = Math.max(2, maxEntries);
+
+        this.hitCounter = Counter.builder("supabase.roster.cache")
+                .description("Обращения к кэшу списков записавшихся")
+                .tag("result", "hit")
+                .register(meterRegistry);
+        this.missCounter = Counter.builder("supabase.roster.cache")
+                .description("Обращения к кэшу списков записавшихся")
+                .tag("result", "miss")
+                .register(meterRegistry);
+        Gauge.builder("supabase.roster.cache.size", rosters, Map::size)
+                .description("Количество закэшированных списков")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Списки на дату по типам занятий или null, если какого-то типа нет в кэше или он устарел.
+     */
+    public Map<String, List<String>> getIfFresh(LocalDate date, Collection<String> lessonTypes) {
+        long now = System.nanoTime();
+        Map<String, List<String>> result = new HashMap<>();
+        for (String lessonType : lessonTypes) {
+            Roster roster = rosters.get(new RosterKey(date, lessonType));
+            if (roster == null || now - roster.loadedAt() > ttlNanos) {
+                missCounter.increment();
+                return null;
+            }
+            result.put(lessonType, new ArrayList<>(roster.members().values()));
+        }
+        hitCounter.increment();
+        return result;
+    }
+
+    /**
+     * Отметка изменений; берется до начала загрузки и передается в store.
+     */
+    public long writeStamp() {
+        return writeStamp.get();
+    }
+
+    /**
+     * Сохраняет загруженные списки (тип -> [user_id -> имя]), если с момента stamp
+     * не было записей и отмен, и возвращает их в виде списков имен.
+     */
+    public Map<String, List<String>> store(LocalDate date, Collection<String> lessonTypes,
+                                           Map<String, LinkedHashMap<Long, String>> loaded, long stamp) {
+        Map<String, List<String>> result = new HashMap<>();
+        long loadedAt = System.nanoTime();
+        for (String lessonType : lessonTypes) {
+            LinkedHashMap<Long, String> members = loaded.getOrDefault(lessonType, new LinkedHashMap<>());
+            result.put(lessonType, new ArrayList<>(members.values()));
+            if (writeStamp.get() == stamp) {
+                rosters.put(new RosterKey(date, lessonType), new Roster(members, loadedAt));
+            }
+        }
+        trim(LocalDate.now(MOSCOW));
+        return result;
+    }
+
+    public void registered(LocalDate lessonDate, String lessonType, Long userId, String displayName) {
+        writeStamp.incrementAndGet();
+        rosters.computeIfPresent(new RosterKey(lessonDate, lessonType), (k, r) -> r.with(userId, displayName));
+    }
+
+    public void cancelled(LocalDate lessonDate, String lessonType, Long userId) {
+        writeStamp.incrementAndGet();
+        rosters.computeIfPresent(new RosterKey(lessonDate, lessonType), (k, r) -> r.without(userId));
+    }
+
+    /**
+     * Убирает прошедшие даты, а при переполнении - самые давно загруженные списки.
+     */
+    public void trim(LocalDate today) {
+        rosters.keySet().removeIf(key -> key.lessonDate().isBefore(today));
+
+        int excess = rosters.size() - maxEntries;
+        if (excess > 0) {
+            rosters.entrySet().stream()
+                    .sorted(Comparator.comparingLong(e -> e.getValue().loadedAt()))
+                    .limit(excess)
+                    .map(Map.Entry::getKey)
+                    .toList()
+                    .forEach(rosters::remove);
+        }
+    }
+}
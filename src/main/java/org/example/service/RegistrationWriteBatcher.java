@@ -0,0 +1,255 @@
+package org.example.service;
+
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.time.LocalDate;
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Собирает записи и отмены за короткое окно (или до N штук)
+ * и отправляет их в Supabase одним запросом на вставку и одним на удаление.
+ * Каждый вызывающий получает свой результат через CompletableFuture: true/false - операция
+ * выполнена или не понадобилась (уже записан / нечего отменять), исключение - Supabase ее не принял.
+ * Если пачка не прошла, она делится пополам и отправляется заново, чтобы одна плохая строка
+ * не провалила соседние; исключение получают только операции, не прошедшие и поодиночке.
+ *
+ * Порядок операций одного пользователя обеспечивает диспетчер обновлений:
+ * пользователь ждет результат в своей полосе, поэтому в пачке у него не больше одной операции.
+ */
+public class RegistrationWriteBatcher implements AutoCloseable {
+
+    private static final Logger log = LoggerFactory.getLogger(RegistrationWriteBatcher.class);
+
+    public record Registration(Long userId, String username, String displayName,
+                               LocalDate lessonDate, String lessonType) {
+    }
+
+    public record RegistrationKey(Long userId, LocalDate lessonDate, String lessonType) {
+    }
+
+    /**
+     * Куда пишутся пачки. Возвращает ключи реально вставленных / id реально удаленных записей.
+     */
+    public interface Sink {
+        Set<RegistrationKey> insert(List<Registration> registrations);
+
+        Set<Long> delete(LocalDate lessonDate, String lessonType, List<Long> userIds);
+    }
+
+    private record LessonKey(LocalDate lessonDate, String lessonType) {
+    }
+
+    private record Pending(Registration registration, boolean cancel,
+                           CompletableFuture<Boolean> future, long enqueuedAt) {
+    }
+
+    private final Sink sink;
+    private final long windowNanos;
+    private final int maxBatchSize;
+    private final LinkedBlockingQueue<Pending> queue = new LinkedBlockingQueue<>();
+    private final Thread flusher;
+    private volatile boolean running = true;
+
+    private final DistributionSummary insertBatchSize;
+    private final DistributionSummary deleteBatchSize;
+    private final Timer insertFlushTimer;
+    private final Timer deleteFlushTimer;
+    private final Timer latencyTimer;
+
+    public RegistrationWriteBatcher(Sink sink, long windowMillis, int maxBatchSize, MeterRegistry meterRegistry) {
+        this.sink = sink;
+        this.windowNanos = TimeUnit.MILLISECONDS.toNanos(windowMillis);
+        this.maxBatchSize = maxBatchSize;
+
+        this.insertBatchSize = batchSize(meterRegistry, "insert");
+        this.deleteBatchSize = batchSize(meterRegistry, "delete");
+        this.insertFlushTimer = flushTimer(meterRegistry, "insert");
+        this.deleteFlushTimer = flushTimer(meterRegistry, "delete");
+        this.latencyTimer = Timer.builder("supabase.batch.latency")
+                .description("Время от постановки операции в пачку до получения результата")
+                .register(meterRegistry);
+
+        this.flusher = new Thread(this::run, "registration-batcher");
+        this.flusher.setDaemon(true);
+        this.flusher.start();
+    }
+
+    private static DistributionSummary batchSize(MeterRegistry meterRegistry, String op) {
+        return DistributionSummary.builder("supabase.batch.size")
+                .description("Количество операций в одном запросе к Supabase")
+                .tag("op", op)
+                .register(meterRegistry);
+    }
+
+    private static Timer flushTimer(MeterRegistry meterRegistry, String op) {
+        return Timer.builder("supabase.batch.flush")
+                .description("Длительность запроса с пачкой операций")
+                .tag("op", op)
+                .register(meterRegistry);
+    }
+
+    public CompletableFuture<Boolean> register(Registration registration) {
+        return enqueue(registration, false);
+    }
+
+    public CompletableFuture<Boolean> cancel(Long userId, LocalDate lessonDate, String lessonType) {
+        return enqueue(new Registration(userId, null, null, lessonDate, lessonType), true);
+    }
+
+    private CompletableFuture<Boolean> enqueue(Registration registration, boolean cancel) {
+        CompletableFuture<Boolean> future = new CompletableFuture<>();
+        if (!running) {
+            future.completeExceptionally(stopped());
+            return future;
+        }
+        queue.add(new Pending(registration, cancel, future, System.nanoTime()));
+        return future;
+    }
+
+    private void run() {
+        List<Pending> batch = new ArrayList<>(maxBatchSize);
+        while (running || !queue.isEmpty()) {
+            try {
+                Pending first = queue.poll(1, TimeUnit.SECONDS);
+                if (first == null) {
+                    continue;
+                }
+                batch.add(first);
+
+                // Добираем операции, пока не истекло окно или не набралась пачка
+                long deadline = System.nanoTime() + windowNanos;
+                while (batch.size() < maxBatchSize) {
+                    long remaining = deadline - System.nanoTime();
+                    Pending next = remaining > 0 ? queue.poll(remaining, TimeUnit.NANOSECONDS) : queue.poll();
+                    if (next == null) {
+                        break;
+                    }
+                    batch.add(next);
+                }
+
+                flush(batch);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                running = false;
+                break;
+            } catch (Exception e) {
+                log.error("❌ Ошибка обработки пачки записей", e);
+                for (Pending pending : batch) {
+                    pending.future().completeExceptionally(e);
+                }
+            } finally {
+                for (Pending pending : batch) {
+                    pending.future().completeExceptionally(stopped());
+                }
+                batch.clear();
+            }
+        }
+
+        Pending rest;
+        while ((rest = queue.poll()) != null) {
+            rest.future().completeExceptionally(stopped());
+        }
+    }
+
+    private static IllegalStateException stopped() {
+        return new IllegalStateException("Отправка пачек остановлена");
+    }
+
+    private void flush(List<Pending> batch) {
+        List<Pending> inserts = new ArrayList<>();
+        Map<LessonKey, List<Pending>> deletes = new LinkedHashMap<>();
+        for (Pending pending : batch) {
+            if (pending.cancel()) {
+                Registration r = pending.registration();
+                deletes.computeIfAbsent(new LessonKey(r.lessonDate(), r.lessonType()), k -> new ArrayList<>()).add(pending);
+            } else {
+                inserts.add(pending);
+            }
+        }
+
+        if (!inserts.isEmpty()) {
+            flushInserts(inserts);
+        }
+        for (Map.Entry<LessonKey, List<Pending>> entry : deletes.entrySet()) {
+            flushDeletes(entry.getKey(), entry.getValue());
+        }
+    }
+
+    private void flushInserts(List<Pending> inserts) {
+        insertBatchSize.record(inserts.size());
+        Set<RegistrationKey> inserted;
+        try {
+            List<Registration> rows = inserts.stream().map(Pending::registration).toList();
+            inserted = insertFlushTimer.recordCallable(() -> sink.insert(rows));
+        } catch (Exception e) {
+            if (inserts.size() > 1) {
+                log.warn("⚠️ Пакетная запись {} регистраций не прошла ({}), делим пачку", inserts.size(), e.toString());
+                int half = inserts.size() / 2;
+                flushInserts(inserts.subList(0, half));
+                flushInserts(inserts.subList(half, inserts.size()));
+            } else {
+                log.error("❌ Ошибка записи регистрации {}", inserts.get(0).registration(), e);
+                fail(inserts.get(0), e);
+            }
+            return;
+        }
+
+        for (Pending pending : inserts) {
+            Registration r = pending.registration();
+            complete(pending, inserted.contains(new RegistrationKey(r.userId(), r.lessonDate(), r.lessonType())));
+        }
+    }
+
+    private void flushDeletes(LessonKey lesson, List<Pending> deletes) {
+        deleteBatchSize.record(deletes.size());
+        Set<Long> deleted;
+        try {
+            List<Long> userIds = deletes.stream().map(p -> p.registration().userId()).toList();
+            deleted = deleteFlushTimer.recordCallable(() -> sink.delete(lesson.lessonDate(), lesson.lessonType(), userIds));
+        } catch (Exception e) {
+            if (deletes.size() > 1) {
+                log.warn("⚠️ Пакетная отмена {} регистраций на {} {} не прошла ({}), делим пачку", deletes.size(),
+                        lesson.lessonDate(), lesson.lessonType(), e.toString());
+                int half = deletes.size() / 2;
+                flushDeletes(lesson, deletes.subList(0, half));
+                flushDeletes(lesson, deletes.subList(half, deletes.size()));
+            } else {
+                log.error("❌ Ошибка отмены регистрации {} на {} {}", deletes.get(0).registration().userId(),
+                        lesson.lessonDate(), lesson.lessonType(), e);
+                fail(deletes.get(0), e);
+            }
+            return;
+        }
+
+        for (Pending pending : deletes) {
+            complete(pending, deleted.contains(pending.registration().userId()));
+        }
+    }
+
+    private void complete(Pending pending, boolean result) {
+        latencyTimer.record(System.nanoTime() - pending.enqueuedAt(), TimeUnit.NANOSECONDS);
+        pending.future().complete(result);
+    }
+
+    private void fail(Pending pending, Exception e) {
+        latencyTimer.record(System.nanoTime() - pending.enqueuedAt(), TimeUnit.NANOSECONDS);
+        pending.future().completeExceptionally(e);
+    }
+
+    @Override
+    public void close() {
+        running = false;
+        try {
+            flusher.join(TimeUnit.SECONDS.toMillis(5));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,272 @@
+package org.example.service;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpHeaders;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DataBufferUtils;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Repository;
+import org.springframework.web.reactive.function.client.WebClient;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.time.DayOfWeek;
+import java.time.LocalDate;
+import java.time.OffsetDateTime;
+import java.util.*;
+import java.util.stream.Collectors;
+
+/**
+ * Неблокирующий доступ к Supabase через PostgREST (WebClient).
+ * Методы возвращают Mono/Flux и ничего не ждут сами; ошибки HTTP и разбора
+ * приходят как сигнал ошибки.
+ *
+ * Ответы разбираются потоковым парсером прямо из буфера в типизированные строки PostgrestRows,
+ * тела запросов пишутся заранее созданными ObjectWriter общего ObjectMapper приложения.
+ */
+@Repository
+public class RestSupabaseRepository implements SupabaseRepository {
+
+    private static final Logger log = LoggerFactory.getLogger(RestSupabaseRepository.class);
+
+    private final WebClient webClient;
+    private final JsonFactory jsonFactory;
+    private final ObjectWriter lessonWriter;
+    private final ObjectWriter registrationsWriter;
+    private final ObjectWriter messageWriter;
+    private final ObjectWriter settingsWriter;
+    private final String supabaseUrl;
+
+    public RestSupabaseRepository(@Value("${supabase.url}") String supabaseUrl,
+                                  @Value("${supabase.key}") String supabaseKey,
+                                  ObjectMapper objectMapper,
+                                  WebClient.Builder webClientBuilder) {
+        this.jsonFactory = objectMapper.getFactory();
+        this.lessonWriter = objectMapper.writerFor(PostgrestRows.LessonBody.class);
+        this.registrationsWriter = objectMapper.writerFor(new TypeReference<List<PostgrestRows.RegistrationBody>>() {
+        });
+        this.messageWriter = objectMapper.writerFor(PostgrestRows.MessageBody.class);
+        this.settingsWriter = objectMapper.writerFor(PostgrestRows.SettingsBody.class);
+
+        // Проверяем что переменные не пустые
+        if (supabaseUrl == null || supabaseUrl.isEmpty()) {
+            throw new IllegalArgumentException("Supabase URL не настроен");
+        }
+        if (supabaseKey == null || supabaseKey.isEmpty()) {
+            throw new IllegalArgumentException("Supabase Key не настроен");
+        }
+
+        this.supabaseUrl = supabaseUrl;
+        // Builder из контекста Spring уже подключен к наблюдению: каждый запрос - таймер
+        // http.client.requests и дочерний спан текущего update
+        this.webClient = webClientBuilder
+                .defaultHeader(HttpHeaders.AUTHORIZATION, "Bearer " + supabaseKey)
+                .defaultHeader("apikey", supabaseKey)
+                .defaultHeader(HttpHeaders.CONTENT_TYPE, MediaType.APPLICATION_JSON_VALUE)
+                .defaultHeader("Prefer", "return=minimal")
+                .build();
+    }
+
+    // === РАСПИСАНИЕ ===
+
+    @Override
+    public Mono<Void> saveSchedule(DayOfWeek dayOfWeek, String lessonType, String description) {
+        PostgrestRows.LessonBody body = new PostgrestRows.LessonBody(dayOfWeek.toString(), lessonType, description);
+
+        return Mono.defer(() -> webClient.post()
+                        .uri(supabaseUrl + "/rest/v1/lessons")
+                        .header("Prefer", "resolution=merge-duplicates")
+                        .bodyValue(json(lessonWriter, body))
+                        .retrieve()
+                        .toBodilessEntity())
+                .doOnSuccess(response -> log.info("✅ Расписание сохранено: {} {} - {}", dayOfWeek, lessonType, description))
+                .then();
+    }
+
+    @Override
+    public Mono<Map<DayOfWeek, Map<String, String>>> loadSchedule() {
+        return get("/rest/v1/lessons?select=day_of_week,lesson_type,description", PostgrestRows.LESSON)
+                .map(rows -> {
+                    Map<DayOfWeek, Map<String, String>> schedule = new HashMap<>();
+                    for (PostgrestRows.LessonRow row : rows) {
+                        try {
+                            DayOfWeek dayOfWeek = DayOfWeek.valueOf(row.dayOfWeek());
+                            schedule.computeIfAbsent(dayOfWeek, k -> new HashMap<>())
+                                    .put(row.lessonType(), row.description());
+                        } catch (IllegalArgumentException e) {
+                            log.warn("⚠️ Неизвестный день недели в БД: {}", row.dayOfWeek());
+                        }
+                    }
+                    return schedule;
+                });
+    }
+
+    @Override
+    public Mono<Integer> countLessons() {
+        return decode(webClient.get()
+                .uri(supabaseUrl + "/rest/v1/lessons?select=count")
+                .header("Prefer", "count=exact")
+                .retrieve()
+                .bodyToFlux(DataBuffer.class), PostgrestRows.ANY)
+                .map(List::size);
+    }
+
+    // === ЗАПИСИ ===
+
+    @Override
+    public Mono<Set<RegistrationWriteBatcher.RegistrationKey>> insertRegistrations(
+            List<RegistrationWriteBatcher.Registration> registrations) {
+        List<PostgrestRows.RegistrationBody> rows = new ArrayList<>(registrations.size());
+        for (RegistrationWriteBatcher.Registration r : registrations) {
+            rows.add(PostgrestRows.RegistrationBody.of(r));
+        }
+
+        return Mono.defer(() -> decode(webClient.post()
+                        .uri(supabaseUrl + "/rest/v1/registrations?on_conflict=user_id,lesson_date,lesson_type" +
+                                "&select=user_id,lesson_date,lesson_type")
+                        .header("Prefer", "resolution=ignore-duplicates,return=representation")
+                        .bodyValue(json(registrationsWriter, rows))
+                        .retrieve()
+                        .bodyToFlux(DataBuffer.class), PostgrestRows.REGISTRATION_KEY))
+                .map(HashSet::new);
+    }
+
+    @Override
+    public Mono<Set<Long>> deleteRegistrations(LocalDate lessonDate, String lessonType, List<Long> userIds) {
+        String ids = userIds.stream().map(String::valueOf).collect(Collectors.joining(","));
+
+        return decode(webClient.delete()
+                .uri(supabaseUrl + "/rest/v1/registrations?lesson_date=eq." + lessonDate +
+                        "&lesson_type=eq." + lessonType + "&user_id=in.(" + ids + ")&select=user_id")
+                .header("Prefer", "return=representation")
+                .retrieve()
+                .bodyToFlux(DataBuffer.class), PostgrestRows.USER_ID)
+                .map(HashSet::new);
+    }
+
+    @Override
+    public Mono<Map<String, LinkedHashMap<Long, String>>> loadRegistrationsForDate(LocalDate date) {
+        return get("/rest/v1/registrations?lesson_date=eq." + date +
+                "&select=user_id,lesson_type,display_name&order=created_at", PostgrestRows.ROSTER)
+                .map(rows -> {
+                    Map<String, LinkedHashMap<Long, String>> registrations = new HashMap<>();
+                    for (String lessonType : LESSON_TYPES) {
+                        registrations.put(lessonType, new LinkedHashMap<>());
+                    }
+                    for (PostgrestRows.RosterRow row : rows) {
+                        LinkedHashMap<Long, String> roster = registrations.get(row.lessonType());
+                        if (roster != null) {
+                            roster.put(row.userId(), row.displayName());
+                        }
+                    }
+                    log.info("✅ Загружены записи на {}: утро={}, вечер={}",
+                            date, registrations.get("morning").size(), registrations.get("evening").size());
+                    return registrations;
+                });
+    }
+
+    // === СООБЩЕНИЯ В КАНАЛЕ ===
+
+    @Override
+    public Mono<Void> saveMessageId(Integer messageId, String lessonType, LocalDate lessonDate, String messageText) {
+        PostgrestRows.MessageBody body = new PostgrestRows.MessageBody(
+                messageId, lessonType, lessonDate.toString(), messageText);
+
+        return Mono.defer(() -> webClient.post()
+                        .uri(supabaseUrl + "/rest/v1/channel_messages")
+                        .header("Prefer", "resolution=merge-duplicates")
+                        .bodyValue(json(messageWriter, body))
+                        .retrieve()
+                        .toBodilessEntity())
+                .doOnSuccess(response -> log.info("💾 Сохранен ID сообщения: {} для {} занятия на {}",
+                        messageId, lessonType, lessonDate))
+                .then();
+    }
+
+    @Override
+    public Flux<Map<String, Object>> getMessagesForDeletion(LocalDate date, String lessonType) {
+        return get("/rest/v1/channel_messages?lesson_date=eq." + date +
+                "&lesson_type=eq." + lessonType + "&select=message_id,message_text", PostgrestRows.MESSAGE)
+                .flatMapIterable(rows -> rows)
+                .map(row -> {
+                    Map<String, Object> message = new HashMap<>();
+                    message.put("message_id", row.messageId());
+                    message.put("message_text", row.messageText());
+                    return message;
+                });
+    }
+
+    @Override
+    public Mono<Void> deleteMessageRecord(Integer messageId, LocalDate date, String lessonType) {
+        return webClient.delete()
+                .uri(supabaseUrl + "/rest/v1/channel_messages?message_id=eq." + messageId +
+                        "&lesson_date=eq." + date + "&lesson_type=eq." + lessonType)
+                .retrieve()
+                .toBodilessEntity()
+                .doOnSuccess(response -> log.info("✅ Запись сообщения {} удалена из БД", messageId))
+                .then();
+    }
+
+    // === НАСТРОЙКИ ===
+
+    @Override
+    public Mono<Boolean> fetchNotificationsEnabled() {
+        return get("/rest/v1/bot_settings?id=eq.1&select=notifications_enabled", PostgrestRows.NOTIFICATIONS_ENABLED)
+                .flatMap(rows -> rows.isEmpty() ? Mono.empty() : Mono.just(rows.get(0)));
+    }
+
+    @Override
+    public Mono<Void> saveNotificationsState(boolean enabled) {
+        PostgrestRows.SettingsBody body = new PostgrestRows.SettingsBody(1, enabled, OffsetDateTime.now().toString());
+
+        return Mono.defer(() -> webClient.post()
+                        .uri(supabaseUrl + "/rest/v1/bot_settings?on_conflict=id")
+                        .header("Prefer", "resolution=merge-duplicates")
+                        .bodyValue(json(settingsWriter, body))
+                        .retrieve()
+                        .bodyToMono(Void.class));
+    }
+
+    // === ВСПОМОГАТЕЛЬНОЕ ===
+
+    private <T> Mono<List<T>> get(String path, PostgrestRows.RowReader<T> reader) {
+        return decode(webClient.get()
+                .uri(supabaseUrl + path)
+                .retrieve()
+                .bodyToFlux(DataBuffer.class), reader);
+    }
+
+    /**
+     * Собирает тело ответа в один буфер и разбирает его потоковым парсером; буфер освобождается при закрытии.
+     */
+    private <T> Mono<List<T>> decode(Flux<DataBuffer> body, PostgrestRows.RowReader<T> reader) {
+        return DataBufferUtils.join(body)
+                .map(buffer -> {
+                    try (InputStream in = buffer.asInputStream(true);
+                         JsonParser parser = jsonFactory.createParser(in)) {
+                        return PostgrestRows.read(parser, reader);
+                    } catch (IOException e) {
+                        throw new IllegalStateException("Некорректный ответ Supabase", e);
+                    }
+                })
+                .defaultIfEmpty(List.of());
+    }
+
+    private static byte[] json(ObjectWriter writer, Object body) {
+        try {
+            return writer.writeValueAsBytes(body);
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Не удалось сериализовать запрос к Supabase", e);
+        }
+    }
+}
@@ -0,0 +1,365 @@
+package org.example.service;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import reactor.core.publisher.Mono;
+
+import java.io.*;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.time.LocalDate;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+
+/**
+ * Места на занятиях и листы ожидания в памяти, по ключу (дата, тип занятия).
+ * Решение "записать или в лист ожидания" - CAS по счетчику занятых мест, без запроса к Supabase:
+ * счетчик загружается из таблицы registrations при первом обращении к занятию и дальше сверяется с ней в фоне.
+ * Лист ожидания - FIFO на занятие; он есть только здесь, поэтому периодически сохраняется на диск.
+ */
+public class SeatLedger {
+
+    private static final Logger log = LoggerFactory.getLogger(SeatLedger.class);
+
+    private static final int SNAPSHOT_VERSION = 1;
+
+    public record LessonKey(LocalDate lessonDate, String lessonType) {
+    }
+
+    /**
+     * Места одного занятия. taken - подтвержденные записи плюс места, забронированные под запись "в полете";
+     * holders - кто записан по последним данным; writeStamp растет с каждой записью и отменой,
+     * чтобы сверка с загрузкой, начатой раньше, их не откатила.
+     */
+    public static final class Lesson {
+
+        private final LessonKey key;
+        private final int capacity;
+        private final AtomicInteger taken = new AtomicInteger();
+        private final Set<Long> holders = ConcurrentHashMap.newKeySet();
+        private final AtomicLong writeStamp = new AtomicLong();
+        private final LinkedHashMap<Long, RegistrationWriteBatcher.Registration> waitlist = new LinkedHashMap<>();
+        private volatile Mono<Void> ready;
+        private volatile boolean loaded;
+
+        private Lesson(LessonKey key, int capacity) {
+            this.key = key;
+            this.capacity = capacity;
+        }
+
+        public LessonKey key() {
+            return key;
+        }
+
+        public int capacity() {
+            return capacity;
+        }
+
+        public int taken() {
+            return taken.get();
+        }
+
+        /**
+         * Загрузка мест из Supabase, общая для всех, кто обратился к занятию до ее завершения.
+         * Ошибка загрузки доходит до всех ожидающих: решать по незагруженному счетчику нельзя.
+         * После ошибки загрузка сбрасывается, и следующее обращение пробует снова.
+         */
+        public Mono<Void> ready(Supplier<Mono<Void>> loader) {
+            Mono<Void> current = ready;
+            if (current == null) {
+                synchronized (this) {
+                    if (ready == null) {
+                        ready = loader.get()
+                                .doOnError(e -> ready = null)
+                                .cache();
+                    }
+                    current = ready;
+                }
+            }
+            return current;
+        }
+
+        /**
+         * Места хотя бы раз сверены с Supabase. До этого taken не отражает реальный список,
+         * и отдавать места листу ожидания нельзя.
+         */
+        public boolean isLoaded() {
+            return loaded;
+        }
+
+        public boolean isHolder(Long userId) {
+            return holders.contains(userId);
+        }
+
+        /**
+         * Бронирует место, если оно есть. Без блокировок: повтор CAS при гонке.
+         */
+        public boolean tryReserve() {
+            while (true) {
+                int current = taken.get();
+                if (current >= capacity) {
+                    return false;
+                }
+                if (taken.compareAndSet(current, current + 1)) {
+                    return true;
+                }
+            }
+        }
+
+        /**
+         * Итог записи под бронь: место остается за пользователем или освобождается.
+         */
+        public void confirm(Long userId, boolean registered) {
+            writeStamp.incrementAndGet();
+            if (!registered || !holders.add(userId)) {
+                taken.decrementAndGet();
+            }
+        }
+
+        /**
+         * Пользователь отменил запись - его место освобождается.
+         */
+        public void released(Long userId) {
+            writeStamp.incrementAndGet();
+            if (holders.remove(userId)) {
+                taken.decrementAndGet();
+            }
+        }
+
+        // === ЛИСТ ОЖИДАНИЯ ===
+
+        /**
+         * Позиция в листе ожидания с 1; 0 - если пользователь уже в нем.
+         */
+        public int enqueue(RegistrationWriteBatcher.Registration registration) {
+            synchronized (waitlist) {
+                if (waitlist.putIfAbsent(registration.userId(), registration) != null) {
+                    return 0;
+                }
+                return waitlist.size();
+            }
+        }
+
+        public boolean isWaitlisted(Long userId) {
+            synchronized (waitlist) {
+                return waitlist.containsKey(userId);
+            }
+        }
+
+        public boolean leaveWaitlist(Long userId) {
+            synchronized (waitlist) {
+                return waitlist.remove(userId) != null;
+            }
+        }
+
+        /**
+         * Первый из листа ожидания вместе с забронированным для него местом; null - если листа или мест нет.
+         */
+        public RegistrationWriteBatcher.Registration admitNext() {
+            synchronized (waitlist) {
+                if (waitlist.isEmpty() || !tryReserve()) {
+                    return null;
+                }
+                Iterator<RegistrationWriteBatcher.Registration> first = waitlist.values().iterator();
+                RegistrationWriteBatcher.Registration next = first.next();
+                first.remove();
+                return next;
+            }
+        }
+
+        public List<String> waitlistNames() {
+            synchronized (waitlist) {
+                return waitlist.values().stream().map(RegistrationWriteBatcher.Registration::displayName).toList();
+            }
+        }
+
+        private List<RegistrationWriteBatcher.Registration> waitlistSnapshot() {
+            synchronized (waitlist) {
+                return new ArrayList<>(waitlist.values());
+            }
+        }
+
+        /**
+         * Приводит места к списку из Supabase, если с момента stamp не было записей и отмен.
+         * Счетчик меняется приращениями, поэтому брони, сделанные во время сверки, не теряются.
+         * Возвращает true, если изменился лист ожидания.
+         */
+        private boolean reconcile(Set<Long> stored, long stamp) {
+            if (writeStamp.get() != stamp) {
+                return false;
+            }
+            for (Long userId : stored) {
+                if (holders.add(userId)) {
+                    taken.incrementAndGet();
+                }
+            }
+            for (Long userId : holders) {
+                if (writeStamp.get() != stamp) {
+                    return false;
+                }
+                if (!stored.contains(userId) && holders.remove(userId)) {
+                    taken.decrementAndGet();
+                }
+            }
+            loaded = true;
+            // Записавшиеся в обход бота из листа ожидания уходят
+            synchronized (waitlist) {
+                return waitlist.keySet().removeAll(stored);
+            }
+        }
+    }
+
+    private final Map<LessonKey, Lesson> lessons = new ConcurrentHashMap<>();
+    private final Map<String, Integer> capacities;
+    private final Path snapshotFile;
+    private final AtomicBoolean dirty = new AtomicBoolean();
+
+    /**
+     * capacities - мест на тип занятия; 0 или отсутствие типа - без ограничения.
+     */
+    public SeatLedger(Map<String, Integer> capacities, Path snapshotFile) {
+        this.capacities = Map.copyOf(capacities);
+        this.snapshotFile = snapshotFile;
+    }
+
+    public int capacity(String lessonType) {
+        return capacities.getOrDefault(lessonType, 0);
+    }
+
+    public Lesson lesson(LocalDate lessonDate, String lessonType) {
+        return lessons.computeIfAbsent(new LessonKey(lessonDate, lessonType), key -> new Lesson(key, capacity(lessonType)));
+    }
+
+    /**
+     * Занятие, если к нему уже обращались; иначе null.
+     */
+    public Lesson find(LocalDate lessonDate, String lessonType) {
+        return lessons.get(new LessonKey(lessonDate, lessonType));
+    }
+
+    public Set<LocalDate> dates() {
+        Set<LocalDate> dates = new TreeSet<>();
+        for (LessonKey key : lessons.keySet()) {
+            dates.add(key.lessonDate());
+        }
+        return dates;
+    }
+
+    /**
+     * Снимает отметки записей занятий на дату до загрузки и возвращает сверку,
+     * которую нужно применить к загруженным спискам (тип -> user_id -> имя).
+     */
+    public Consumer<Map<String, LinkedHashMap<Long, String>>> reconciliation(LocalDate date) {
+        Map<Lesson, Long> stamps = new HashMap<>();
+        lessons.forEach((key, lesson) -> {
+            if (key.lessonDate().equals(date)) {
+                stamps.put(lesson, lesson.writeStamp.get());
+            }
+        });
+        return loaded -> stamps.forEach((lesson, stamp) -> {
+            LinkedHashMap<Long, String> stored = loaded.getOrDefault(lesson.key.lessonType(), new LinkedHashMap<>());
+            if (lesson.reconcile(stored.keySet(), stamp)) {
+                dirty.set(true);
+            }
+        });
+    }
+
+    public List<Lesson> lessonsOn(LocalDate date) {
+        List<Lesson> result = new ArrayList<>();
+        lessons.forEach((key, lesson) -> {
+            if (key.lessonDate().equals(date)) {
+                result.add(lesson);
+            }
+        });
+        return result;
+    }
+
+    /**
+     * Отмечает, что лист ожидания изменился и его пора сохранить.
+     */
+    public void waitlistChanged() {
+        dirty.set(true);
+    }
+
+    /**
+     * Убирает прошедшие занятия вместе с их листами ожидания.
+     */
+    public void trim(LocalDate today) {
+        if (lessons.keySet().removeIf(key -> key.lessonDate().isBefore(today))) {
+            dirty.set(true);
+        }
+    }
+
+    // === СНИМОК ЛИСТОВ ОЖИДАНИЯ ===
+
+    public void load(LocalDate today) {
+        if (!Files.exists(snapshotFile)) {
+            return;
+        }
+        int restored = 0;
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(snapshotFile)))) {
+            int version = in.readInt();
+            if (version != SNAPSHOT_VERSION) {
+                log.warn("⚠️ Формат снимка листов ожидания изменился ({} -> {}), листы сброшены",
+                        version, SNAPSHOT_VERSION);
+                return;
+            }
+            int count = in.readInt();
+            for (int i = 0; i < count; i++) {
+                long userId = in.readLong();
+                String username = in.readBoolean() ? in.readUTF() : null;
+                String displayName = in.readUTF();
+                LocalDate lessonDate = LocalDate.ofEpochDay(in.readLong());
+                String lessonType = in.readUTF();
+                if (lessonDate.isBefore(today) || capacity(lessonType) <= 0) {
+                    continue;
+                }
+                lesson(lessonDate, lessonType).enqueue(new RegistrationWriteBatcher.Registration(
+                        userId, username, displayName, lessonDate, lessonType));
+                restored++;
+            }
+            log.info("✅ Восстановлено мест в листах ожидания: {}", restored);
+        } catch (IOException e) {
+            log.error("❌ Ошибка чтения снимка листов ожидания", e);
+        }
+    }
+
+    public void persist() {
+        if (!dirty.getAndSet(false)) {
+            return;
+        }
+        List<RegistrationWriteBatcher.Registration> snapshot = new ArrayList<>();
+        for (Lesson lesson : lessons.values()) {
+            snapshot.addAll(lesson.waitlistSnapshot());
+        }
+
+        try {
+            Files.createDirectories(snapshotFile.getParent());
+            Path tmp = snapshotFile.resolveSibling(snapshotFile.getFileName() + ".tmp");
+            try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(tmp)))) {
+                out.writeInt(SNAPSHOT_VERSION);
+                out.writeInt(snapshot.size());
+                for (RegistrationWriteBatcher.Registration r : snapshot) {
+                    out.writeLong(r.userId());
+                    out.writeBoolean(r.username() != null);
+                    if (r.username() != null) {
+                        out.writeUTF(r.username());
+                    }
+                    out.writeUTF(r.displayName());
+                    out.writeLong(r.lessonDate().toEpochDay());
+                    out.writeUTF(r.lessonType());
+                }
+            }
+            Files.move(tmp, snapshotFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            dirty.set(true);
+            log.error("❌ Ошибка сохранения листов ожидания", e);
+        }
+    }
+}
@@ -0,0 +1,112 @@
+package org.example.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.stereotype.Component;
+
+import java.time.OffsetDateTime;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Результаты теневого сравнения хранилищ: задержки обоих вариантов и расхождения по операциям.
+ * Метрики: supabase.shadow.latency{op,role}, supabase.shadow.compare{op,result}, supabase.shadow.skipped.
+ * Сводка с последним расхождением по каждой операции отдается через /debug/shadow.
+ */
+@Component
+public class ShadowComparisonStats {
+
+    private static final int SAMPLE_LIMIT = 500;
+
+    private final MeterRegistry meterRegistry;
+    private final Counter skippedCounter;
+    private final Map<String, Map<String, Object>> lastMismatch = new ConcurrentHashMap<>();
+
+    public ShadowComparisonStats(MeterRegistry meterRegistry) {
+        this.meterRegistry = meterRegistry;
+        this.skippedCounter = Counter.builder("supabase.shadow.skipped")
+                .description("Теневые запросы, пропущенные из-за лимита одновременных")
+                .register(meterRegistry);
+    }
+
+    void recordLatency(String op, String role, long nanos) {
+        latency(op, role).record(nanos, TimeUnit.NANOSECONDS);
+    }
+
+    void recordMatch(String op) {
+        compare(op, "match").increment();
+    }
+
+    void recordError(String op) {
+        compare(op, "error").increment();
+    }
+
+    void recordMismatch(String op, String args, Object primary, Object secondary) {
+        compare(op, "mismatch").increment();
+
+        Map<String, Object> sample = new LinkedHashMap<>();
+        sample.put("at", OffsetDateTime.now().toString());
+        sample.put("args", args);
+        sample.put("primary", truncate(String.valueOf(primary)));
+        sample.put("secondary", truncate(String.valueOf(secondary)));
+        lastMismatch.put(op, sample);
+    }
+
+    void recordSkipped() {
+        skippedCounter.increment();
+    }
+
+    /**
+     * Сводка по операциям: число сравнений, средние задержки и последнее расхождение.
+     */
+    public Map<String, Object> snapshot() {
+        Map<String, Object> ops = new TreeMap<>();
+        for (Timer timer : meterRegistry.find("supabase.shadow.latency").timers()) {
+            String op = timer.getId().getTag("op");
+            String role = timer.getId().getTag("role");
+            @SuppressWarnings("unchecked")
+            Map<String, Object> entry = (Map<String, Object>) ops.computeIfAbsent(op, k -> newEntry(op));
+            entry.put(role + "_count", timer.count());
+            entry.put(role + "_mean_ms", timer.mean(TimeUnit.MILLISECONDS));
+            entry.put(role + "_max_ms", timer.max(TimeUnit.MILLISECONDS));
+        }
+
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("skipped", skippedCounter.count());
+        result.put("operations", ops);
+        return result;
+    }
+
+    private Map<String, Object> newEntry(String op) {
+        Map<String, Object> entry = new LinkedHashMap<>();
+        entry.put("match", compare(op, "match").count());
+        entry.put("mismatch", compare(op, "mismatch").count());
+        entry.put("error", compare(op, "error").count());
+        entry.put("last_mismatch", lastMismatch.get(op));
+        return entry;
+    }
+
+    private Timer latency(String op, String role) {
+        return Timer.builder("supabase.shadow.latency")
+                .description("Задержка операции хранилища в теневом режиме")
+                .tag("op", op)
+                .tag("role", role)
+                .register(meterRegistry);
+    }
+
+    private Counter compare(String op, String result) {
+        return Counter.builder("supabase.shadow.compare")
+                .description("Результаты сравнения основного и теневого хранилища")
+                .tag("op", op)
+                .tag("result", result)
+                .register(meterRegistry);
+    }
+
+    private static String truncate(String value) {
+        return value.length() <= SAMPLE_LIMIT ? value : value.substring(0, SAMPLE_LIMIT) + "...";
+    }
+}
@@ -0,0 +1,198 @@
+package org.example.service;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+
+import java.time.DayOfWeek;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.util.*;
+import java.util.concurrent.Semaphore;
+import java.util.function.Function;
+import java.util.function.Supplier;
+import java.util.function.UnaryOperator;
+
+/**
+ * Теневой режим: чтения идут в основное хранилище, а после ответа тот же запрос
+ * асинхронно повторяется во втором хранилище. Задержки и расхождения пишутся в ShadowComparisonStats.
+ *
+ * Ответ основного хранилища отдается сразу: теневой запрос запускается на boundedElastic,
+ * ограничен по числу одновременных (лишние пропускаются) и по времени. На потоке вызывающего
+ * остается только взять разрешение и, если оно есть, снять копию изменяемого ответа;
+ * нормализация и сравнение идут в теневой задаче.
+ * Записи уходят только в основное хранилище, иначе второе получило бы двойные данные.
+ */
+public class ShadowSupabaseRepository implements SupabaseRepository {
+
+    private static final Logger log = LoggerFactory.getLogger(ShadowSupabaseRepository.class);
+
+    private final SupabaseRepository primary;
+    private final SupabaseRepository secondary;
+    private final ShadowComparisonStats stats;
+    private final Semaphore inFlight;
+    private final Duration timeout;
+
+    public ShadowSupabaseRepository(SupabaseRepository primary, SupabaseRepository secondary,
+                                    ShadowComparisonStats stats, int maxInFlight, long timeoutMs) {
+        this.primary = primary;
+        this.secondary = secondary;
+        this.stats = stats;
+        this.inFlight = new Semaphore(maxInFlight);
+        this.timeout = Duration.ofMillis(timeoutMs);
+    }
+
+    // === ЧТЕНИЯ (со сравнением) ===
+
+    @Override
+    public Mono<Map<DayOfWeek, Map<String, String>>> loadSchedule() {
+        return read("loadSchedule", "", primary.loadSchedule(), secondary::loadSchedule,
+                ShadowSupabaseRepository::copySchedule, ShadowSupabaseRepository::normalizeSchedule);
+    }
+
+    @Override
+    public Mono<Integer> countLessons() {
+        return read("countLessons", "", primary.countLessons(), secondary::countLessons,
+                UnaryOperator.identity(), count -> count);
+    }
+
+    @Override
+    public Mono<Map<String, LinkedHashMap<Long, String>>> loadRegistrationsForDate(LocalDate date) {
+        return read("loadRegistrationsForDate", date.toString(), primary.loadRegistrationsForDate(date),
+                () -> secondary.loadRegistrationsForDate(date),
+                ShadowSupabaseRepository::copyRosters, ShadowSupabaseRepository::normalizeRosters);
+    }
+
+    @Override
+    public Flux<Map<String, Object>> getMessagesForDeletion(LocalDate date, String lessonType) {
+        return read("getMessagesForDeletion", date + " " + lessonType,
+                primary.getMessagesForDeletion(date, lessonType).collectList(),
+                () -> secondary.getMessagesForDeletion(date, lessonType).collectList(),
+                UnaryOperator.identity(), messages -> new HashSet<>(messages))
+                .flatMapIterable(messages -> messages);
+    }
+
+    @Override
+    public Mono<Boolean> fetchNotificationsEnabled() {
+        return read("fetchNotificationsEnabled", "", primary.fetchNotificationsEnabled(),
+                secondary::fetchNotificationsEnabled, UnaryOperator.identity(), enabled -> enabled);
+    }
+
+    // === ЗАПИСИ (только основное хранилище) ===
+
+    @Override
+    public Mono<Void> saveSchedule(DayOfWeek dayOfWeek, String lessonType, String description) {
+        return primary.saveSchedule(dayOfWeek, lessonType, description);
+    }
+
+    @Override
+    public Mono<Set<RegistrationWriteBatcher.RegistrationKey>> insertRegistrations(
+            List<RegistrationWriteBatcher.Registration> registrations) {
+        return primary.insertRegistrations(registrations);
+    }
+
+    @Override
+    public Mono<Set<Long>> deleteRegistrations(LocalDate lessonDate, String lessonType, List<Long> userIds) {
+        return primary.deleteRegistrations(lessonDate, lessonType, userIds);
+    }
+
+    @Override
+    public Mono<Void> saveMessageId(Integer messageId, String lessonType, LocalDate lessonDate, String messageText) {
+        return primary.saveMessageId(messageId, lessonType, lessonDate, messageText);
+    }
+
+    @Override
+    public Mono<Void> deleteMessageRecord(Integer messageId, LocalDate date, String lessonType) {
+        return primary.deleteMessageRecord(messageId, date, lessonType);
+    }
+
+    @Override
+    public Mono<Void> saveNotificationsState(boolean enabled) {
+        return primary.saveNotificationsState(enabled);
+    }
+
+    // === СРАВНЕНИЕ ===
+
+    /**
+     * Замеряет основной запрос и по его успешному ответу запускает теневой, если есть свободное разрешение.
+     * snapshot копирует ответ, который вызывающий код может менять (карты записей дополняются журналом);
+     * для неизменяемых ответов это identity. Вся остальная работа - в теневой задаче.
+     */
+    private <T> Mono<T> read(String op, String args, Mono<T> primaryCall, Supplier<Mono<T>> secondaryCall,
+                             UnaryOperator<T> snapshot, Function<T, Object> normalize) {
+        return Mono.defer(() -> {
+            long start = System.nanoTime();
+            return primaryCall.doOnSuccess(result -> {
+                stats.recordLatency(op, "primary", System.nanoTime() - start);
+                if (!inFlight.tryAcquire()) {
+                    stats.recordSkipped();
+                    return;
+                }
+                shadow(op, args, result != null ? snapshot.apply(result) : null, secondaryCall, normalize);
+            });
+        });
+    }
+
+    /**
+     * Теневая задача; разрешение уже взято и освобождается по ее завершении.
+     */
+    private <T> void shadow(String op, String args, T primaryResult, Supplier<Mono<T>> secondaryCall,
+                            Function<T, Object> normalize) {
+        Mono.fromCallable(() -> Optional.ofNullable(primaryResult).map(normalize))
+                .flatMap(expected -> {
+                    long start = System.nanoTime();
+                    return Mono.defer(secondaryCall)
+                            .map(normalize)
+                            .map(Optional::of)
+                            .defaultIfEmpty(Optional.empty())
+                            .timeout(timeout)
+                            .doOnNext(actual -> {
+                                stats.recordLatency(op, "secondary", System.nanoTime() - start);
+                                if (expected.equals(actual)) {
+                                    stats.recordMatch(op);
+                                } else {
+                                    stats.recordMismatch(op, args, expected.orElse(null), actual.orElse(null));
+                                    log.warn("⚠️ Теневое сравнение {} {}: результаты различаются", op, args);
+                                }
+                            });
+                })
+                .subscribeOn(Schedulers.boundedElastic())
+                .doFinally(signal -> inFlight.release())
+                .subscribe(actual -> {
+                }, error -> {
+                    stats.recordError(op);
+                    log.warn("⚠️ Теневой запрос {} {} не выполнен: {}", op, args, error.getMessage());
+                });
+    }
+
+    private static Map<DayOfWeek, Map<String, String>> copySchedule(Map<DayOfWeek, Map<String, String>> schedule) {
+        Map<DayOfWeek, Map<String, String>> copy = new HashMap<>();
+        schedule.forEach((day, lessons) -> copy.put(day, new HashMap<>(lessons)));
+        return copy;
+    }
+
+    private static Map<String, LinkedHashMap<Long, String>> copyRosters(Map<String, LinkedHashMap<Long, String>> rosters) {
+        Map<String, LinkedHashMap<Long, String>> copy = new HashMap<>();
+        rosters.forEach((lessonType, roster) -> copy.put(lessonType, new LinkedHashMap<>(roster)));
+        return copy;
+    }
+
+    private static Object normalizeSchedule(Map<DayOfWeek, Map<String, String>> schedule) {
+        Map<DayOfWeek, Map<String, String>> copy = new TreeMap<>();
+        schedule.forEach((day, lessons) -> copy.put(day, new TreeMap<>(lessons)));
+        return copy;
+    }
+
+    /**
+     * Списки записавшихся сравниваются с учетом порядка: порядок записи виден в канале.
+     */
+    private static Object normalizeRosters(Map<String, LinkedHashMap<Long, String>> rosters) {
+        Map<String, List<Map.Entry<Long, String>>> copy = new TreeMap<>();
+        rosters.forEach((lessonType, roster) -> copy.put(lessonType, roster.entrySet().stream()
+                .<Map.Entry<Long, String>>map(entry -> new AbstractMap.SimpleImmutableEntry<>(entry.getKey(), entry.getValue()))
+                .toList()));
+        return copy;
+    }
+}
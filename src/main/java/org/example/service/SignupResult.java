@@ -0,0 +1,15 @@
+package org.example.service;
+
+/**
+ * Итог нажатия "Записаться" на занятие с ограниченным числом мест.
+ */
+public enum SignupResult {
+    REGISTERED,
+    ALREADY_REGISTERED,
+    WAITLISTED,
+    ALREADY_WAITLISTED,
+    /**
+     * Места на занятие не удалось загрузить из Supabase - запись не выполнена.
+     */
+    UNAVAILABLE
+}
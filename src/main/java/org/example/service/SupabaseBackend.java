@@ -0,0 +1,11 @@
+package org.example.service;
+
+/**
+ * Способ доступа к базе Supabase.
+ * REST - PostgREST по HTTPS (по умолчанию),
+ * JDBC - прямое подключение к Postgres через пул spring.datasource.
+ */
+public enum SupabaseBackend {
+    REST,
+    JDBC
+}
@@ -0,0 +1,64 @@
+package org.example.service;
+
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.time.DayOfWeek;
+import java.time.LocalDate;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Хранилище данных бота: расписание, записи, сообщения в канале и настройки.
+ * Реализации: RestSupabaseRepository (PostgREST по HTTPS) и JdbcSupabaseRepository (SQL напрямую).
+ * Ошибки приходят сигналом ошибки, значения по умолчанию подставляет SupabaseService.
+ */
+public interface SupabaseRepository {
+
+    List<String> LESSON_TYPES = List.of("morning", "evening");
+
+    // === РАСПИСАНИЕ ===
+
+    Mono<Void> saveSchedule(DayOfWeek dayOfWeek, String lessonType, String description);
+
+    Mono<Map<DayOfWeek, Map<String, String>>> loadSchedule();
+
+    Mono<Integer> countLessons();
+
+    // === ЗАПИСИ ===
+
+    /**
+     * Пакетная вставка; возвращает ключи реально вставленных строк (дубликаты пропускаются).
+     */
+    Mono<Set<RegistrationWriteBatcher.RegistrationKey>> insertRegistrations(
+            List<RegistrationWriteBatcher.Registration> registrations);
+
+    /**
+     * Пакетное удаление записей на одно занятие; возвращает id реально удаленных.
+     */
+    Mono<Set<Long>> deleteRegistrations(LocalDate lessonDate, String lessonType, List<Long> userIds);
+
+    /**
+     * Записи на дату по типам занятий в порядке записи: тип -> (user_id -> отображаемое имя).
+     */
+    Mono<Map<String, LinkedHashMap<Long, String>>> loadRegistrationsForDate(LocalDate date);
+
+    // === СООБЩЕНИЯ В КАНАЛЕ ===
+
+    Mono<Void> saveMessageId(Integer messageId, String lessonType, LocalDate lessonDate, String messageText);
+
+    Flux<Map<String, Object>> getMessagesForDeletion(LocalDate date, String lessonType);
+
+    Mono<Void> deleteMessageRecord(Integer messageId, LocalDate date, String lessonType);
+
+    // === НАСТРОЙКИ ===
+
+    /**
+     * Флаг уведомлений из bot_settings; пустой Mono, если строки еще нет.
+     */
+    Mono<Boolean> fetchNotificationsEnabled();
+
+    Mono<Void> saveNotificationsState(boolean enabled);
+}
@@ -0,0 +1,56 @@
+package org.example.service;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
+
+/**
+ * Выбор хранилища по свойству supabase.backend (rest | jdbc).
+ * Обе реализации остаются бинами, но создается только выбранная (lazy-initialization).
+ * При supabase.shadow.enabled=true чтения дублируются во второе хранилище (supabase.shadow.backend)
+ * для сравнения задержек и результатов.
+ */
+@Configuration
+public class SupabaseRepositoryConfig {
+
+    private static final Logger log = LoggerFactory.getLogger(SupabaseRepositoryConfig.class);
+
+    @Bean
+    @Primary
+    public SupabaseRepository supabaseRepository(@Value("${supabase.backend:rest}") SupabaseBackend backend,
+                                                 @Value("${supabase.shadow.enabled:false}") boolean shadowEnabled,
+                                                 @Value("${supabase.shadow.backend:jdbc}") SupabaseBackend shadowBackend,
+                                                 @Value("${supabase.shadow.max-in-flight:16}") int shadowMaxInFlight,
+                                                 @Value("${supabase.shadow.timeout-ms:5000}") long shadowTimeoutMs,
+                                                 ObjectProvider<RestSupabaseRepository> rest,
+                                                 ObjectProvider<JdbcSupabaseRepository> jdbc,
+                                                 ObjectProvider<ShadowComparisonStats> shadowStats) {
+        log.info("✅ Хранилище данных: {}", backend);
+        SupabaseRepository repository = select(backend, rest, jdbc);
+
+        if (!shadowEnabled) {
+            return repository;
+        }
+        if (shadowBackend == backend) {
+            log.warn("⚠️ Теневой режим отключен: основное и теневое хранилище совпадают ({})", backend);
+            return repository;
+        }
+
+        log.info("👥 Теневой режим: чтения сравниваются с {}", shadowBackend);
+        return new ShadowSupabaseRepository(repository, select(shadowBackend, rest, jdbc),
+                shadowStats.getObject(), shadowMaxInFlight, shadowTimeoutMs);
+    }
+
+    private static SupabaseRepository select(SupabaseBackend backend,
+                                             ObjectProvider<RestSupabaseRepository> rest,
+                                             ObjectProvider<JdbcSupabaseRepository> jdbc) {
+        return switch (backend) {
+            case REST -> rest.getObject();
+            case JDBC -> jdbc.getObject();
+        };
+    }
+}
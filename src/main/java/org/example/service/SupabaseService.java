@@ -1,163 +1,175 @@
 package org.example.service;
 
-import com.fasterxml.jackson.databind.JsonNode;
-import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+import jakarta.annotation.PreDestroy;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Value;
-import org.springframework.http.HttpHeaders;
-import org.springframework.http.MediaType;
+import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
-import org.springframework.web.reactive.function.client.WebClient;
+import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
 
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Path;
 import java.time.DayOfWeek;
+import java.time.Duration;
 import java.time.LocalDate;
-import java.time.OffsetDateTime;
+import java.time.ZoneId;
 import java.util.*;
-
+import java.util.concurrent.Callable;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Consumer;
+
+/**
+ * Доступ к данным бота в Supabase с кэшами и пакетной записью.
+ * Методы *Async возвращают Mono/Flux и не блокируют поток; одноименные методы без суффикса -
+ * тонкие блокирующие адаптеры для старого кода.
+ */
 @Service
 public class SupabaseService {
 
     private static final Logger log = LoggerFactory.getLogger(SupabaseService.class);
 
-    private final WebClient webClient;
-    private final ObjectMapper objectMapper;
-
-    @Value("${supabase.url}")
-    private String supabaseUrl;
-
-    @Value("${supabase.key}")
-    private String supabaseKey;
+    // Столько ждет отправки операция, попавшая в журнал: пачка, которую не дождались, успевает завершиться
+    private static final Duration JOURNAL_REPLAY_DELAY = Duration.ofSeconds(10);
+    private static final List<String> LESSON_TYPES = SupabaseRepository.LESSON_TYPES;
+
+    private final SupabaseRepository repository;
+    private final RegistrationWriteBatcher registrationBatcher;
+    private final RegistrationRosterCache rosterCache;
+    private final RegistrationJournal registrationJournal;
+    private final Duration journalAckTimeout;
+    private final Duration seatLoadTimeout;
+    private final CallMetrics callMetrics;
+    private final SeatLedger seats;
+    private final Counter promotedCounter;
+    private final Map<SignupResult, Counter> signupCounters = new EnumMap<>(SignupResult.class);
+    private volatile Consumer<RegistrationWriteBatcher.Registration> promotionListener = registration -> {
+    };
 
-    public SupabaseService(@Value("${supabase.url}") String supabaseUrl,
-                           @Value("${supabase.key}") String supabaseKey) {
-        this.objectMapper = new ObjectMapper();
+    /**
+     * Снимок строки bot_settings и момент его загрузки (System.nanoTime).
+     */
+    private record SettingsSnapshot(boolean notificationsEnabled, long loadedAt) {
+    }
 
-        // Проверяем что переменные не пустые
-        if (supabaseUrl == null || supabaseUrl.isEmpty()) {
-            throw new IllegalArgumentException("Supabase URL не настроен");
-        }
-        if (supabaseKey == null || supabaseKey.isEmpty()) {
-            throw new IllegalArgumentException("Supabase Key не настроен");
+    private final AtomicReference<SettingsSnapshot> settingsSnapshot = new AtomicReference<>();
+    private final long settingsTtlNanos;
+    private final Counter settingsHitCounter;
+    private final Counter settingsMissCounter;
+
+    public SupabaseService(SupabaseRepository repository,
+                           @Value("${supabase.batch.window-ms:5}") long batchWindowMs,
+                           @Value("${supabase.batch.max-size:50}") int batchMaxSize,
+                           @Value("${supabase.roster-cache.ttl-ms:60000}") long rosterTtlMs,
+                           @Value("${supabase.roster-cache.max-entries:64}") int rosterMaxEntries,
+                           @Value("${supabase.settings-cache.ttl-ms:30000}") long settingsTtlMs,
+                           @Value("${supabase.journal.ack-timeout-ms:1500}") long journalAckTimeoutMs,
+                           @Value("${supabase.journal.replay-interval-ms:2000}") long journalReplayIntervalMs,
+                           @Value("${lesson.capacity.morning:0}") int morningCapacity,
+                           @Value("${lesson.capacity.evening:0}") int eveningCapacity,
+                           @Value("${lesson.capacity.load-timeout-ms:3000}") long seatLoadTimeoutMs,
+                           @Value("${app.data-dir:data}") String dataDir,
+                           MeterRegistry meterRegistry) {
+        this.repository = repository;
+
+        this.registrationBatcher = new RegistrationWriteBatcher(new RegistrationSink(),
+                batchWindowMs, batchMaxSize, meterRegistry);
+        this.rosterCache = new RegistrationRosterCache(rosterTtlMs, rosterMaxEntries, meterRegistry);
+
+        this.journalAckTimeout = Duration.ofMillis(journalAckTimeoutMs);
+        this.seatLoadTimeout = Duration.ofMillis(seatLoadTimeoutMs);
+        try {
+            this.registrationJournal = new RegistrationJournal(Path.of(dataDir, "registrations.journal"),
+                    new RegistrationSink(), JOURNAL_REPLAY_DELAY.toMillis(), journalReplayIntervalMs, meterRegistry);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Не удалось открыть журнал записей", e);
         }
 
-        this.supabaseUrl = supabaseUrl;
-        this.supabaseKey = supabaseKey;
-
-        this.webClient = WebClient.builder()
-                .defaultHeader(HttpHeaders.AUTHORIZATION, "Bearer " + supabaseKey)
-                .defaultHeader("apikey", supabaseKey)
-                .defaultHeader(HttpHeaders.CONTENT_TYPE, MediaType.APPLICATION_JSON_VALUE)
-                .defaultHeader("Prefer", "return=minimal")
-                .build();
+        this.settingsTtlNanos = TimeUnit.MILLISECONDS.toNanos(settingsTtlMs);
+        this.settingsHitCounter = Counter.builder("supabase.settings.cache")
+                .description("Обращения к кэшу настроек бота")
+                .tag("result", "hit")
+                .register(meterRegistry);
+        this.settingsMissCounter = Counter.builder("supabase.settings.cache")
+                .description("Обращения к кэшу настроек бота")
+                .tag("result", "miss")
+                .register(meterRegistry);
+
+        this.callMetrics = new CallMetrics(meterRegistry, "supabase.call",
+                "Вызовы SupabaseService, включая ответы из кэша и журнала", false);
+
+        this.seats = new SeatLedger(Map.of("morning", morningCapacity, "evening", eveningCapacity),
+                Path.of(dataDir, "waitlists.bin"));
+        this.seats.load(LocalDate.now(ZoneId.of("Europe/Moscow")));
+        for (SignupResult result : SignupResult.values()) {
+            signupCounters.put(result, Counter.builder("lesson.signup")
+                    .description("Нажатия \"Записаться\" по итогу")
+                    .tag("result", result.name().toLowerCase(Locale.ROOT))
+                    .register(meterRegistry));
+        }
+        this.promotedCounter = Counter.builder("lesson.waitlist.promoted")
+                .description("Записи из листа ожидания на освободившееся место")
+                .register(meterRegistry);
 
-        log.info("✅ SupabaseService инициализирован с URL: {}", supabaseUrl);
+        log.info("✅ SupabaseService инициализирован: {}", repository.getClass().getSimpleName());
     }
 
     // === МЕТОДЫ ДЛЯ РАБОТЫ С РАСПИСАНИЕМ ===
 
     public void saveSchedule(DayOfWeek dayOfWeek, String lessonType, String description, Long adminId) {
-        try {
-            String url = supabaseUrl + "/rest/v1/lessons";
-
-            Map<String, Object> data = new HashMap<>();
-            data.put("day_of_week", dayOfWeek.toString());
-            data.put("lesson_type", lessonType);
-            data.put("description", description);
-
-            webClient.post()
-                    .uri(url)
-                    .header("Prefer", "resolution=merge-duplicates")
-                    .bodyValue(data)
-                    .retrieve()
-                    .bodyToMono(String.class)
-                    .doOnSuccess(response -> log.info("✅ Расписание сохранено: {} {} - {}", dayOfWeek, lessonType, description))
-                    .doOnError(error -> log.error("❌ Ошибка сохранения расписания", error))
-                    .block();
-
-        } catch (Exception e) {
-            log.error("❌ Ошибка сохранения расписания в Supabase", e);
-        }
+        saveScheduleAsync(dayOfWeek, lessonType, description).block();
     }
 
-    public Map<DayOfWeek, Map<String, String>> loadSchedule() {
-        Map<DayOfWeek, Map<String, String>> schedule = new HashMap<>();
-
-        try {
-            String url = supabaseUrl + "/rest/v1/lessons?select=*";
-
-            String response = webClient.get()
-                    .uri(url)
-                    .retrieve()
-                    .bodyToMono(String.class)
-                    .block();
-
-            JsonNode jsonNode = objectMapper.readTree(response);
-
-            if (jsonNode.isArray()) {
-                for (JsonNode node : jsonNode) {
-                    try {
-                        DayOfWeek dayOfWeek = DayOfWeek.valueOf(node.get("day_of_week").asText());
-                        String lessonType = node.get("lesson_type").asText();
-                        String description = node.get("description").asText();
-
-                        schedule.computeIfAbsent(dayOfWeek, k -> new HashMap<>())
-                                .put(lessonType, description);
-                    } catch (IllegalArgumentException e) {
-                        log.warn("⚠️ Неизвестный день недели в БД: {}", node.get("day_of_week"));
-                    }
-                }
-            }
-
-            log.info("✅ Загружено расписание из Supabase: {} записей", schedule.size());
+    public Mono<Void> saveScheduleAsync(DayOfWeek dayOfWeek, String lessonType, String description) {
+        return metered("saveSchedule", repository.saveSchedule(dayOfWeek, lessonType, description))
+                .onErrorResume(e -> {
+                    log.error("❌ Ошибка сохранения расписания в Supabase", e);
+                    return Mono.empty();
+                });
+    }
 
-        } catch (Exception e) {
-            log.error("❌ Ошибка загрузки расписания из Supabase", e);
-        }
+    public Map<DayOfWeek, Map<String, String>> loadSchedule() {
+        return loadScheduleAsync().block();
+    }
 
-        return schedule;
+    public Mono<Map<DayOfWeek, Map<String, String>>> loadScheduleAsync() {
+        return metered("loadSchedule", repository.loadSchedule())
+                .doOnNext(schedule -> log.info("✅ Загружено расписание из Supabase: {} записей", schedule.size()))
+                .onErrorResume(e -> {
+                    log.error("❌ Ошибка загрузки расписания из Supabase", e);
+                    return Mono.just(new HashMap<>());
+                });
     }
 
     public void initializeDefaultSchedule() {
-        try {
-            // Проверяем, есть ли уже записи
-            String checkUrl = supabaseUrl + "/rest/v1/lessons?select=count";
-
-            String countResponse = webClient.get()
-                    .uri(checkUrl)
-                    .header("Prefer", "count=exact")
-                    .retrieve()
-                    .bodyToMono(String.class)
-                    .block();
-
-            JsonNode countNode = objectMapper.readTree(countResponse);
-            int count = countNode.size();
-
-            if (count > 0) {
-                log.info("✅ В Supabase уже есть расписание ({} записей), пропускаем инициализацию", count);
-                return;
-            }
-
-            log.info("🔄 Инициализация дефолтного расписания в Supabase...");
-
-            // Инициализируем дефолтное расписание
-            Map<DayOfWeek, Map<String, String>> defaultSchedule = createDefaultSchedule();
-
-            for (Map.Entry<DayOfWeek, Map<String, String>> dayEntry : defaultSchedule.entrySet()) {
-                DayOfWeek dayOfWeek = dayEntry.getKey();
-                Map<String, String> lessons = dayEntry.getValue();
-
-                for (Map.Entry<String, String> lessonEntry : lessons.entrySet()) {
-                    saveSchedule(dayOfWeek, lessonEntry.getKey(), lessonEntry.getValue(), 0L);
-                }
-            }
+        initializeDefaultScheduleAsync().block();
+    }
 
-            log.info("✅ Инициализировано дефолтное расписание в Supabase");
+    public Mono<Void> initializeDefaultScheduleAsync() {
+        return metered("countLessons", repository.countLessons())
+                .flatMap(count -> {
+                    if (count > 0) {
+                        log.info("✅ В Supabase уже есть расписание ({} записей), пропускаем инициализацию", count);
+                        return Mono.<Void>empty();
+                    }
 
-        } catch (Exception e) {
-            log.error("❌ Ошибка инициализации дефолтного расписания в Supabase", e);
-        }
+                    log.info("🔄 Инициализация дефолтного расписания в Supabase...");
+                    return Flux.fromIterable(createDefaultSchedule().entrySet())
+                            .concatMap(day -> Flux.fromIterable(day.getValue().entrySet())
+                                    .concatMap(lesson -> saveScheduleAsync(day.getKey(), lesson.getKey(), lesson.getValue())))
+                            .then(Mono.<Void>fromRunnable(() -> log.info("✅ Инициализировано дефолтное расписание в Supabase")));
+                })
+                .onErrorResume(e -> {
+                    log.error("❌ Ошибка инициализации дефолтного расписания в Supabase", e);
+                    return Mono.empty();
+                });
     }
 
     private Map<DayOfWeek, Map<String, String>> createDefaultSchedule() {
@@ -210,169 +222,363 @@ public class SupabaseService {
 
     // === МЕТОДЫ ДЛЯ РАБОТЫ С ЗАПИСЯМИ ===
 
+    /**
+     * Запись с учетом мест: при свободном месте - обычная запись, иначе - в конец листа ожидания.
+     * Решение принимается по счетчику в памяти; Supabase запрашивается один раз на занятие, чтобы загрузить места.
+     * Для типа занятия без ограничения (lesson.capacity.* = 0) - то же, что registerUserAsync.
+     */
+    public Mono<SignupResult> signUpAsync(Long userId, String username, String displayName,
+                                          LocalDate lessonDate, String lessonType) {
+        if (seats.capacity(lessonType) <= 0) {
+            return register(userId, username, displayName, lessonDate, lessonType)
+                    .map(success -> success ? SignupResult.REGISTERED : SignupResult.ALREADY_REGISTERED)
+                    .onErrorResume(e -> {
+                        log.error("❌ Не удалось записать {} на {} {}", displayName, lessonDate, lessonType, e);
+                        return Mono.just(SignupResult.UNAVAILABLE);
+                    })
+                    .map(this::counted);
+        }
+
+        SeatLedger.Lesson lesson = seats.lesson(lessonDate, lessonType);
+        // Каждая попытка берет загрузку заново: неудачная сбрасывается и не отдается из кэша
+        return Mono.defer(() -> lesson.ready(() -> reconcileSeats(lessonDate)))
+                .retry(1)
+                .then(Mono.defer(() -> {
+                    if (lesson.isHolder(userId)) {
+                        return Mono.just(SignupResult.ALREADY_REGISTERED);
+                    }
+                    if (lesson.isWaitlisted(userId)) {
+                        return Mono.just(SignupResult.ALREADY_WAITLISTED);
+                    }
+                    if (!lesson.tryReserve()) {
+                        int position = lesson.enqueue(new RegistrationWriteBatcher.Registration(
+                                userId, username, displayName, lessonDate, lessonType));
+                        seats.waitlistChanged();
+                        log.info("⏳ Мест нет ({}/{}): {} в листе ожидания на {} {}, позиция {}",
+                                lesson.taken(), lesson.capacity(), displayName, lessonDate, lessonType, position);
+                        // Место могло освободиться между бронью и постановкой в лист
+                        promote(lesson);
+                        return Mono.just(position > 0 ? SignupResult.WAITLISTED : SignupResult.ALREADY_WAITLISTED);
+                    }
+                    return register(userId, username, displayName, lessonDate, lessonType)
+                            .doOnNext(success -> lesson.confirm(userId, success))
+                            .doOnError(e -> lesson.confirm(userId, false))
+                            .map(success -> success ? SignupResult.REGISTERED : SignupResult.ALREADY_REGISTERED);
+                }))
+                .onErrorResume(e -> {
+                    log.error("❌ Не удалось записать {} на {} {}: места или запись недоступны",
+                            displayName, lessonDate, lessonType, e);
+                    return Mono.just(SignupResult.UNAVAILABLE);
+                })
+                .map(this::counted);
+    }
+
+    private SignupResult counted(SignupResult result) {
+        signupCounters.get(result).increment();
+        return result;
+    }
+
+    /**
+     * Отдает освободившиеся места первым в листе ожидания. Запись идет обычным путем (пачка или журнал),
+     * о результате узнает слушатель onWaitlistPromotion - вне потоков пачки и Reactor.
+     */
+    private void promote(SeatLedger.Lesson lesson) {
+        if (!lesson.isLoaded()) {
+            return;
+        }
+        RegistrationWriteBatcher.Registration next = lesson.admitNext();
+        if (next == null) {
+            return;
+        }
+        seats.waitlistChanged();
+        registerUserAsync(next.userId(), next.username(), next.displayName(), next.lessonDate(), next.lessonType())
+                .publishOn(Schedulers.boundedElastic())
+                .subscribe(success -> {
+                    lesson.confirm(next.userId(), success);
+                    if (success) {
+                        promotedCounter.increment();
+                        log.info("🎉 {} переведен из листа ожидания на {} {}", next.displayName(),
+                                next.lessonDate(), next.lessonType());
+                        try {
+                            promotionListener.accept(next);
+                        } catch (Exception e) {
+                            log.error("❌ Ошибка уведомления о переводе из листа ожидания", e);
+                        }
+                    }
+                    promote(lesson);
+                });
+    }
+
+    /**
+     * Кого уведомить о переводе из листа ожидания в записавшиеся.
+     */
+    public void onWaitlistPromotion(Consumer<RegistrationWriteBatcher.Registration> listener) {
+        this.promotionListener = listener;
+    }
+
+    /**
+     * Имена в листе ожидания на занятие в порядке очереди.
+     */
+    public List<String> getWaitlist(LocalDate lessonDate, String lessonType) {
+        SeatLedger.Lesson lesson = seats.find(lessonDate, lessonType);
+        return lesson != null ? lesson.waitlistNames() : List.of();
+    }
+
+    /**
+     * Мест на занятии этого типа; 0 - без ограничения.
+     */
+    public int getCapacity(String lessonType) {
+        return seats.capacity(lessonType);
+    }
+
     public boolean registerUser(Long userId, String username, String displayName,
                                 LocalDate lessonDate, String lessonType) {
-        try {
-            String url = supabaseUrl + "/rest/v1/registrations";
-
-            Map<String, Object> data = new HashMap<>();
-            data.put("user_id", userId);
-            data.put("username", username);
-            data.put("display_name", displayName);
-            data.put("lesson_date", lessonDate.toString());
-            data.put("lesson_type", lessonType);
-
-            String response = webClient.post()
-                    .uri(url)
-                    .header("Prefer", "resolution=ignore-duplicates")
-                    .bodyValue(data)
-                    .retrieve()
-                    .bodyToMono(String.class)
-                    .block();
-
-            boolean success = response != null && !response.contains("error");
-            log.info("✅ Пользователь {} записан на {} {}", displayName, lessonDate, lessonType);
-            return success;
-
-        } catch (Exception e) {
-            log.error("❌ Ошибка регистрации пользователя", e);
-            return false;
-        }
+        return registerUserAsync(userId, username, displayName, lessonDate, lessonType).block();
+    }
+
+    public Mono<Boolean> registerUserAsync(Long userId, String username, String displayName,
+                                           LocalDate lessonDate, String lessonType) {
+        return register(userId, username, displayName, lessonDate, lessonType)
+                .onErrorResume(e -> {
+                    log.error("❌ Ошибка регистрации пользователя", e);
+                    return Mono.just(false);
+                });
+    }
+
+    /**
+     * Запись без перехвата ошибок: false - уже записан, ошибка - ни Supabase, ни журнал запись не приняли.
+     */
+    private Mono<Boolean> register(Long userId, String username, String displayName,
+                                   LocalDate lessonDate, String lessonType) {
+        RegistrationWriteBatcher.Registration registration = new RegistrationWriteBatcher.Registration(
+                userId, username, displayName, lessonDate, lessonType);
+        RegistrationWriteBatcher.RegistrationKey key = new RegistrationWriteBatcher.RegistrationKey(
+                userId, lessonDate, lessonType);
+
+        // Запись уходит в Supabase пачкой вместе с соседними нажатиями,
+        // а если Supabase не ответил вовремя - в локальный журнал
+        return metered("registerUser", Mono.defer(() -> {
+                    if (registrationJournal.hasPending(key)) {
+                        return journal(() -> registrationJournal.register(registration));
+                    }
+                    return Mono.fromFuture(() -> registrationBatcher.register(registration))
+                            .timeout(journalAckTimeout)
+                            .onErrorResume(e -> {
+                                log.warn("⚠️ Supabase не подтвердил запись ({}), сохраняем в журнал", e.toString());
+                                return journal(() -> registrationJournal.register(registration));
+                            });
+                }))
+                .doOnNext(success -> {
+                    if (success) {
+                        rosterCache.registered(lessonDate, lessonType, userId, displayName);
+                        log.info("✅ Пользователь {} записан на {} {}", displayName, lessonDate, lessonType);
+                    } else {
+                        log.info("ℹ️ Пользователь {} уже записан на {} {}", displayName, lessonDate, lessonType);
+                    }
+                });
     }
 
     public boolean cancelRegistration(Long userId, LocalDate lessonDate, String lessonType) {
-        try {
-            String url = supabaseUrl + "/rest/v1/registrations?user_id=eq." + userId +
-                    "&lesson_date=eq." + lessonDate + "&lesson_type=eq." + lessonType;
-
-            String response = webClient.delete()
-                    .uri(url)
-                    .retrieve()
-                    .bodyToMono(String.class)
-                    .block();
-
-            boolean success = response != null;
-            log.info("✅ Пользователь {} отменил запись на {} {}", userId, lessonDate, lessonType);
-            return success;
-
-        } catch (Exception e) {
-            log.error("❌ Ошибка отмены регистрации", e);
-            return false;
+        return cancelRegistrationAsync(userId, lessonDate, lessonType).block();
+    }
+
+    /**
+     * Отмена записи или выход из листа ожидания. Освободившееся место сразу отдается первому в листе.
+     */
+    public Mono<Boolean> cancelRegistrationAsync(Long userId, LocalDate lessonDate, String lessonType) {
+        RegistrationWriteBatcher.RegistrationKey key = new RegistrationWriteBatcher.RegistrationKey(
+                userId, lessonDate, lessonType);
+        SeatLedger.Lesson lesson = seats.find(lessonDate, lessonType);
+        if (lesson != null && lesson.leaveWaitlist(userId)) {
+            seats.waitlistChanged();
+            log.info("✅ Пользователь {} вышел из листа ожидания на {} {}", userId, lessonDate, lessonType);
+            return Mono.just(true);
         }
+
+        return metered("cancelRegistration", Mono.defer(() -> {
+                    if (registrationJournal.hasPending(key)) {
+                        return journal(() -> registrationJournal.cancel(userId, lessonDate, lessonType));
+                    }
+                    return Mono.fromFuture(() -> registrationBatcher.cancel(userId, lessonDate, lessonType))
+                            .timeout(journalAckTimeout)
+                            .onErrorResume(e -> {
+                                log.warn("⚠️ Supabase не подтвердил отмену ({}), сохраняем в журнал", e.toString());
+                                return journal(() -> registrationJournal.cancel(userId, lessonDate, lessonType));
+                            });
+                }))
+                .doOnNext(success -> {
+                    if (success) {
+                        rosterCache.cancelled(lessonDate, lessonType, userId);
+                        log.info("✅ Пользователь {} отменил запись на {} {}", userId, lessonDate, lessonType);
+                    } else {
+                        log.info("ℹ️ У пользователя {} нет записи на {} {}", userId, lessonDate, lessonType);
+                    }
+                })
+                .flatMap(success -> success && lesson != null
+                        ? releaseSeat(lesson, userId).thenReturn(true)
+                        : Mono.just(success))
+                .onErrorResume(e -> {
+                    log.error("❌ Ошибка отмены регистрации", e);
+                    return Mono.just(false);
+                });
     }
 
-    public Map<String, List<String>> getRegistrationsForDate(LocalDate date) {
-        Map<String, List<String>> registrations = new HashMap<>();
-        registrations.put("morning", new ArrayList<>());
-        registrations.put("evening", new ArrayList<>());
+    /**
+     * Освобождает место отменившего и отдает его листу ожидания - только по загруженным местам.
+     * После перезапуска лист ожидания восстановлен с диска, а счетчик еще пуст; без загрузки
+     * первая же отмена перевела бы из листа всех, пока счетчик не дойдет до capacity.
+     * Если загрузить места не удалось, отмена все равно состоялась - место вернет следующая сверка.
+     */
+    private Mono<Void> releaseSeat(SeatLedger.Lesson lesson, Long userId) {
+        LocalDate lessonDate = lesson.key().lessonDate();
+        return lesson.ready(() -> reconcileSeats(lessonDate))
+                .then(Mono.fromRunnable(() -> {
+                    lesson.released(userId);
+                    promote(lesson);
+                }))
+                .onErrorResume(e -> {
+                    log.warn("⚠️ Не удалось загрузить места на {} {}: {}", lessonDate,
+                            lesson.key().lessonType(), e.toString());
+                    return Mono.empty();
+                })
+                .then();
+    }
 
-        try {
-            String url = supabaseUrl + "/rest/v1/registrations?lesson_date=eq." + date + "&select=lesson_type,display_name&order=created_at";
+    /**
+     * Запись в журнал блокируется на fsync, поэтому выполняется вне потоков Reactor.
+     */
+    private static Mono<Boolean> journal(Callable<Boolean> append) {
+        return Mono.fromCallable(append).subscribeOn(Schedulers.boundedElastic());
+    }
 
-            String response = webClient.get()
-                    .uri(url)
-                    .retrieve()
-                    .bodyToMono(String.class)
-                    .block();
+    /**
+     * Пакеты пишет отдельный поток RegistrationWriteBatcher, журнал - свой поток отправки,
+     * поэтому оба могут дождаться ответа.
+     */
+    private class RegistrationSink implements RegistrationWriteBatcher.Sink {
 
-            JsonNode jsonNode = objectMapper.readTree(response);
+        @Override
+        public Set<RegistrationWriteBatcher.RegistrationKey> insert(List<RegistrationWriteBatcher.Registration> registrations) {
+            return repository.insertRegistrations(registrations).block();
+        }
 
-            if (jsonNode.isArray()) {
-                for (JsonNode node : jsonNode) {
-                    String lessonType = node.get("lesson_type").asText();
-                    String displayName = node.get("display_name").asText();
+        @Override
+        public Set<Long> delete(LocalDate lessonDate, String lessonType, List<Long> userIds) {
+            return repository.deleteRegistrations(lessonDate, lessonType, userIds).block();
+        }
+    }
 
-                    if (registrations.containsKey(lessonType)) {
-                        registrations.get(lessonType).add(displayName);
-                    }
-                }
-            }
+    public Map<String, List<String>> getRegistrationsForDate(LocalDate date) {
+        return getRegistrationsForDateAsync(date).block();
+    }
 
-            log.info("✅ Загружены записи на {}: утро={}, вечер={}",
-                    date, registrations.get("morning").size(), registrations.get("evening").size());
+    public Mono<Map<String, List<String>>> getRegistrationsForDateAsync(LocalDate date) {
+        return metered("getRegistrationsForDate", Mono.defer(() -> {
+            Map<String, List<String>> cached = rosterCache.getIfFresh(date, LESSON_TYPES);
+            if (cached != null) {
+                return Mono.just(cached);
+            }
 
-        } catch (Exception e) {
+            long stamp = rosterCache.writeStamp();
+            return loadRosters(date)
+                    .map(loaded -> rosterCache.store(date, LESSON_TYPES, loaded, stamp));
+        })).onErrorResume(e -> {
             log.error("❌ Ошибка получения записей на дату: {}", date, e);
+            Map<String, List<String>> registrations = new HashMap<>();
+            for (String lessonType : LESSON_TYPES) {
+                registrations.put(lessonType, new ArrayList<>());
+            }
+            return Mono.just(registrations);
+        });
+    }
+
+    /**
+     * Списки из Supabase с наложенными операциями журнала, еще не дошедшими до Supabase.
+     */
+    private Mono<Map<String, LinkedHashMap<Long, String>>> loadRosters(LocalDate date) {
+        return repository.loadRegistrationsForDate(date)
+                .map(loaded -> {
+                    registrationJournal.overlay(date, loaded);
+                    return loaded;
+                });
+    }
+
+    @Scheduled(cron = "0 5 0 * * ?", zone = "Europe/Moscow")
+    public void evictPastRosters() {
+        rosterCache.trim(LocalDate.now(ZoneId.of("Europe/Moscow")));
+    }
+
+    // === МЕСТА И ЛИСТЫ ОЖИДАНИЯ ===
+
+    /**
+     * Фоновая сверка счетчиков мест с таблицей registrations: записи и отмены в обход бота
+     * и операции, чей итог бот не узнал. Если места освободились - их получает лист ожидания.
+     */
+    @Scheduled(fixedDelayString = "${lesson.capacity.reconcile-interval-ms:60000}")
+    public void reconcileSeats() {
+        seats.trim(LocalDate.now(ZoneId.of("Europe/Moscow")));
+        for (LocalDate date : seats.dates()) {
+            reconcileSeats(date)
+                    .onErrorResume(e -> {
+                        log.warn("⚠️ Не удалось сверить места на {}: {}", date, e.toString());
+                        return Mono.empty();
+                    })
+                    .subscribe();
         }
+    }
 
-        return registrations;
+    private Mono<Void> reconcileSeats(LocalDate date) {
+        Consumer<Map<String, LinkedHashMap<Long, String>>> reconciliation = seats.reconciliation(date);
+        return metered("reconcileSeats", loadRosters(date).timeout(seatLoadTimeout))
+                .doOnNext(loaded -> {
+                    reconciliation.accept(loaded);
+                    seats.lessonsOn(date).forEach(this::promote);
+                })
+                .then();
+    }
+
+    @Scheduled(fixedDelay = 5000)
+    public void persistWaitlists() {
+        seats.persist();
     }
 
     // === МЕТОДЫ ДЛЯ РАБОТЫ С СООБЩЕНИЯМИ ===
 
     public void saveMessageId(Integer messageId, String lessonType, LocalDate lessonDate, String messageText) {
-        try {
-            String url = supabaseUrl + "/rest/v1/channel_messages";
-
-            Map<String, Object> data = new HashMap<>();
-            data.put("message_id", messageId);
-            data.put("lesson_type", lessonType);
-            data.put("lesson_date", lessonDate.toString());
-            data.put("message_text", messageText);
-
-            webClient.post()
-                    .uri(url)
-                    .header("Prefer", "resolution=merge-duplicates")
-                    .bodyValue(data)
-                    .retrieve()
-                    .bodyToMono(String.class)
-                    .doOnSuccess(response -> log.info("💾 Сохранен ID сообщения: {} для {} занятия на {}",
-                            messageId, lessonType, lessonDate))
-                    .doOnError(error -> log.error("❌ Ошибка сохранения ID сообщения", error))
-                    .block();
-
-        } catch (Exception e) {
-            log.error("❌ Ошибка сохранения ID сообщения в Supabase", e);
-        }
+        saveMessageIdAsync(messageId, lessonType, lessonDate, messageText).block();
     }
 
-    public List<Map<String, Object>> getMessagesForDeletion(LocalDate date, String lessonType) {
-        try {
-            String url = supabaseUrl + "/rest/v1/channel_messages?lesson_date=eq." + date +
-                    "&lesson_type=eq." + lessonType + "&select=message_id,message_text";
-
-            String response = webClient.get()
-                    .uri(url)
-                    .retrieve()
-                    .bodyToMono(String.class)
-                    .block();
-
-            JsonNode jsonNode = objectMapper.readTree(response);
-            List<Map<String, Object>> messages = new ArrayList<>();
-
-            if (jsonNode.isArray()) {
-                for (JsonNode node : jsonNode) {
-                    Map<String, Object> message = new HashMap<>();
-                    message.put("message_id", node.get("message_id").asInt());
-                    message.put("message_text", node.get("message_text").asText());
-                    messages.add(message);
-                }
-            }
+    public Mono<Void> saveMessageIdAsync(Integer messageId, String lessonType, LocalDate lessonDate, String messageText) {
+        return metered("saveMessageId", repository.saveMessageId(messageId, lessonType, lessonDate, messageText))
+                .onErrorResume(e -> {
+                    log.error("❌ Ошибка сохранения ID сообщения в Supabase", e);
+                    return Mono.empty();
+                });
+    }
 
-            return messages;
+    public List<Map<String, Object>> getMessagesForDeletion(LocalDate date, String lessonType) {
+        return getMessagesForDeletionAsync(date, lessonType).collectList().block();
+    }
 
-        } catch (Exception e) {
-            log.error("❌ Ошибка получения сообщений для удаления", e);
-            return new ArrayList<>();
-        }
+    public Flux<Map<String, Object>> getMessagesForDeletionAsync(LocalDate date, String lessonType) {
+        return callMetrics.flux(Tags.of("method", "getMessagesForDeletion"),
+                        repository.getMessagesForDeletion(date, lessonType))
+                .onErrorResume(e -> {
+                    log.error("❌ Ошибка получения сообщений для удаления", e);
+                    return Flux.empty();
+                });
     }
 
     public void deleteMessageRecord(Integer messageId, LocalDate date, String lessonType) {
-        try {
-            String url = supabaseUrl + "/rest/v1/channel_messages?message_id=eq." + messageId +
-                    "&lesson_date=eq." + date + "&lesson_type=eq." + lessonType;
-
-            webClient.delete()
-                    .uri(url)
-                    .retrieve()
-                    .bodyToMono(String.class)
-                    .doOnSuccess(response -> log.info("✅ Запись сообщения {} удалена из БД", messageId))
-                    .doOnError(error -> log.error("❌ Ошибка удаления записи сообщения", error))
-                    .block();
-
-        } catch (Exception e) {
-            log.error("❌ Ошибка удаления записи сообщения из Supabase", e);
-        }
+        deleteMessageRecordAsync(messageId, date, lessonType).block();
+    }
+
+    public Mono<Void> deleteMessageRecordAsync(Integer messageId, LocalDate date, String lessonType) {
+        return metered("deleteMessageRecord", repository.deleteMessageRecord(messageId, date, lessonType))
+                .onErrorResume(e -> {
+                    log.error("❌ Ошибка удаления записи сообщения из Supabase", e);
+                    return Mono.empty();
+                });
     }
 
     // === МЕТОДЫ ДЛЯ УПРАВЛЕНИЯ УВЕДОМЛЕНИЯМИ ===
@@ -381,129 +587,119 @@ public class SupabaseService {
      * Инициализация базы данных
      */
     public void initializeDatabase() {
-        try {
-            log.info("🔄 Инициализация базы данных Supabase...");
-            // Проверяем и создаем таблицы если нужно
-            initializeDefaultSchedule();
-            log.info("✅ База данных Supabase инициализирована");
-        } catch (Exception e) {
-            log.error("❌ Ошибка инициализации базы данных Supabase", e);
-        }
+        log.info("🔄 Инициализация базы данных Supabase...");
+        // Проверяем и создаем таблицы если нужно
+        initializeDefaultSchedule();
+        log.info("✅ База данных Supabase инициализирована");
     }
 
     /**
      * Получение статуса уведомлений в текстовом формате
      */
     public String getNotificationsStatus() {
-        try {
-            boolean enabled = areNotificationsEnabled();
-            return enabled ? "ВКЛЮЧЕНЫ ✅" : "ВЫКЛЮЧЕНЫ ❌";
-        } catch (Exception e) {
-            log.error("❌ Ошибка получения статуса уведомлений", e);
-            return "ОШИБКА ❌";
-        }
+        return areNotificationsEnabledAsync()
+                .map(enabled -> enabled ? "ВКЛЮЧЕНЫ ✅" : "ВЫКЛЮЧЕНЫ ❌")
+                .block();
     }
 
     /**
      * Принудительное включение уведомлений
      */
     public boolean forceEnableNotifications() {
-        return setNotificationsState(true);
+        return setNotificationsStateAsync(true).block();
     }
 
     /**
      * Принудительное выключение уведомлений
      */
     public boolean forceDisableNotifications() {
-        return setNotificationsState(false);
+        return setNotificationsStateAsync(false).block();
     }
 
     /**
      * Установка состояния уведомлений
      */
-    private boolean setNotificationsState(boolean enabled) {
-        try {
-            log.info("🔄 Установка состояния уведомлений: {}", enabled);
-
-            String url = supabaseUrl + "/rest/v1/bot_settings?on_conflict=id";
-
-            Map<String, Object> data = Map.of(
-                    "id", 1,
-                    "notifications_enabled", enabled,
-                    "updated_at", OffsetDateTime.now().toString()
-            );
-
-            // Используем Void.class вместо String.class для игнорирования ответа
-            webClient.post()
-                    .uri(url)
-                    .header("Prefer", "resolution=merge-duplicates")
-                    .bodyValue(data)
-                    .retrieve()
-                    .bodyToMono(Void.class) // Игнорируем ответ
-                    .block();
-
-            log.info("✅ Уведомления {} (запрос отправлен в Supabase)", enabled ? "ВЫКЛЮЧЕНЫ 🔕" : "ВКЛЮЧЕНЫ 🔔");
-            return true;
-
-        } catch (Exception e) {
-            log.error("❌ Ошибка установки состояния уведомлений: {}", e.getMessage());
-            return false;
-        }
+    public Mono<Boolean> setNotificationsStateAsync(boolean enabled) {
+        return metered("setNotificationsState", Mono.defer(() -> {
+                    log.info("🔄 Установка состояния уведомлений: {}", enabled);
+                    return repository.saveNotificationsState(enabled);
+                }))
+                .then(Mono.fromSupplier(() -> {
+                    settingsSnapshot.set(new SettingsSnapshot(enabled, System.nanoTime()));
+                    log.info("✅ Уведомления {} (запрос отправлен в Supabase)", enabled ? "ВЫКЛЮЧЕНЫ 🔕" : "ВКЛЮЧЕНЫ 🔔");
+                    return true;
+                }))
+                .onErrorResume(e -> {
+                    log.error("❌ Ошибка установки состояния уведомлений: {}", e.getMessage());
+                    return Mono.just(false);
+                });
     }
 
     /**
-     * Проверка включены ли уведомления
+     * Проверка включены ли уведомления.
+     * Значение берется из снимка в памяти, из БД - только после истечения TTL.
      */
     public boolean areNotificationsEnabled() {
-        try {
-            String url = supabaseUrl + "/rest/v1/bot_settings?id=eq.1&select=notifications_enabled";
-
-            String response = webClient.get()
-                    .uri(url)
-                    .retrieve()
-                    .bodyToMono(String.class)
-                    .onErrorReturn("[]") // При ошибке возвращаем пустой массив
-                    .block();
-
-            if (response != null && response.startsWith("[") && response.length() > 2) {
-                JsonNode jsonNode = objectMapper.readTree(response);
-                if (jsonNode.isArray() && jsonNode.size() > 0) {
-                    boolean enabled = jsonNode.get(0).get("notifications_enabled").asBoolean();
-                    log.info("✅ Статус уведомлений из БД: {}", enabled ? "ВКЛ" : "ВЫКЛ");
-                    return enabled;
-                }
-            }
+        return areNotificationsEnabledAsync().block();
+    }
 
-            log.info("📝 Запись не найдена, считаем уведомления ВКЛЮЧЕННЫМИ по умолчанию");
-            return true; // Значение по умолчанию
+    public Mono<Boolean> areNotificationsEnabledAsync() {
+        return metered("areNotificationsEnabled", Mono.defer(() -> {
+            SettingsSnapshot snapshot = settingsSnapshot.get();
+            if (snapshot != null && System.nanoTime() - snapshot.loadedAt() <= settingsTtlNanos) {
+                settingsHitCounter.increment();
+                return Mono.just(snapshot.notificationsEnabled());
+            }
 
-        } catch (Exception e) {
+            settingsMissCounter.increment();
+            return repository.fetchNotificationsEnabled()
+                    .doOnNext(enabled -> log.info("✅ Статус уведомлений из БД: {}", enabled ? "ВКЛ" : "ВЫКЛ"))
+                    .switchIfEmpty(Mono.fromSupplier(() -> {
+                        log.info("📝 Запись не найдена, считаем уведомления ВКЛЮЧЕННЫМИ по умолчанию");
+                        return true; // Значение по умолчанию
+                    }))
+                    .map(enabled -> {
+                        SettingsSnapshot loaded = new SettingsSnapshot(enabled, System.nanoTime());
+                        // Если за время запроса настройку изменили, оставляем записанное значение
+                        if (!settingsSnapshot.compareAndSet(snapshot, loaded)) {
+                            return settingsSnapshot.get().notificationsEnabled();
+                        }
+                        return enabled;
+                    });
+        })).onErrorResume(e -> {
             log.error("❌ Ошибка проверки настроек уведомлений: {}", e.getMessage());
-            return true; // Значение по умолчанию при ошибке
-        }
+            SettingsSnapshot snapshot = settingsSnapshot.get();
+            return Mono.just(snapshot != null ? snapshot.notificationsEnabled() : true); // Значение по умолчанию при ошибке
+        });
     }
 
     /**
      * Переключение уведомлений (старый метод для обратной совместимости)
      */
     public boolean toggleNotifications() {
-        try {
-            boolean currentState = areNotificationsEnabled();
-            boolean newState = !currentState;
-
-            boolean success = setNotificationsState(newState);
-
-            if (success) {
-                log.info("✅ Уведомления переключены: {} -> {}",
-                        currentState ? "ВКЛ" : "ВЫКЛ",
-                        newState ? "ВКЛ" : "ВЫКЛ");
-            }
+        return areNotificationsEnabledAsync()
+                .flatMap(currentState -> setNotificationsStateAsync(!currentState)
+                        .doOnNext(success -> {
+                            if (success) {
+                                log.info("✅ Уведомления переключены: {} -> {}",
+                                        currentState ? "ВКЛ" : "ВЫКЛ",
+                                        !currentState ? "ВКЛ" : "ВЫКЛ");
+                            }
+                        }))
+                .block();
+    }
 
-            return success;
+    /**
+     * Время и ошибки вызова - до onErrorResume, иначе ошибка уже превращена в значение по умолчанию.
+     */
+    private <T> Mono<T> metered(String method, Mono<T> call) {
+        return callMetrics.mono(Tags.of("method", method), call);
+    }
 
-        } catch (Exception e) {
-            log.error("❌ Ошибка переключения уведомлений: {}", e.getMessage());
-            return areNotificationsEnabled();
-        }
+    @PreDestroy
+    public void shutdown() {
+        seats.persist();
+        registrationBatcher.close();
+        registrationJournal.close();
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,178 @@
+package org.example.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.telegram.telegrambots.meta.exceptions.TelegramApiException;
+import org.telegram.telegrambots.meta.exceptions.TelegramApiRequestException;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Ограничитель исходящих запросов к Telegram Bot API.
+ * Token bucket на весь бот и на каждый чат, учитывает retry_after из ответов 429.
+ */
+@Service
+public class TelegramRateLimiter {
+
+    private static final Logger log = LoggerFactory.getLogger(TelegramRateLimiter.class);
+
+    private static final long IDLE_BUCKET_NANOS = TimeUnit.MINUTES.toNanos(5);
+
+    private final TokenBucket globalBucket;
+    private final Map<String, TokenBucket> chatBuckets = new ConcurrentHashMap<>();
+
+    private final double privateChatPerSecond;
+    private final double groupPerMinute;
+    private final int groupBurst;
+    private final int maxRetries;
+
+    private final Timer waitTimer;
+    private final Counter throttledCounter;
+
+    public TelegramRateLimiter(MeterRegistry meterRegistry,
+                               @Value("${telegram.rate.global-per-second:30}") double globalPerSecond,
+                               @Value("${telegram.rate.private-chat-per-second:1}") double privateChatPerSecond,
+                               @Value("${telegram.rate.group-per-minute:20}") double groupPerMinute,
+                               @Value("${telegram.rate.group-burst:3}") int groupBurst,
+                               @Value("${telegram.rate.max-retries:3}") int maxRetries) {
+        this.globalBucket = new TokenBucket(globalPerSecond, globalPerSecond);
+        this.privateChatPerSecond = privateChatPerSecond;
+        this.groupPerMinute = groupPerMinute;
+        this.groupBurst = groupBurst;
+        this.maxRetries = maxRetries;
+
+        this.waitTimer = Timer.builder("telegram.limiter.wait")
+                .description("Ожидание разрешения ограничителя перед запросом к Telegram")
+                .register(meterRegistry);
+        this.throttledCounter = Counter.builder("telegram.limiter.throttled")
+                .description("Ответы 429 Too Many Requests от Telegram")
+                .register(meterRegistry);
+    }
+
+    @FunctionalInterface
+    public interface TelegramCall<T> {
+        T call() throws TelegramApiException;
+    }
+
+    /**
+     * Выполняет запрос, дождавшись токенов глобального лимита и лимита чата.
+     * chatId может быть null для методов, не отправляющих сообщения в чат.
+     * При 429 ждет retry_after и повторяет запрос.
+     */
+    public <T> T execute(String chatId, TelegramCall<T> call) throws TelegramApiException {
+        TokenBucket chatBucket = chatId != null ? chatBuckets.computeIfAbsent(chatId, this::newChatBucket) : null;
+
+        for (int attempt = 0; ; attempt++) {
+            acquire(chatBucket);
+            try {
+                return call.call();
+            } catch (TelegramApiRequestException e) {
+                Integer retryAfter = retryAfterSeconds(e);
+                if (retryAfter == null || attempt >= maxRetries) {
+                    throw e;
+                }
+
+                throttledCounter.increment();
+                log.warn("⏳ Telegram просит подождать {} с (чат {}), попытка {}", retryAfter, chatId, attempt + 1);
+                long until = System.nanoTime() + TimeUnit.SECONDS.toNanos(retryAfter);
+                (chatBucket != null ? chatBucket : globalBucket).pauseUntil(until);
+            }
+        }
+    }
+
+    private void acquire(TokenBucket chatBucket) {
+        long now = System.nanoTime();
+        long wait = globalBucket.reserve(now);
+        if (chatBucket != null) {
+            wait = Math.max(wait, chatBucket.reserve(now));
+        }
+
+        waitTimer.record(wait, TimeUnit.NANOSECONDS);
+        if (wait > 0) {
+            long deadline = now + wait;
+            long remaining;
+            while ((remaining = deadline - System.nanoTime()) > 0) {
+                LockSupport.parkNanos(this, remaining);
+            }
+        }
+    }
+
+    private TokenBucket newChatBucket(String chatId) {
+        // Отрицательные id и @username - группы и каналы: 20 сообщений в минуту
+        boolean group = chatId.startsWith("-") || chatId.startsWith("@");
+        return group
+                ? new TokenBucket(groupPerMinute / 60.0, groupBurst)
+                : new TokenBucket(privateChatPerSecond, 1);
+    }
+
+    private static Integer retryAfterSeconds(TelegramApiRequestException e) {
+        if (e.getErrorCode() == null || e.getErrorCode() != 429) {
+            return null;
+        }
+        if (e.getParameters() != null && e.getParameters().getRetryAfter() != null) {
+            return e.getParameters().getRetryAfter();
+        }
+        return 1;
+    }
+
+    @Scheduled(fixedDelay = 60000)
+    public void evictIdleBuckets() {
+        long now = System.nanoTime();
+        chatBuckets.values().removeIf(bucket -> bucket.idleFor(now) > IDLE_BUCKET_NANOS);
+    }
+
+    /**
+     * Token bucket с резервированием: запрос может уйти в минус
+     * и тогда получает время ожидания до своей очереди.
+     */
+    static final class TokenBucket {
+        private final double permitsPerNano;
+        private final double capacity;
+
+        private double tokens;
+        private long lastRefill;
+        private long blockedUntil;
+
+        TokenBucket(double permitsPerSecond, double capacity) {
+            this.permitsPerNano = permitsPerSecond / TimeUnit.SECONDS.toNanos(1);
+            this.capacity = capacity;
+            this.tokens = capacity;
+            this.lastRefill = System.nanoTime();
+            this.blockedUntil = lastRefill;
+        }
+
+        synchronized long reserve(long now) {
+            refill(now);
+            tokens -= 1;
+            long wait = tokens >= 0 ? 0 : (long) Math.ceil(-tokens / permitsPerNano);
+            return Math.max(wait, blockedUntil - now);
+        }
+
+        synchronized void pauseUntil(long until) {
+            if (until - blockedUntil > 0) {
+                blockedUntil = until;
+            }
+        }
+
+        synchronized long idleFor(long now) {
+            return now - lastRefill;
+        }
+
+        private void refill(long now) {
+            long elapsed = now - lastRefill;
+            if (elapsed > 0) {
+                tokens = Math.min(capacity, tokens + elapsed * permitsPerNano);
+                lastRefill = now;
+            }
+        }
+    }
+}
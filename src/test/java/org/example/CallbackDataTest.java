@@ -0,0 +1,73 @@
+package org.example;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.DayOfWeek;
+import java.time.LocalDate;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class CallbackDataTest {
+
+    private static final LocalDate DATE = LocalDate.of(2025, 10, 13);
+
+    @Test
+    void lessonButtonRoundTrip() {
+        String data = CallbackData.lesson(CallbackData.SIGNUP, "evening", DATE);
+        assertEquals(11, data.length());
+
+        long decoded = CallbackData.decode(data);
+        assertEquals(CallbackData.SIGNUP, CallbackData.opcode(decoded));
+        assertEquals("evening", CallbackData.lessonType(decoded));
+        assertEquals(DATE, CallbackData.lessonDate(decoded));
+        assertNull(CallbackData.dayOfWeek(decoded));
+    }
+
+    @Test
+    void scheduleButtonRoundTrip() {
+        long decoded = CallbackData.decode(CallbackData.schedule(CallbackData.DELETE, "morning", DayOfWeek.SUNDAY));
+        assertEquals(CallbackData.DELETE, CallbackData.opcode(decoded));
+        assertEquals("morning", CallbackData.lessonType(decoded));
+        assertEquals(DayOfWeek.SUNDAY, CallbackData.dayOfWeek(decoded));
+
+        assertEquals(CallbackData.BACK_TO_MAIN, CallbackData.opcode(CallbackData.decode(CallbackData.of(CallbackData.BACK_TO_MAIN))));
+    }
+
+    @Test
+    void legacyLessonButtonsDecodeLikeCompactOnes() {
+        assertEquals(CallbackData.decode(CallbackData.lesson(CallbackData.SIGNUP, "morning", DATE)),
+                CallbackData.decode("signup_morning_2025-10-13"));
+        assertEquals(CallbackData.decode(CallbackData.lesson(CallbackData.CANCEL, "evening", DATE)),
+                CallbackData.decode("cancel_evening_2025-10-13"));
+    }
+
+    @Test
+    void legacyScheduleButtonsDecodeLikeCompactOnes() {
+        assertEquals(CallbackData.decode(CallbackData.schedule(CallbackData.SCHEDULE, "evening", null)),
+                CallbackData.decode("schedule_evening"));
+        assertEquals(CallbackData.decode(CallbackData.schedule(CallbackData.DAY, "morning", DayOfWeek.MONDAY)),
+                CallbackData.decode("day_MONDAY_morning"));
+        assertEquals(CallbackData.decode(CallbackData.schedule(CallbackData.EDIT, "evening", DayOfWeek.FRIDAY)),
+                CallbackData.decode("edit_FRIDAY_evening"));
+        assertEquals(CallbackData.decode(CallbackData.schedule(CallbackData.DELETE, "morning", DayOfWeek.SUNDAY)),
+                CallbackData.decode("delete_SUNDAY_morning"));
+        assertEquals(CallbackData.BACK_TO_SCHEDULE, CallbackData.opcode(CallbackData.decode("back_to_schedule")));
+        assertEquals(CallbackData.BACK_TO_MAIN, CallbackData.opcode(CallbackData.decode("back_to_main")));
+    }
+
+    @Test
+    void malformedDataIsInvalid() {
+        for (String data : new String[]{null, "", "~", "~AAAAAAAAAA", "~AAAA", "~!!!!!!!!!!",
+                "signup_morning", "signup_noon_2025-10-13", "signup_morning_2025-13-45",
+                "day_FUNDAY_morning", "day_MONDAY", "schedule", "unknown_button"}) {
+            assertEquals(CallbackData.INVALID, CallbackData.decode(data), String.valueOf(data));
+        }
+        assertEquals("unknown", CallbackData.kind(CallbackData.INVALID));
+    }
+
+    @Test
+    void unknownOpcodeCannotBeEncoded() {
+        assertThrows(IllegalArgumentException.class, () -> CallbackData.of(CallbackData.OPCODES));
+        assertThrows(IllegalArgumentException.class, () -> CallbackData.lesson(CallbackData.SIGNUP, "noon", DATE));
+    }
+}
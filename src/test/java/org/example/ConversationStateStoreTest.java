@@ -0,0 +1,63 @@
+package org.example;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Path;
+import java.time.DayOfWeek;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ConversationStateStoreTest {
+
+    @TempDir
+    Path dataDir;
+
+    private ConversationStateStore store(long ttlMinutes, int maxEntries) {
+        return new ConversationStateStore(new SimpleMeterRegistry(), ttlMinutes, maxEntries, true, dataDir.toString());
+    }
+
+    @Test
+    void statesSurviveRestart() {
+        ConversationStateStore first = store(30, 10);
+        first.put(1L, new ConversationState.EditingLesson(DayOfWeek.TUESDAY, "evening"));
+        first.put(2L, new ConversationState.EditingLesson(DayOfWeek.SUNDAY, "morning"));
+        first.remove(2L);
+        first.persist();
+
+        ConversationStateStore second = store(30, 10);
+        second.load();
+
+        assertEquals(new ConversationState.EditingLesson(DayOfWeek.TUESDAY, "evening"), second.get(1L));
+        assertNull(second.get(2L));
+    }
+
+    @Test
+    void expiredStatesAreNotReturnedOrRestored() {
+        ConversationStateStore first = store(0, 10);
+        first.put(1L, new ConversationState.EditingLesson(DayOfWeek.MONDAY, "morning"));
+        assertNull(first.get(1L));
+
+        first.put(2L, new ConversationState.EditingLesson(DayOfWeek.MONDAY, "morning"));
+        first.persist();
+        ConversationStateStore second = store(30, 10);
+        second.load();
+        assertNull(second.get(2L));
+    }
+
+    @Test
+    void fullStoreEvictsStateExpiringFirst() throws InterruptedException {
+        ConversationStateStore store = store(30, 2);
+        store.put(1L, new ConversationState.EditingLesson(DayOfWeek.MONDAY, "morning"));
+        // Разные моменты истечения: иначе вытесняемый определяется порядком обхода карты
+        Thread.sleep(5);
+        store.put(2L, new ConversationState.EditingLesson(DayOfWeek.TUESDAY, "morning"));
+        Thread.sleep(5);
+        store.put(3L, new ConversationState.EditingLesson(DayOfWeek.WEDNESDAY, "morning"));
+
+        assertNull(store.get(1L));
+        assertNotNull(store.get(2L));
+        assertNotNull(store.get(3L));
+    }
+}
@@ -0,0 +1,88 @@
+package org.example;
+
+import org.junit.jupiter.api.Test;
+import org.telegram.telegrambots.meta.api.methods.BotApiMethod;
+import org.telegram.telegrambots.meta.api.methods.send.SendMessage;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class InlineReplyTest {
+
+    private static final SendMessage REPLY = new SendMessage("1", "✅ Вы записаны");
+
+    @Test
+    void replyOfferedBeforeTimeoutGoesToController() throws Exception {
+        InlineReply reply = new InlineReply();
+        CountDownLatch offered = new CountDownLatch(1);
+        Thread worker = new Thread(() -> {
+            assertTrue(reply.offer(REPLY));
+            offered.countDown();
+        });
+        worker.start();
+
+        assertSame(REPLY, reply.await(1_000));
+        assertTrue(offered.await(1, TimeUnit.SECONDS));
+    }
+
+    @Test
+    void lateReplyIsLeftToWorker() {
+        InlineReply reply = new InlineReply();
+
+        assertNull(reply.await(20));
+        assertFalse(reply.offer(REPLY));
+    }
+
+    @Test
+    void zeroTimeoutTakesReplyThatIsAlreadyReady() {
+        InlineReply reply = new InlineReply();
+        assertTrue(reply.offer(REPLY));
+
+        assertSame(REPLY, reply.await(0));
+    }
+
+    @Test
+    void handlerWithoutReplyReleasesControllerAtOnce() {
+        InlineReply reply = new InlineReply();
+        assertTrue(reply.offer(null));
+
+        long start = System.nanoTime();
+        assertNull(reply.await(1_000));
+        assertTrue(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start) < 500);
+    }
+
+    /**
+     * Воркер и контроллер сходятся в один момент: ответ должен уйти ровно одним путем -
+     * либо в теле webhook-ответа, либо отдельным запросом, но не оба раза и не ни разу.
+     */
+    @Test
+    void replyIsDeliveredExactlyOnceWhenOfferRacesAbandon() throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        try {
+            for (int i = 0; i < 2_000; i++) {
+                InlineReply reply = new InlineReply();
+                CyclicBarrier start = new CyclicBarrier(2);
+                Future<Boolean> offered = executor.submit(() -> {
+                    start.await();
+                    return reply.offer(REPLY);
+                });
+                Future<BotApiMethod<?>> awaited = executor.submit(() -> {
+                    start.await();
+                    return reply.await(0);
+                });
+
+                boolean sentInline = awaited.get(1, TimeUnit.SECONDS) != null;
+                boolean sentByWorker = !offered.get(1, TimeUnit.SECONDS);
+                assertTrue(sentInline ^ sentByWorker, "итерация " + i);
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+}
@@ -0,0 +1,141 @@
+package org.example;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.example.service.InMemorySupabaseRepository;
+import org.example.service.SupabaseService;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.telegram.telegrambots.meta.api.methods.updatingmessages.EditMessageReplyMarkup;
+
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SignupCounterUpdaterTest {
+
+    private static final LocalDate TODAY = LocalDate.now(ZoneId.of("Europe/Moscow"));
+    private static final LocalDate TOMORROW = TODAY.plusDays(1);
+
+    @TempDir
+    Path dataDir;
+
+    private final List<EditMessageReplyMarkup> edits = new CopyOnWriteArrayList<>();
+    private SupabaseService supabaseService;
+
+    private SignupCounterUpdater updater(long debounceMs, long minIntervalMs) {
+        SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+        supabaseService = new SupabaseService(new InMemorySupabaseRepository(),
+                0, 50, 60_000, 64, 30_000, 1_500, 60_000, 0, 0, 3_000, dataDir.toString(), meterRegistry);
+        return new SignupCounterUpdater(supabaseService, edits::add, true, debounceMs, minIntervalMs,
+                dataDir.toString(), meterRegistry);
+    }
+
+    @AfterEach
+    void tearDown() {
+        if (supabaseService != null) {
+            supabaseService.shutdown();
+        }
+    }
+
+    private void signUp(long userId, LocalDate date) {
+        assertTrue(supabaseService.registerUser(userId, "user" + userId, "@user" + userId, date, "morning"));
+    }
+
+    private static String signupText(EditMessageReplyMarkup edit) {
+        return edit.getReplyMarkup().getKeyboard().get(0).get(0).getText();
+    }
+
+    private void awaitEdits(int count) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 5_000;
+        while (edits.size() < count && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        assertEquals(count, edits.size());
+    }
+
+    @Test
+    void todayPostIsNotTouchedWhenTomorrowChanges() throws InterruptedException {
+        SignupCounterUpdater updater = updater(0, 0);
+        // saveMessageInfo пишет сегодняшнюю отбивку в channel_messages под завтрашней датой
+        supabaseService.saveMessageId(10, "morning", TOMORROW, "🌅 Сегодняшняя утренняя практика");
+        updater.posted(10, SignupCounterUpdater.markup("morning", TODAY, 0, 0));
+        updater.posted(11, SignupCounterUpdater.markup("morning", TOMORROW, 0, 0));
+
+        signUp(1, TOMORROW);
+        updater.changed(TOMORROW, "morning");
+
+        awaitEdits(1);
+        Thread.sleep(100);
+        assertEquals(1, edits.size());
+        assertEquals(11, edits.get(0).getMessageId());
+        assertEquals("✅ Записаться (1)", signupText(edits.get(0)));
+    }
+
+    @Test
+    void changesInsideWindowAreCoalescedIntoOneEdit() throws InterruptedException {
+        SignupCounterUpdater updater = updater(200, 0);
+        updater.posted(11, SignupCounterUpdater.markup("morning", TOMORROW, 0, 0));
+
+        for (long userId = 1; userId <= 5; userId++) {
+            signUp(userId, TOMORROW);
+            updater.changed(TOMORROW, "morning");
+        }
+
+        awaitEdits(1);
+        Thread.sleep(300);
+        assertEquals(1, edits.size());
+        assertEquals("✅ Записаться (5)", signupText(edits.get(0)));
+    }
+
+    @Test
+    void nextEditWaitsForMinimumInterval() throws InterruptedException {
+        SignupCounterUpdater updater = updater(0, 500);
+        updater.posted(11, SignupCounterUpdater.markup("morning", TOMORROW, 0, 0));
+        signUp(1, TOMORROW);
+        updater.changed(TOMORROW, "morning");
+        awaitEdits(1);
+        long firstEditAt = System.nanoTime();
+
+        signUp(2, TOMORROW);
+        updater.changed(TOMORROW, "morning");
+        awaitEdits(2);
+
+        assertTrue(System.nanoTime() - firstEditAt >= 400_000_000L);
+        assertEquals("✅ Записаться (2)", signupText(edits.get(1)));
+    }
+
+    @Test
+    void unchangedCountIsNotEdited() throws InterruptedException {
+        SignupCounterUpdater updater = updater(0, 0);
+        updater.posted(11, SignupCounterUpdater.markup("morning", TOMORROW, 0, 0));
+        signUp(1, TOMORROW);
+        updater.changed(TOMORROW, "morning");
+        awaitEdits(1);
+
+        updater.changed(TOMORROW, "morning");
+        Thread.sleep(200);
+        assertEquals(1, edits.size());
+    }
+
+    @Test
+    void postedMessagesSurviveRestart() throws InterruptedException {
+        SignupCounterUpdater first = updater(0, 0);
+        first.posted(11, SignupCounterUpdater.markup("morning", TOMORROW, 0, 0));
+        first.posted(12, SignupCounterUpdater.markup("morning", TODAY.minusDays(1), 0, 0));
+        first.persist();
+        supabaseService.shutdown();
+
+        SignupCounterUpdater second = updater(0, 0);
+        second.load();
+        signUp(1, TOMORROW);
+        second.changed(TOMORROW, "morning");
+
+        awaitEdits(1);
+        assertEquals(11, edits.get(0).getMessageId());
+    }
+}
@@ -0,0 +1,136 @@
+package org.example;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class UpdateDeduplicatorTest {
+
+    @TempDir
+    Path dataDir;
+
+    private UpdateDeduplicator deduplicator() {
+        return deduplicator(new SimpleMeterRegistry());
+    }
+
+    private UpdateDeduplicator deduplicator(SimpleMeterRegistry meterRegistry) {
+        return new UpdateDeduplicator(meterRegistry, dataDir.toString(), 1_000_000);
+    }
+
+    @Test
+    void rejectsDuplicateInsideWindow() {
+        UpdateDeduplicator deduplicator = deduplicator();
+
+        assertTrue(deduplicator.markIfNew(100));
+        assertTrue(deduplicator.markIfNew(98));
+        assertFalse(deduplicator.markIfNew(100));
+        assertFalse(deduplicator.markIfNew(98));
+    }
+
+    @Test
+    void forgottenUpdateIsAcceptedAgain() {
+        UpdateDeduplicator deduplicator = deduplicator();
+
+        assertTrue(deduplicator.markIfNew(100));
+        deduplicator.forget(100);
+        assertTrue(deduplicator.markIfNew(100));
+    }
+
+    @Test
+    void singleStaleIdInsideStreamIsDroppedAndWindowKept() {
+        SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+        UpdateDeduplicator deduplicator = deduplicator(meterRegistry);
+
+        for (long id = 10_000; id <= 10_010; id++) {
+            assertTrue(deduplicator.markIfNew(id));
+        }
+        assertFalse(deduplicator.markIfNew(100));
+        assertEquals(10_010, deduplicator.getHighWater());
+
+        assertTrue(deduplicator.markIfNew(10_011));
+        assertFalse(deduplicator.markIfNew(10_005));
+        assertFalse(deduplicator.markIfNew(100));
+        assertEquals(2, meterRegistry.counter("webhook.updates.stale").count());
+        assertEquals(1, meterRegistry.counter("webhook.updates.duplicate").count());
+    }
+
+    @Test
+    void consecutiveLowIdsStartNewSequence() {
+        UpdateDeduplicator deduplicator = deduplicator();
+
+        assertTrue(deduplicator.markIfNew(100_000));
+        assertFalse(deduplicator.markIfNew(5));
+        assertFalse(deduplicator.markIfNew(6));
+        assertTrue(deduplicator.markIfNew(7));
+        assertEquals(7, deduplicator.getHighWater());
+        assertTrue(deduplicator.markIfNew(8));
+        assertFalse(deduplicator.markIfNew(7));
+    }
+
+    @Test
+    void lowIdsInterruptedByNormalStreamDoNotReset() {
+        UpdateDeduplicator deduplicator = deduplicator();
+
+        assertTrue(deduplicator.markIfNew(100_000));
+        assertFalse(deduplicator.markIfNew(5));
+        assertFalse(deduplicator.markIfNew(6));
+        assertTrue(deduplicator.markIfNew(100_001));
+        assertFalse(deduplicator.markIfNew(7));
+        assertEquals(100_001, deduplicator.getHighWater());
+    }
+
+    @Test
+    void gapBeyondResetGapStartsNewSequenceAtOnce() {
+        UpdateDeduplicator deduplicator = deduplicator();
+
+        assertTrue(deduplicator.markIfNew(5_000_000));
+        assertTrue(deduplicator.markIfNew(5));
+        assertEquals(5, deduplicator.getHighWater());
+        assertTrue(deduplicator.markIfNew(6));
+        assertFalse(deduplicator.markIfNew(5));
+    }
+
+    @Test
+    void stateSurvivesRestart() {
+        UpdateDeduplicator first = deduplicator();
+        first.markIfNew(700);
+        first.markIfNew(702);
+        first.persist();
+
+        UpdateDeduplicator second = deduplicator();
+        second.load();
+
+        assertEquals(702, second.getHighWater());
+        assertFalse(second.markIfNew(700));
+        assertTrue(second.markIfNew(701));
+    }
+
+    @Test
+    void snapshotOlderThanRedeliveryHorizonIsIgnored() throws IOException {
+        try (DataOutputStream out = new DataOutputStream(Files.newOutputStream(dataDir.resolve("update-dedup.bin")))) {
+            out.writeInt(2);
+            out.writeLong(System.currentTimeMillis() - Duration.ofHours(25).toMillis());
+            out.writeLong(702);
+            out.writeInt(64);
+            for (int i = 0; i < 64; i++) {
+                out.writeLong(-1L);
+            }
+        }
+
+        UpdateDeduplicator deduplicator = deduplicator();
+        deduplicator.load();
+
+        assertEquals(-1, deduplicator.getHighWater());
+        assertTrue(deduplicator.markIfNew(700));
+    }
+}
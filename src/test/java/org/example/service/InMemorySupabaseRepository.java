@@ -0,0 +1,112 @@
+package org.example.service;
+
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.time.DayOfWeek;
+import java.time.LocalDate;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Хранилище в памяти для тестов: отвечает сразу, channel_messages хранит как есть.
+ */
+public final class InMemorySupabaseRepository implements SupabaseRepository {
+
+    private final Map<DayOfWeek, Map<String, String>> lessons = new ConcurrentHashMap<>();
+    private final Map<RegistrationWriteBatcher.RegistrationKey, RegistrationWriteBatcher.Registration> registrations =
+            Collections.synchronizedMap(new LinkedHashMap<>());
+    private final List<Map<String, Object>> messages = Collections.synchronizedList(new ArrayList<>());
+    private volatile boolean notificationsEnabled = true;
+
+    @Override
+    public Mono<Void> saveSchedule(DayOfWeek dayOfWeek, String lessonType, String description) {
+        lessons.computeIfAbsent(dayOfWeek, k -> new ConcurrentHashMap<>()).put(lessonType, description);
+        return Mono.empty();
+    }
+
+    @Override
+    public Mono<Map<DayOfWeek, Map<String, String>>> loadSchedule() {
+        Map<DayOfWeek, Map<String, String>> copy = new HashMap<>();
+        lessons.forEach((day, byType) -> copy.put(day, new HashMap<>(byType)));
+        return Mono.just(copy);
+    }
+
+    @Override
+    public Mono<Integer> countLessons() {
+        return Mono.just(lessons.values().stream().mapToInt(Map::size).sum());
+    }
+
+    @Override
+    public Mono<Set<RegistrationWriteBatcher.RegistrationKey>> insertRegistrations(
+            List<RegistrationWriteBatcher.Registration> batch) {
+        Set<RegistrationWriteBatcher.RegistrationKey> inserted = new HashSet<>();
+        for (RegistrationWriteBatcher.Registration r : batch) {
+            RegistrationWriteBatcher.RegistrationKey key =
+                    new RegistrationWriteBatcher.RegistrationKey(r.userId(), r.lessonDate(), r.lessonType());
+            if (registrations.putIfAbsent(key, r) == null) {
+                inserted.add(key);
+            }
+        }
+        return Mono.just(inserted);
+    }
+
+    @Override
+    public Mono<Set<Long>> deleteRegistrations(LocalDate lessonDate, String lessonType, List<Long> userIds) {
+        Set<Long> deleted = new HashSet<>();
+        for (Long userId : userIds) {
+            if (registrations.remove(new RegistrationWriteBatcher.RegistrationKey(userId, lessonDate, lessonType)) != null) {
+                deleted.add(userId);
+            }
+        }
+        return Mono.just(deleted);
+    }
+
+    @Override
+    public Mono<Map<String, LinkedHashMap<Long, String>>> loadRegistrationsForDate(LocalDate date) {
+        Map<String, LinkedHashMap<Long, String>> result = new HashMap<>();
+        for (String lessonType : LESSON_TYPES) {
+            result.put(lessonType, new LinkedHashMap<>());
+        }
+        synchronized (registrations) {
+            for (RegistrationWriteBatcher.Registration r : registrations.values()) {
+                if (r.lessonDate().equals(date) && result.containsKey(r.lessonType())) {
+                    result.get(r.lessonType()).put(r.userId(), r.displayName());
+                }
+            }
+        }
+        return Mono.just(result);
+    }
+
+    @Override
+    public Mono<Void> saveMessageId(Integer messageId, String lessonType, LocalDate lessonDate, String messageText) {
+        messages.add(Map.of("message_id", messageId, "lesson_type", lessonType,
+                "lesson_date", lessonDate, "message_text", messageText));
+        return Mono.empty();
+    }
+
+    @Override
+    public Flux<Map<String, Object>> getMessagesForDeletion(LocalDate date, String lessonType) {
+        synchronized (messages) {
+            return Flux.fromIterable(messages.stream()
+                    .filter(m -> m.get("lesson_date").equals(date) && m.get("lesson_type").equals(lessonType))
+                    .toList());
+        }
+    }
+
+    @Override
+    public Mono<Void> deleteMessageRecord(Integer messageId, LocalDate date, String lessonType) {
+        return Mono.empty();
+    }
+
+    @Override
+    public Mono<Boolean> fetchNotificationsEnabled() {
+        return Mono.just(notificationsEnabled);
+    }
+
+    @Override
+    public Mono<Void> saveNotificationsState(boolean enabled) {
+        notificationsEnabled = enabled;
+        return Mono.empty();
+    }
+}
@@ -0,0 +1,196 @@
+package org.example.service;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDate;
+import java.util.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class RegistrationJournalTest {
+
+    private static final LocalDate DATE = LocalDate.of(2030, 1, 7);
+
+    @TempDir
+    Path dataDir;
+
+    /**
+     * Sink, запоминающий отправленные операции; с failAfter >= 0 падает, отправив столько операций.
+     */
+    private static final class RecordingSink implements RegistrationWriteBatcher.Sink {
+        final List<String> sent = new ArrayList<>();
+        int failAfter = -1;
+
+        @Override
+        public Set<RegistrationWriteBatcher.RegistrationKey> insert(List<RegistrationWriteBatcher.Registration> registrations) {
+            check();
+            registrations.forEach(r -> sent.add("register " + r.userId()));
+            return Set.of();
+        }
+
+        @Override
+        public Set<Long> delete(LocalDate lessonDate, String lessonType, List<Long> userIds) {
+            check();
+            userIds.forEach(userId -> sent.add("cancel " + userId));
+            return Set.of();
+        }
+
+        private void check() {
+            if (failAfter >= 0 && sent.size() >= failAfter) {
+                throw new IllegalStateException("Supabase недоступен");
+            }
+        }
+    }
+
+    private Path file() {
+        return dataDir.resolve("registrations.journal");
+    }
+
+    private RegistrationJournal open(RegistrationWriteBatcher.Sink sink) throws IOException {
+        // Фоновая отправка раз в час не мешает: тесты вызывают replay() сами
+        return new RegistrationJournal(file(), sink, 0, 3_600_000, new SimpleMeterRegistry());
+    }
+
+    private static RegistrationWriteBatcher.Registration registration(long userId) {
+        return new RegistrationWriteBatcher.Registration(userId, "user" + userId, "@user" + userId, DATE, "morning");
+    }
+
+    private static RegistrationWriteBatcher.RegistrationKey key(long userId) {
+        return new RegistrationWriteBatcher.RegistrationKey(userId, DATE, "morning");
+    }
+
+    /**
+     * Номера записей файла по порядку; формат записи: [длина][CRC32][тип][seq]...
+     */
+    private List<Long> seqs() throws IOException {
+        List<Long> seqs = new ArrayList<>();
+        ByteBuffer buffer = ByteBuffer.wrap(Files.readAllBytes(file()));
+        while (buffer.remaining() >= Integer.BYTES * 2) {
+            int length = buffer.getInt();
+            buffer.getInt();
+            int start = buffer.position();
+            buffer.get();
+            seqs.add(buffer.getLong());
+            buffer.position(start + length);
+        }
+        return seqs;
+    }
+
+    private static Map<String, LinkedHashMap<Long, String>> overlay(RegistrationJournal journal) {
+        Map<String, LinkedHashMap<Long, String>> rosters = new HashMap<>();
+        journal.overlay(DATE, rosters);
+        return rosters;
+    }
+
+    @Test
+    void pendingOperationsSurviveRestart() throws IOException {
+        try (RegistrationJournal journal = open(new RecordingSink())) {
+            assertTrue(journal.register(registration(1)));
+            assertTrue(journal.register(registration(2)));
+            assertTrue(journal.cancel(2L, DATE, "morning"));
+        }
+
+        try (RegistrationJournal journal = open(new RecordingSink())) {
+            assertTrue(journal.hasPending(key(1)));
+            assertTrue(journal.hasPending(key(2)));
+            assertEquals(Map.of(1L, "@user1"), overlay(journal).get("morning"));
+            // Последняя операция по ключу восстановлена: повторная запись не журналируется
+            assertFalse(journal.register(registration(1)));
+            assertFalse(journal.cancel(2L, DATE, "morning"));
+        }
+    }
+
+    @Test
+    void tornTailIsTruncatedAndEarlierRecordsKept() throws IOException {
+        try (RegistrationJournal journal = open(new RecordingSink())) {
+            journal.register(registration(1));
+            journal.register(registration(2));
+        }
+        long size = Files.size(file());
+        try (FileChannel channel = FileChannel.open(file(), StandardOpenOption.WRITE)) {
+            channel.truncate(size - 5);
+        }
+
+        long recoveredSize;
+        try (RegistrationJournal journal = open(new RecordingSink())) {
+            assertTrue(journal.hasPending(key(1)));
+            assertFalse(journal.hasPending(key(2)));
+            recoveredSize = Files.size(file());
+            assertTrue(recoveredSize < size - 5);
+            assertTrue(journal.register(registration(3)));
+        }
+
+        try (RegistrationJournal journal = open(new RecordingSink())) {
+            assertTrue(journal.hasPending(key(1)));
+            assertTrue(journal.hasPending(key(3)));
+            assertTrue(Files.size(file()) > recoveredSize);
+        }
+    }
+
+    @Test
+    void garbageAfterLastRecordIsDiscarded() throws IOException {
+        try (RegistrationJournal journal = open(new RecordingSink())) {
+            journal.register(registration(1));
+        }
+        long size = Files.size(file());
+        // Заголовок с правдоподобной длиной, но неверным CRC - как после сбоя посреди записи
+        Files.write(file(), new byte[]{0, 0, 0, 4, 1, 2, 3, 4, 9, 9, 9, 9}, StandardOpenOption.APPEND);
+
+        try (RegistrationJournal journal = open(new RecordingSink())) {
+            assertTrue(journal.hasPending(key(1)));
+            assertEquals(size, Files.size(file()));
+        }
+    }
+
+    @Test
+    void replayedOperationsAreAcknowledgedAndJournalCompacted() throws IOException {
+        RecordingSink sink = new RecordingSink();
+        try (RegistrationJournal journal = open(sink)) {
+            journal.register(registration(1));
+            journal.cancel(1L, DATE, "morning");
+            journal.register(registration(2));
+            journal.replay();
+
+            assertEquals(List.of("register 1", "cancel 1", "register 2"), sink.sent);
+            assertFalse(journal.hasPending(key(1)));
+            assertEquals(0, Files.size(file()));
+        }
+
+        try (RegistrationJournal journal = open(new RecordingSink())) {
+            assertFalse(journal.hasPending(key(1)));
+            assertFalse(journal.hasPending(key(2)));
+        }
+    }
+
+    @Test
+    void acknowledgedPrefixIsNotReplayedAfterRestart() throws IOException {
+        RecordingSink failing = new RecordingSink();
+        failing.failAfter = 1;
+        try (RegistrationJournal journal = open(failing)) {
+            journal.register(registration(1));
+            journal.register(registration(2));
+            journal.replay();
+            assertEquals(List.of("register 1"), failing.sent);
+        }
+
+        RecordingSink sink = new RecordingSink();
+        try (RegistrationJournal journal = open(sink)) {
+            assertFalse(journal.hasPending(key(1)));
+            assertTrue(journal.hasPending(key(2)));
+
+            // Номера продолжаются после восстановленных: ACK старой операции не снимет новую
+            journal.register(registration(3));
+            assertEquals(List.of(1L, 2L, 1L, 3L), seqs());
+            journal.replay();
+            assertEquals(List.of("register 2", "register 3"), sink.sent);
+        }
+    }
+}
@@ -0,0 +1,90 @@
+package org.example.service;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class RegistrationRosterCacheTest {
+
+    private static final LocalDate TOMORROW = LocalDate.now(ZoneId.of("Europe/Moscow")).plusDays(1);
+    private static final List<String> TYPES = List.of("morning", "evening");
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+    private RegistrationRosterCache cache(long ttlMillis, int maxEntries) {
+        return new RegistrationRosterCache(ttlMillis, maxEntries, meterRegistry);
+    }
+
+    private static Map<String, LinkedHashMap<Long, String>> loaded(long... morningUserIds) {
+        LinkedHashMap<Long, String> morning = new LinkedHashMap<>();
+        for (long userId : morningUserIds) {
+            morning.put(userId, "@user" + userId);
+        }
+        return Map.of("morning", morning);
+    }
+
+    private static void store(RegistrationRosterCache cache, LocalDate date, long... morningUserIds) {
+        cache.store(date, TYPES, loaded(morningUserIds), cache.writeStamp());
+    }
+
+    @Test
+    void storedRostersAreServedUntilTtlExpires() throws InterruptedException {
+        RegistrationRosterCache cache = cache(150, 64);
+        assertNull(cache.getIfFresh(TOMORROW, TYPES));
+
+        store(cache, TOMORROW, 1, 2);
+        assertEquals(Map.of("morning", List.of("@user1", "@user2"), "evening", List.of()),
+                cache.getIfFresh(TOMORROW, TYPES));
+
+        Thread.sleep(200);
+        assertNull(cache.getIfFresh(TOMORROW, TYPES));
+        assertEquals(1, meterRegistry.counter("supabase.roster.cache", "result", "hit").count());
+        assertEquals(2, meterRegistry.counter("supabase.roster.cache", "result", "miss").count());
+    }
+
+    @Test
+    void botWritesUpdateCachedRosterInPlace() {
+        RegistrationRosterCache cache = cache(60_000, 64);
+        store(cache, TOMORROW, 1);
+
+        cache.registered(TOMORROW, "morning", 2L, "@user2");
+        cache.registered(TOMORROW, "morning", 1L, "@user1");
+        assertEquals(List.of("@user1", "@user2"), cache.getIfFresh(TOMORROW, TYPES).get("morning"));
+
+        cache.cancelled(TOMORROW, "morning", 1L);
+        assertEquals(List.of("@user2"), cache.getIfFresh(TOMORROW, TYPES).get("morning"));
+    }
+
+    @Test
+    void loadStartedBeforeWriteIsReturnedButNotCached() {
+        RegistrationRosterCache cache = cache(60_000, 64);
+        long stamp = cache.writeStamp();
+        cache.registered(TOMORROW, "morning", 2L, "@user2");
+
+        Map<String, List<String>> result = cache.store(TOMORROW, TYPES, loaded(1), stamp);
+
+        assertEquals(List.of("@user1"), result.get("morning"));
+        assertNull(cache.getIfFresh(TOMORROW, TYPES));
+    }
+
+    @Test
+    void pastDatesAndOldestLoadsAreEvicted() throws InterruptedException {
+        RegistrationRosterCache cache = cache(60_000, 2);
+        store(cache, TOMORROW.minusDays(2), 1);
+        assertNull(cache.getIfFresh(TOMORROW.minusDays(2), TYPES));
+
+        store(cache, TOMORROW, 1);
+        Thread.sleep(5);
+        store(cache, TOMORROW.plusDays(1), 2);
+
+        assertNull(cache.getIfFresh(TOMORROW, TYPES));
+        assertEquals(List.of("@user2"), cache.getIfFresh(TOMORROW.plusDays(1), TYPES).get("morning"));
+    }
+}
@@ -0,0 +1,144 @@
+package org.example.service;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDate;
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class RegistrationWriteBatcherTest {
+
+    private static final LocalDate DATE = LocalDate.of(2030, 1, 7);
+
+    /**
+     * Sink, запоминающий пачки; вставляет всех, кроме уже записанных, и падает на пачке с failingUserId.
+     */
+    private static final class RecordingSink implements RegistrationWriteBatcher.Sink {
+        final List<List<Long>> inserts = new CopyOnWriteArrayList<>();
+        final List<List<Long>> deletes = new CopyOnWriteArrayList<>();
+        final Set<Long> alreadyRegistered = new HashSet<>();
+        volatile long failingUserId = -1;
+
+        @Override
+        public Set<RegistrationWriteBatcher.RegistrationKey> insert(List<RegistrationWriteBatcher.Registration> registrations) {
+            List<Long> userIds = registrations.stream().map(RegistrationWriteBatcher.Registration::userId).toList();
+            inserts.add(userIds);
+            if (userIds.contains(failingUserId)) {
+                throw new IllegalStateException("Supabase отклонил пачку");
+            }
+            Set<RegistrationWriteBatcher.RegistrationKey> inserted = new HashSet<>();
+            for (RegistrationWriteBatcher.Registration r : registrations) {
+                if (!alreadyRegistered.contains(r.userId())) {
+                    inserted.add(new RegistrationWriteBatcher.RegistrationKey(r.userId(), r.lessonDate(), r.lessonType()));
+                }
+            }
+            return inserted;
+        }
+
+        @Override
+        public Set<Long> delete(LocalDate lessonDate, String lessonType, List<Long> userIds) {
+            deletes.add(userIds);
+            return new HashSet<>(alreadyRegistered);
+        }
+    }
+
+    private final RecordingSink sink = new RecordingSink();
+    private RegistrationWriteBatcher batcher;
+
+    private RegistrationWriteBatcher batcher(long windowMillis, int maxBatchSize) {
+        batcher = new RegistrationWriteBatcher(sink, windowMillis, maxBatchSize, new SimpleMeterRegistry());
+        return batcher;
+    }
+
+    @AfterEach
+    void tearDown() {
+        if (batcher != null) {
+            batcher.close();
+        }
+    }
+
+    private static RegistrationWriteBatcher.Registration registration(long userId) {
+        return new RegistrationWriteBatcher.Registration(userId, "user" + userId, "@user" + userId, DATE, "morning");
+    }
+
+    private static List<CompletableFuture<Boolean>> registerAll(RegistrationWriteBatcher batcher, long... userIds) {
+        List<CompletableFuture<Boolean>> futures = new ArrayList<>();
+        for (long userId : userIds) {
+            futures.add(batcher.register(registration(userId)));
+        }
+        return futures;
+    }
+
+    private static boolean result(CompletableFuture<Boolean> future) throws Exception {
+        return future.get(5, TimeUnit.SECONDS);
+    }
+
+    @Test
+    void operationsInsideWindowShareOneRequest() throws Exception {
+        RegistrationWriteBatcher batcher = batcher(200, 50);
+        List<CompletableFuture<Boolean>> futures = registerAll(batcher, 1, 2, 3);
+        CompletableFuture<Boolean> cancel = batcher.cancel(4L, DATE, "evening");
+
+        for (CompletableFuture<Boolean> future : futures) {
+            assertTrue(result(future));
+        }
+        assertFalse(result(cancel));
+        assertEquals(List.of(List.of(1L, 2L, 3L)), sink.inserts);
+        assertEquals(List.of(List.of(4L)), sink.deletes);
+    }
+
+    @Test
+    void fullBatchIsSentWithoutWaitingForWindow() throws Exception {
+        RegistrationWriteBatcher batcher = batcher(2_000, 2);
+        long start = System.nanoTime();
+        List<CompletableFuture<Boolean>> futures = registerAll(batcher, 1, 2);
+
+        assertTrue(result(futures.get(0)));
+        assertTrue(result(futures.get(1)));
+        assertTrue(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start) < 1_000);
+        assertEquals(List.of(List.of(1L, 2L)), sink.inserts);
+    }
+
+    @Test
+    void rowsMissingFromResultAreReportedAsNotDone() throws Exception {
+        sink.alreadyRegistered.add(2L);
+        RegistrationWriteBatcher batcher = batcher(100, 50);
+        List<CompletableFuture<Boolean>> futures = registerAll(batcher, 1, 2);
+
+        assertTrue(result(futures.get(0)));
+        assertFalse(result(futures.get(1)));
+    }
+
+    @Test
+    void failedBatchIsSplitAndOnlyFailingRowCompletesExceptionally() throws Exception {
+        sink.failingUserId = 3;
+        RegistrationWriteBatcher batcher = batcher(200, 50);
+        List<CompletableFuture<Boolean>> futures = registerAll(batcher, 1, 2, 3, 4);
+
+        assertTrue(result(futures.get(0)));
+        assertTrue(result(futures.get(1)));
+        ExecutionException failure = assertThrows(ExecutionException.class, () -> result(futures.get(2)));
+        assertInstanceOf(IllegalStateException.class, failure.getCause());
+        assertTrue(result(futures.get(3)));
+
+        assertEquals(List.of(List.of(1L, 2L, 3L, 4L), List.of(1L, 2L), List.of(3L, 4L), List.of(3L), List.of(4L)),
+                sink.inserts);
+    }
+
+    @Test
+    void operationAfterCloseCompletesExceptionally() {
+        RegistrationWriteBatcher batcher = batcher(10, 50);
+        batcher.close();
+
+        CompletableFuture<Boolean> future = batcher.register(registration(1));
+        assertThrows(ExecutionException.class, () -> result(future));
+        assertTrue(sink.inserts.isEmpty());
+    }
+}
@@ -0,0 +1,96 @@
+package org.example.service;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SeatLedgerTest {
+
+    private static final LocalDate TODAY = LocalDate.of(2030, 1, 7);
+
+    @TempDir
+    Path dataDir;
+
+    private SeatLedger ledger() {
+        return new SeatLedger(Map.of("morning", 1, "evening", 0), dataDir.resolve("waitlists.bin"));
+    }
+
+    private static RegistrationWriteBatcher.Registration registration(long userId, String username, LocalDate date) {
+        return new RegistrationWriteBatcher.Registration(userId, username, username != null ? "@" + username : "User" + userId,
+                date, "morning");
+    }
+
+    /**
+     * Сверка занятий на дату со списком из Supabase; после нее места считаются загруженными.
+     */
+    private static void reconcile(SeatLedger ledger, LocalDate date, Long... userIds) {
+        LinkedHashMap<Long, String> roster = new LinkedHashMap<>();
+        for (Long userId : userIds) {
+            roster.put(userId, "User" + userId);
+        }
+        ledger.reconciliation(date).accept(Map.of("morning", roster));
+    }
+
+    @Test
+    void reservationStopsAtCapacityAndWaitlistIsFifo() {
+        SeatLedger ledger = ledger();
+        SeatLedger.Lesson lesson = ledger.lesson(TODAY, "morning");
+        reconcile(ledger, TODAY);
+        assertTrue(lesson.isLoaded());
+
+        assertTrue(lesson.tryReserve());
+        lesson.confirm(1L, true);
+        assertFalse(lesson.tryReserve());
+
+        assertEquals(1, lesson.enqueue(registration(2, "two", TODAY)));
+        assertEquals(2, lesson.enqueue(registration(3, "three", TODAY)));
+        assertEquals(0, lesson.enqueue(registration(2, "two", TODAY)));
+
+        assertNull(lesson.admitNext());
+        lesson.released(1L);
+        assertEquals(2L, lesson.admitNext().userId());
+        assertEquals(List.of("@three"), lesson.waitlistNames());
+    }
+
+    @Test
+    void lessonIsNotLoadedUntilReconciled() {
+        SeatLedger ledger = ledger();
+        SeatLedger.Lesson lesson = ledger.lesson(TODAY, "morning");
+        assertFalse(lesson.isLoaded());
+
+        reconcile(ledger, TODAY, 7L);
+        assertTrue(lesson.isLoaded());
+        assertTrue(lesson.isHolder(7L));
+        assertEquals(1, lesson.taken());
+    }
+
+    @Test
+    void waitlistsSurviveRestartWithoutPastLessons() {
+        SeatLedger first = ledger();
+        SeatLedger.Lesson lesson = first.lesson(TODAY, "morning");
+        lesson.enqueue(registration(2, "two", TODAY));
+        lesson.enqueue(registration(3, null, TODAY));
+        first.lesson(TODAY.minusDays(1), "morning").enqueue(registration(4, "four", TODAY.minusDays(1)));
+        first.waitlistChanged();
+        first.persist();
+
+        SeatLedger second = ledger();
+        second.load(TODAY);
+
+        SeatLedger.Lesson restored = second.find(TODAY, "morning");
+        assertNotNull(restored);
+        assertEquals(List.of("@two", "User3"), restored.waitlistNames());
+        assertTrue(restored.isWaitlisted(3L));
+        assertNull(second.find(TODAY.minusDays(1), "morning"));
+        // Восстановленный лист ожидания не дает мест, пока занятие не сверено с Supabase
+        assertFalse(restored.isLoaded());
+        assertEquals(0, restored.taken());
+    }
+}
@@ -0,0 +1,112 @@
+package org.example.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.telegram.telegrambots.meta.api.objects.ApiResponse;
+import org.telegram.telegrambots.meta.exceptions.TelegramApiRequestException;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class TelegramRateLimiterTest {
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+    private TelegramRateLimiter limiter(double privateChatPerSecond, int maxRetries) {
+        return new TelegramRateLimiter(meterRegistry, 1_000, privateChatPerSecond, 20, 3, maxRetries);
+    }
+
+    /**
+     * Ответ Telegram с кодом ошибки, как его разбирает библиотека.
+     */
+    private static TelegramApiRequestException apiError(int errorCode, String parameters) throws Exception {
+        String json = "{\"ok\":false,\"error_code\":" + errorCode + ",\"description\":\"error\""
+                + (parameters != null ? ",\"parameters\":" + parameters : "") + "}";
+        return new TelegramApiRequestException("error", new ObjectMapper().readValue(json, ApiResponse.class));
+    }
+
+    private static long millisSince(long start) {
+        return TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+    }
+
+    @Test
+    void bucketGivesBurstThenSpacesRequests() {
+        TelegramRateLimiter.TokenBucket bucket = new TelegramRateLimiter.TokenBucket(20 / 60.0, 3);
+        long now = System.nanoTime();
+
+        assertEquals(0, bucket.reserve(now));
+        assertEquals(0, bucket.reserve(now));
+        assertEquals(0, bucket.reserve(now));
+
+        long wait = bucket.reserve(now);
+        assertTrue(Math.abs(wait - TimeUnit.SECONDS.toNanos(3)) < TimeUnit.MILLISECONDS.toNanos(50), String.valueOf(wait));
+        // Следующий встает в очередь за предыдущим
+        assertTrue(bucket.reserve(now) > wait);
+    }
+
+    @Test
+    void pausedBucketWaitsUntilPauseEnds() {
+        TelegramRateLimiter.TokenBucket bucket = new TelegramRateLimiter.TokenBucket(100, 100);
+        long now = System.nanoTime();
+        bucket.pauseUntil(now + TimeUnit.SECONDS.toNanos(2));
+        // Более короткая пауза не сокращает уже назначенную
+        bucket.pauseUntil(now + TimeUnit.SECONDS.toNanos(1));
+
+        assertEquals(TimeUnit.SECONDS.toNanos(2), bucket.reserve(now));
+    }
+
+    @Test
+    void privateChatIsPacedButOtherChatsAreNot() throws Exception {
+        TelegramRateLimiter limiter = limiter(5, 0);
+        limiter.execute("100", () -> true);
+
+        long start = System.nanoTime();
+        limiter.execute("200", () -> true);
+        assertTrue(millisSince(start) < 100);
+
+        limiter.execute("100", () -> true);
+        assertTrue(millisSince(start) >= 150);
+    }
+
+    @Test
+    void tooManyRequestsIsRetriedAfterRetryAfter() throws Exception {
+        TelegramRateLimiter limiter = limiter(1_000, 3);
+        AtomicInteger calls = new AtomicInteger();
+        TelegramApiRequestException tooMany = apiError(429, "{\"retry_after\":1}");
+
+        long start = System.nanoTime();
+        String result = limiter.execute("-100", () -> {
+            if (calls.incrementAndGet() == 1) {
+                throw tooMany;
+            }
+            return "sent";
+        });
+
+        assertEquals("sent", result);
+        assertEquals(2, calls.get());
+        assertTrue(millisSince(start) >= 900);
+        assertEquals(1, meterRegistry.counter("telegram.limiter.throttled").count());
+    }
+
+    @Test
+    void otherErrorsAndExhaustedRetriesAreRethrown() throws Exception {
+        TelegramRateLimiter limiter = limiter(1_000, 0);
+        TelegramApiRequestException badRequest = apiError(400, null);
+        TelegramApiRequestException tooMany = apiError(429, "{\"retry_after\":1}");
+        AtomicInteger calls = new AtomicInteger();
+
+        assertSame(badRequest, assertThrows(TelegramApiRequestException.class, () -> limiter.execute("1", () -> {
+            calls.incrementAndGet();
+            throw badRequest;
+        })));
+        assertSame(tooMany, assertThrows(TelegramApiRequestException.class, () -> limiter.execute(null, () -> {
+            calls.incrementAndGet();
+            throw tooMany;
+        })));
+        assertEquals(2, calls.get());
+        assertEquals(0, meterRegistry.counter("telegram.limiter.throttled").count());
+    }
+}